@@ -0,0 +1,112 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.benchmark;
+
+import io.github.interacto.fsm.CancellingState;
+import io.github.interacto.fsm.FSM;
+import io.github.interacto.fsm.FSMDefinition;
+import io.github.interacto.fsm.StdState;
+import io.github.interacto.fsm.SubFSMTransition;
+import io.github.interacto.fsm.TerminalState;
+import java.util.Set;
+
+/**
+ * The FSMs used by the benchmarks. They mimic the FSMs of the usual toolkit interactions.
+ */
+final class BenchFSMs {
+	static final String PRESS = "press";
+	static final String RELEASE = "release";
+	static final String MOVE = "move";
+
+	private BenchFSMs() {
+		super();
+	}
+
+	/**
+	 * A click FSM: press, release. Moving cancels the interaction.
+	 */
+	static final class ClickFSM extends FSM<String> {
+		ClickFSM() {
+			super();
+			final StdState<String> pressed = new StdState<>(this, "pressed");
+			final TerminalState<String> released = new TerminalState<>(this, "released");
+			final CancellingState<String> moved = new CancellingState<>(this, "moved");
+			addState(pressed);
+			addState(released);
+			addState(moved);
+			new EventTransition(initState, pressed, PRESS);
+			new EventTransition(pressed, released, RELEASE);
+			new EventTransition(pressed, moved, MOVE);
+		}
+	}
+
+	/**
+	 * A double-click FSM composed of two click sub-FSMs.
+	 */
+	static final class DoubleClickFSM extends FSM<String> {
+		DoubleClickFSM() {
+			super();
+			final StdState<String> clicked = new StdState<>(this, "clicked");
+			final TerminalState<String> dbleclicked = new TerminalState<>(this, "dbleclicked");
+			final CancellingState<String> cancelled = new CancellingState<>(this, "cancelled");
+			addState(clicked);
+			addState(dbleclicked);
+			addState(cancelled);
+			startingState = dbleclicked;
+			new SubFSMTransition<>(initState, clicked, new ClickFSM());
+			new SubFSMTransition<>(clicked, dbleclicked, new ClickFSM());
+			new EventTransition(clicked, cancelled, MOVE);
+		}
+	}
+
+	/**
+	 * A drag-and-drop FSM: press, move*, release. Releasing without moving cancels the interaction.
+	 */
+	static final class DnDFSM extends FSM<String> {
+		DnDFSM() {
+			super();
+			final StdState<String> pressed = new StdState<>(this, "pressed");
+			final StdState<String> dragged = new StdState<>(this, "dragged");
+			final TerminalState<String> released = new TerminalState<>(this, "released");
+			final CancellingState<String> cancelled = new CancellingState<>(this, "cancelled");
+			addState(pressed);
+			addState(dragged);
+			addState(released);
+			addState(cancelled);
+			new EventTransition(initState, pressed, PRESS);
+			new EventTransition(pressed, dragged, MOVE);
+			new EventTransition(dragged, dragged, MOVE);
+			new EventTransition(dragged, released, RELEASE);
+			new EventTransition(pressed, cancelled, RELEASE);
+		}
+	}
+
+	/**
+	 * The definition of the drag-and-drop FSM (cf. DnDFSM).
+	 */
+	static FSMDefinition<String> dndDefinition() {
+		return FSMDefinition.<String>builder(evt -> evt)
+			.stdState("pressed")
+			.stdState("dragged")
+			.terminalState("released")
+			.cancellingState("cancelled")
+			.transition(FSMDefinition.INIT_STATE, "pressed", Set.of(PRESS), null, null)
+			.transition("pressed", "dragged", Set.of(MOVE), null, null)
+			.transition("dragged", "dragged", Set.of(MOVE), null, null)
+			.transition("dragged", "released", Set.of(RELEASE), null, null)
+			.transition("pressed", "cancelled", Set.of(RELEASE), null, null)
+			.build();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.benchmark;
+
+import io.github.interacto.fsm.FSM;
+import io.github.interacto.fsm.OutputState;
+import io.github.interacto.interaction.InteractionData;
+import io.github.interacto.interaction.InteractionImpl;
+
+/**
+ * A toolkit-free user interaction that processes string events.
+ */
+class BenchInteraction extends InteractionImpl<BenchInteraction.Data, String, FSM<String>> {
+	private final Data data;
+
+	BenchInteraction(final FSM<String> fsm) {
+		super(fsm);
+		data = new Data();
+	}
+
+	@Override
+	public Data getData() {
+		return data;
+	}
+
+	@Override
+	protected void updateEventsRegistered(final OutputState<String> newState, final OutputState<String> oldState) {
+		// No toolkit listener to register
+	}
+
+	@Override
+	protected void consumeEvent(final String event) {
+		// No toolkit event to consume
+	}
+
+	@Override
+	protected boolean isEventsOfSameType(final String evt1, final String evt2) {
+		return evt1.equals(evt2);
+	}
+
+	@Override
+	protected void runInUIThread(final Runnable cmd) {
+		cmd.run();
+	}
+
+	@Override
+	protected void reinitData() {
+		data.moves = 0;
+	}
+
+	/**
+	 * The interaction data: the number of moves.
+	 */
+	static final class Data implements InteractionData {
+		int moves;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.benchmark;
+
+import io.github.interacto.command.CommandsRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of CommandsRegistry.addCommand on a full registry: each added command
+ * makes the registry evict its oldest command.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandsRegistryBenchmark {
+	@Param({"50", "1000", "100000"})
+	public int size;
+
+	private CommandsRegistry registry;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		registry = new CommandsRegistry();
+		registry.setSizeMax(size);
+		for(int i = 0; i < size; i++) {
+			registry.addCommand(createDoneCommand());
+		}
+	}
+
+	@Benchmark
+	public int addCommand() {
+		registry.addCommand(createDoneCommand());
+		return registry.getCommands().size();
+	}
+
+	private static BenchCommand createDoneCommand() {
+		final BenchCommand cmd = new BenchCommand();
+		cmd.doIt();
+		cmd.done();
+		return cmd;
+	}
+}
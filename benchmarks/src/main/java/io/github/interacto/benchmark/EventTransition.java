@@ -0,0 +1,49 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.benchmark;
+
+import io.github.interacto.fsm.InputState;
+import io.github.interacto.fsm.OutputState;
+import io.github.interacto.fsm.Transition;
+import java.util.Set;
+
+/**
+ * A transition triggered by a string event of a given name.
+ */
+class EventTransition extends Transition<String> {
+	private final String eventName;
+	private final Set<Object> acceptedEvents;
+
+	EventTransition(final OutputState<String> srcState, final InputState<String> tgtState, final String eventName) {
+		super(srcState, tgtState);
+		this.eventName = eventName;
+		acceptedEvents = Set.of(eventName);
+	}
+
+	@Override
+	protected boolean accept(final String event) {
+		return eventName.equals(event);
+	}
+
+	@Override
+	protected boolean isGuardOK(final String event) {
+		return true;
+	}
+
+	@Override
+	public Set<Object> getAcceptedEvents() {
+		return acceptedEvents;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.benchmark;
+
+import io.github.interacto.fsm.FSM;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of FSM.process: complete click-like interactions and pointer moves within a running DnD.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FSMProcessBenchmark {
+	/**
+	 * An FSM that runs complete interactions.
+	 */
+	@State(Scope.Thread)
+	public static class ClickState {
+		@Param({"click", "doubleClick"})
+		public String fsmType;
+
+		FSM<String> fsm;
+		String[] events;
+
+		@Setup
+		public void setUp() {
+			if("click".equals(fsmType)) {
+				fsm = new BenchFSMs.ClickFSM();
+				events = new String[] {BenchFSMs.PRESS, BenchFSMs.RELEASE};
+			}else {
+				fsm = new BenchFSMs.DoubleClickFSM();
+				events = new String[] {BenchFSMs.PRESS, BenchFSMs.RELEASE, BenchFSMs.PRESS, BenchFSMs.RELEASE};
+			}
+		}
+	}
+
+	/**
+	 * A DnD FSM that is currently dragging.
+	 */
+	@State(Scope.Thread)
+	public static class DragState {
+		/** classic: states and transitions objects; defined: a shared definition. */
+		@Param({"classic", "defined"})
+		public String backend;
+
+		FSM<String> fsm;
+
+		@Setup
+		public void setUp() {
+			if("classic".equals(backend)) {
+				fsm = new BenchFSMs.DnDFSM();
+			}else {
+				fsm = BenchFSMs.dndDefinition().createFSM();
+			}
+			fsm.process(BenchFSMs.PRESS);
+			fsm.process(BenchFSMs.MOVE);
+		}
+	}
+
+	@Benchmark
+	public void interactionCycle(final ClickState state, final Blackhole bh) {
+		for(final String event : state.events) {
+			bh.consume(state.fsm.process(event));
+		}
+	}
+
+	@Benchmark
+	public boolean pointerMove(final DragState state) {
+		return state.fsm.process(BenchFSMs.MOVE);
+	}
+}
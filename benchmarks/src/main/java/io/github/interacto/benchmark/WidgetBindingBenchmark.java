@@ -0,0 +1,115 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.benchmark;
+
+import io.github.interacto.binding.WidgetBindingImpl;
+import io.github.interacto.command.Command;
+import io.github.interacto.command.CommandsRegistry;
+import io.github.interacto.fsm.FSM;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the WidgetBindingImpl life cycle: the FSM handler routines (fsmStarts, fsmUpdates, fsmStops)
+ * and the command execution and registration they trigger.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WidgetBindingBenchmark {
+	/** The number of moves of a complete DnD. */
+	private static final int MOVES = 10;
+
+	@Param({"true", "false"})
+	public boolean continuousExecution;
+
+	private FSM<String> fsm;
+	private BenchBinding binding;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		CommandsRegistry.setInstance(new CommandsRegistry());
+		fsm = new BenchFSMs.DnDFSM();
+		binding = new BenchBinding(continuousExecution, new BenchInteraction(fsm));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		binding.uninstallBinding();
+		CommandsRegistry.getInstance().clear();
+	}
+
+	@Benchmark
+	public long fullLifecycle() {
+		fsm.process(BenchFSMs.PRESS);
+		for(int i = 0; i < MOVES; i++) {
+			fsm.process(BenchFSMs.MOVE);
+		}
+		fsm.process(BenchFSMs.RELEASE);
+		return binding.getTimesEnded();
+	}
+
+	@Benchmark
+	public boolean move() {
+		if(!fsm.isStarted()) {
+			fsm.process(BenchFSMs.PRESS);
+		}
+		return fsm.process(BenchFSMs.MOVE);
+	}
+
+	/**
+	 * A binding that always produces a command.
+	 */
+	static final class BenchBinding extends WidgetBindingImpl<BenchCommand, BenchInteraction, BenchInteraction.Data> {
+		BenchBinding(final boolean continuousExecution, final BenchInteraction interaction) {
+			super(continuousExecution, data -> new BenchCommand(), interaction);
+		}
+
+		@Override
+		public boolean when() {
+			return true;
+		}
+
+		@Override
+		protected void unbindCmdAttributes() {
+			// No attribute to unbind
+		}
+
+		@Override
+		protected void executeCmdAsync(final Command cmd) {
+			cmd.doIt();
+		}
+
+		@Override
+		public void then() {
+			interaction.getData().moves++;
+		}
+	}
+}
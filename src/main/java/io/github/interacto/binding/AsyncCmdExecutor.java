@@ -0,0 +1,164 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.binding;
+
+import io.github.interacto.error.ErrorCatcher;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the commands of asynchronous widget bindings outside the UI thread.
+ * On JDK 21+, each command is executed in its own virtual thread, so that long-running
+ * commands do not exhaust a thread pool.
+ * On older JDKs, the commands are executed by a bounded pool of daemon threads whose queue is bounded too:
+ * when the queue is full, the command is rejected (it is never executed in the calling thread, i.e. the UI thread).
+ * The rejections are reported to the ErrorCatcher.
+ */
+public class AsyncCmdExecutor {
+	/** The base name of the platform threads used when virtual threads are not available. */
+	public static final String THREAD_NAME_BASE = "interacto-cmd-exec-";
+
+	/** The maximal number of pending commands per thread of the bounded pool. */
+	public static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
+	private static AsyncCmdExecutor instance = new AsyncCmdExecutor();
+
+	/**
+	 * @return The single instance. Cannot be null.
+	 */
+	public static AsyncCmdExecutor getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Sets the single instance.
+	 * @param newInstance The new single instance. Nothing done if null.
+	 */
+	public static void setInstance(final AsyncCmdExecutor newInstance) {
+		if(newInstance != null) {
+			instance = newInstance;
+		}
+	}
+
+	/** The executor in use. Created on the first execution. */
+	private ExecutorService executor;
+
+	/**
+	 * Creates the executor. No thread is created until the first execution.
+	 */
+	public AsyncCmdExecutor() {
+		super();
+	}
+
+	/**
+	 * Executes the given job outside the UI thread.
+	 * The errors thrown by the job (exceptions and errors) are reported to the ErrorCatcher.
+	 * The job is submitted under the lock of shutdown: a concurrent shutdown cannot reject it.
+	 * @param job The job to execute. Cannot be null.
+	 * @return True if the job will be executed. False if the executor rejected it because it is saturated:
+	 *     the rejection is reported to the ErrorCatcher.
+	 * @throws IllegalArgumentException If the given job is null.
+	 */
+	public boolean execute(final Runnable job) {
+		if(job == null) {
+			throw new IllegalArgumentException("null job");
+		}
+
+		try {
+			submit(() -> {
+				try {
+					job.run();
+				}catch(final Throwable ex) {
+					ErrorCatcher.getInstance().reportError(ex);
+				}
+			});
+			return true;
+		}catch(final RejectedExecutionException ex) {
+			ErrorCatcher.getInstance().reportError(ex);
+			return false;
+		}
+	}
+
+	private synchronized void submit(final Runnable job) {
+		getExecutor().execute(job);
+	}
+
+	/**
+	 * Stops the executor. The pending jobs are discarded and the running ones interrupted.
+	 * A new executor will be created on the next execution.
+	 */
+	public synchronized void shutdown() {
+		if(executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if(executor == null) {
+			executor = createExecutor();
+		}
+		return executor;
+	}
+
+	/**
+	 * Creates the executor to use: a virtual-thread-per-task executor when available (JDK 21+),
+	 * otherwise a bounded pool.
+	 * @return The created executor. Cannot be null.
+	 */
+	protected ExecutorService createExecutor() {
+		// Looked up by reflection since the project targets JDK 11
+		return createExecutor("newVirtualThreadPerTaskExecutor");
+	}
+
+	/**
+	 * @param factory The name of the factory method of Executors (without parameter) to use when available.
+	 * @return The executor created by the given factory method, or a bounded pool if the method is not available.
+	 */
+	ExecutorService createExecutor(final String factory) {
+		try {
+			return (ExecutorService) Executors.class.getMethod(factory).invoke(null);
+		}catch(final ReflectiveOperationException ex) {
+			return createBoundedPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		}
+	}
+
+	/**
+	 * Creates a pool of daemon threads whose size cannot exceed the given one.
+	 * Idle threads are released after a delay.
+	 * The pool cannot queue more than size * QUEUE_CAPACITY_PER_THREAD jobs: beyond, the jobs are rejected
+	 * (RejectedExecutionException).
+	 * @param size The maximal number of threads.
+	 * @return The created pool.
+	 */
+	protected ExecutorService createBoundedPool(final int size) {
+		final AtomicLong counter = new AtomicLong();
+		final ThreadFactory factory = job -> {
+			final Thread thread = new Thread(job, THREAD_NAME_BASE + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		final ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 30L, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(size * QUEUE_CAPACITY_PER_THREAD), factory, new ThreadPoolExecutor.AbortPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
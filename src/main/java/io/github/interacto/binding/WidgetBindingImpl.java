@@ -15,11 +15,14 @@
 package io.github.interacto.binding;
 
 import io.github.interacto.command.Command;
+import io.github.interacto.command.CommandPool;
 import io.github.interacto.command.CommandsRegistry;
 import io.github.interacto.error.ErrorCatcher;
 import io.github.interacto.fsm.CancelFSMException;
 import io.github.interacto.interaction.InteractionData;
 import io.github.interacto.interaction.InteractionImpl;
+import io.github.interacto.logging.TraceEvent;
+import io.github.interacto.logging.TraceRecorder;
 import io.github.interacto.undo.Undoable;
 import io.reactivex.Observable;
 import io.reactivex.subjects.PublishSubject;
@@ -82,6 +85,9 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 
 	protected final PublishSubject<C> cmdsProduced;
 
+	/** The pool that provides the commands before the command producer. Null if no pooling. */
+	protected CommandPool<C> cmdPool;
+
 
 	/**
 	 * Creates a widget binding.
@@ -150,6 +156,24 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 		async = asyncCmd;
 	}
 
+	/**
+	 * Sets the pool of commands of the binding: the commands are taken from the pool before being produced,
+	 * and the cancelled commands are given back to the pool.
+	 * Because a pooled command is not created by the command producer, it must be initialised
+	 * in the binding routines (e.g. first) rather than when produced.
+	 * @param pool The command pool. Null: no pooling.
+	 */
+	public void setCommandPool(final CommandPool<C> pool) {
+		cmdPool = pool;
+	}
+
+	/**
+	 * @return The command pool of the binding. Can be null.
+	 */
+	public CommandPool<C> getCommandPool() {
+		return cmdPool;
+	}
+
 	@Override
 	public void clearEvents() {
 		interaction.fullReinit();
@@ -161,6 +185,13 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 	 * @return The created command or null if problems occurred.
 	 */
 	protected C createCommand() {
+		if(cmdPool != null) {
+			final C pooled = cmdPool.acquire();
+			if(pooled != null) {
+				return pooled;
+			}
+		}
+
 		try {
 			return cmdProducer.apply(interaction.getData());
 		}catch(final Exception ex) {
@@ -254,18 +285,21 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 			if(loggerBinding != null) {
 				loggerBinding.log(Level.INFO, "Binding cancelled");
 			}
+			TraceRecorder.getInstance().record(TraceEvent.BINDING_CANCELLED, this);
 
 			final boolean hadEffects = cmd.hadEffect();
 			cmd.cancel();
 			if(loggerCmd != null) {
 				loggerCmd.log(Level.INFO, "Command cancelled");
 			}
+			TraceRecorder.getInstance().record(TraceEvent.CMD_CANCELLED, cmd);
 			unbindCmdAttributes();
 
 			if(isContinuousCmdExec() && hadEffects) {
 				cancelContinousWithEffectsCmd();
 			}
 
+			releaseCmd();
 			cmd = null;
 			cancel();
 			endOrCancel();
@@ -294,20 +328,22 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 
 		final boolean ok = when();
 
-		if(loggerBinding != null) {
-			loggerBinding.log(Level.INFO, "Starting binding: " + ok);
+		if(loggerBinding != null && loggerBinding.isLoggable(Level.INFO)) {
+			loggerBinding.log(Level.INFO, () -> "Starting binding: " + ok);
 		}
+		TraceRecorder.getInstance().record(TraceEvent.BINDING_STARTED, this);
 
 		if(ok) {
 			cmd = createCommand();
 			first();
-			if(loggerCmd != null) {
-				loggerCmd.log(Level.INFO, "Command created and init: " + cmd);
+			if(loggerCmd != null && loggerCmd.isLoggable(Level.INFO)) {
+				loggerCmd.log(Level.INFO, () -> "Command created and init: " + cmd);
 			}
+			TraceRecorder.getInstance().record(TraceEvent.CMD_CREATED, cmd);
 		}else {
 			if(isStrictStart()) {
-				if(loggerBinding != null) {
-					loggerBinding.log(Level.INFO, "Cancelling starting interaction: " + interaction);
+				if(loggerBinding != null && loggerBinding.isLoggable(Level.INFO)) {
+					loggerBinding.log(Level.INFO, () -> "Cancelling starting interaction: " + interaction);
 				}
 				throw new CancelFSMException();
 			}
@@ -324,6 +360,7 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 		if(loggerBinding != null) {
 			loggerBinding.log(Level.INFO, "Binding updates");
 		}
+		TraceRecorder.getInstance().record(TraceEvent.BINDING_UPDATED, this);
 
 		if(createAndInitCommand()) {
 			if(loggerCmd != null) {
@@ -338,9 +375,10 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 				}
 				final boolean ok = cmd.doIt();
 
-				if(loggerCmd != null) {
-					loggerCmd.log(Level.INFO, "Continuous command execution had this result: " + ok);
+				if(loggerCmd != null && loggerCmd.isLoggable(Level.INFO)) {
+					loggerCmd.log(Level.INFO, () -> "Continuous command execution had this result: " + ok);
 				}
+				TraceRecorder.getInstance().record(ok ? TraceEvent.CMD_EXECUTED : TraceEvent.CMD_NOT_EXECUTABLE, cmd);
 
 				if(!ok) {
 					ifCannotExecuteCmd();
@@ -359,12 +397,13 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 		if(loggerBinding != null) {
 			loggerBinding.log(Level.INFO, "Binding stops");
 		}
+		TraceRecorder.getInstance().record(TraceEvent.BINDING_ENDED, this);
 
 		if(createAndInitCommand()) {
 			if(!continuousCmdExec) {
 				then();
-				if(loggerCmd != null) {
-					loggerCmd.log(Level.INFO, "Command updated: " + cmd);
+				if(loggerCmd != null && loggerCmd.isLoggable(Level.INFO)) {
+					loggerCmd.log(Level.INFO, () -> "Command updated: " + cmd);
 				}
 			}
 
@@ -374,11 +413,13 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 			timeEnded++;
 		}else {
 			if(cmd != null) {
-				if(loggerCmd != null) {
-					loggerCmd.log(Level.INFO, "Cancelling the command: " + cmd);
+				if(loggerCmd != null && loggerCmd.isLoggable(Level.INFO)) {
+					loggerCmd.log(Level.INFO, () -> "Cancelling the command: " + cmd);
 				}
+				TraceRecorder.getInstance().record(TraceEvent.CMD_CANCELLED, cmd);
 				cmd.cancel();
 				unbindCmdAttributes();
+				releaseCmd();
 				cmd = null;
 				timeCancelled++;
 			}
@@ -386,11 +427,26 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 	}
 
 
+	/**
+	 * Gives the current command, not used anymore, back to the command pool (if any).
+	 */
+	private void releaseCmd() {
+		releaseCmd(cmd);
+	}
+
+	private void releaseCmd(final C command) {
+		if(cmdPool != null) {
+			cmdPool.release(command);
+		}
+	}
+
+
 	protected boolean createAndInitCommand() {
-		boolean ok = when();
+		final boolean whenOK = when();
+		boolean ok = whenOK;
 
-		if(loggerBinding != null) {
-			loggerBinding.log(Level.INFO, "when predicate is {}", ok);
+		if(loggerBinding != null && loggerBinding.isLoggable(Level.INFO)) {
+			loggerBinding.log(Level.INFO, () -> "when predicate is " + whenOK);
 		}
 
 		if(ok) {
@@ -402,6 +458,7 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 				ok = cmd != null;
 				if(ok) {
 					first();
+					TraceRecorder.getInstance().record(TraceEvent.CMD_CREATED, cmd);
 				}
 			}
 		}
@@ -418,13 +475,64 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 		}
 	}
 
-	protected abstract void executeCmdAsync(final Command cmd);
+	/**
+	 * Executes the given command outside the UI thread using the AsyncCmdExecutor.
+	 * The end of the execution process (afterCmdExecuted) is then run in the UI thread.
+	 * If the execution of the command fails, the command is cancelled, flushed and released in the UI thread
+	 * (cf. afterCmdFailed). If the executor rejects the command (it is saturated), the command is cancelled,
+	 * flushed and released at once.
+	 * @param cmd The command to execute. Must be the command of this binding.
+	 */
+	protected void executeCmdAsync(final Command cmd) {
+		// The parameter is typed Command for compatibility purposes but this binding only executes its own commands.
+		@SuppressWarnings("unchecked") final C command = (C) cmd;
+		final boolean submitted = AsyncCmdExecutor.getInstance().execute(() -> {
+			try {
+				final boolean ok = command.doIt();
+				interaction.executeInUIThread(() -> afterCmdExecuted(command, ok));
+			}catch(final Throwable ex) {
+				interaction.executeInUIThread(() -> afterCmdFailed(command, ex));
+			}
+		});
+
+		if(!submitted) {
+			// The rejection has been reported by the executor
+			abortCmd(command);
+		}
+	}
+
+
+	/**
+	 * Ends the asynchronous execution of a command that failed: the command is cancelled, flushed
+	 * and given back to the command pool (if any). The error is reported to the ErrorCatcher.
+	 * Executed in the UI thread.
+	 * @param cmd The command whose execution failed.
+	 * @param ex The error thrown by the command.
+	 */
+	protected void afterCmdFailed(final C cmd, final Throwable ex) {
+		abortCmd(cmd);
+		ErrorCatcher.getInstance().reportError(ex);
+	}
+
+	/**
+	 * Cancels, flushes and releases a command whose asynchronous execution failed or has been rejected.
+	 */
+	private void abortCmd(final C cmd) {
+		if(loggerCmd != null && loggerCmd.isLoggable(Level.INFO)) {
+			loggerCmd.log(Level.INFO, () -> "Command execution failed: " + cmd);
+		}
+		TraceRecorder.getInstance().record(TraceEvent.CMD_CANCELLED, cmd);
+		cmd.cancel();
+		cmd.flush();
+		releaseCmd(cmd);
+	}
 
 
 	protected void afterCmdExecuted(final C cmd, final boolean ok) {
-		if(loggerCmd != null) {
-			loggerCmd.log(Level.INFO, "Command execution had this result: " + ok);
+		if(loggerCmd != null && loggerCmd.isLoggable(Level.INFO)) {
+			loggerCmd.log(Level.INFO, () -> "Command execution had this result: " + ok);
 		}
+		TraceRecorder.getInstance().record(ok ? TraceEvent.CMD_EXECUTED : TraceEvent.CMD_NOT_EXECUTABLE, cmd);
 
 		if(ok) {
 			end();
@@ -444,9 +552,10 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 
 		final boolean hadEffect = cmd.hadEffect();
 
-		if(loggerCmd != null) {
-			loggerCmd.log(Level.INFO, "Command execution had effect: " + hadEffect);
+		if(loggerCmd != null && loggerCmd.isLoggable(Level.INFO)) {
+			loggerCmd.log(Level.INFO, () -> "Command execution had effect: " + hadEffect);
 		}
+		TraceRecorder.getInstance().record(hadEffect ? TraceEvent.CMD_HAD_EFFECT : TraceEvent.CMD_HAD_NO_EFFECT, cmd);
 
 		if(hadEffect) {
 			if(cmd.getRegistrationPolicy() != Command.RegistrationPolicy.NONE) {
@@ -483,14 +592,15 @@ public abstract class WidgetBindingImpl<C extends Command, I extends Interaction
 	public void setActivated(final boolean activated) {
 		this.activated = activated;
 
-		if(loggerBinding != null) {
-			loggerBinding.log(Level.INFO, "Binding Activated: " + activated);
+		if(loggerBinding != null && loggerBinding.isLoggable(Level.INFO)) {
+			loggerBinding.log(Level.INFO, () -> "Binding Activated: " + activated);
 		}
 
 		interaction.setActivated(activated);
 		if(!activated && cmd != null) {
 			unbindCmdAttributes();
 			cmd.flush();
+			releaseCmd();
 			cmd = null;
 		}
 	}
@@ -74,6 +74,8 @@ public interface Command {
 
 	/**
 	 * Checks whether the current command can be cancelled by the given one.
+	 * Command classes should declare the types of their unregisterers using the UnregisteredBy annotation,
+	 * so that the commands registry only calls this method when relevant.
 	 * @param cmd The command to check whether it can cancel the current cmd.
 	 * @return True: The given command can cancel the current cmd.
 	 */
@@ -96,6 +98,15 @@ public interface Command {
 	 */
 	void cancel();
 
+	/**
+	 * Resets a flushed command so that it can be reused (cf. CommandPool): its status goes back to CREATED.
+	 * The command must have cleared its fields when flushed.
+	 * @return True if the command has been reset. False by default: the command cannot be reused.
+	 */
+	default boolean recycle() {
+		return false;
+	}
+
 	/**
 	 * Provides the status of the command.
 	 * @return The status of the command.
@@ -128,7 +139,7 @@ public interface Command {
 		CANCELLED,
 		/** When the command has been marked as done. */
 		DONE,
-		/** The command has been flushed. In this case, the cmd must not be used anymore. */
+		/** The command has been flushed. In this case, the cmd must not be used anymore, unless recycled. */
 		FLUSHED
 	}
 }
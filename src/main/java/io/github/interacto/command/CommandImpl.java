@@ -88,9 +88,15 @@ public abstract class CommandImpl implements Command {
 	}
 
 
+	/**
+	 * By default, the command is unregistered by the instances of the types declared using the
+	 * UnregisteredBy annotation. If no annotation is used, the command is never unregistered.
+	 * @param cmd The command to check whether it can cancel the current cmd.
+	 * @return True: The given command can cancel the current cmd.
+	 */
 	@Override
 	public boolean unregisteredBy(final Command cmd) {
-		return false;
+		return UnregistrationDecl.of(getClass()).isDeclaredUnregisterer(cmd);
 	}
 
 
@@ -120,6 +126,30 @@ public abstract class CommandImpl implements Command {
 	}
 
 
+	/**
+	 * Sets the status of a flushed command back to CREATED if the command has been reset (cf. resetForReuse).
+	 * @return True if the command was flushed and has been reset.
+	 */
+	@Override
+	public boolean recycle() {
+		if(status == CmdStatus.FLUSHED && resetForReuse()) {
+			status = CmdStatus.CREATED;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Commands are not reusable by default. A command opts in recycling (cf. CommandPool) by overriding this
+	 * operation: the override must clear all the fields of the command so that it behaves as a new one.
+	 * This operation is called by recycle on flushed commands only.
+	 * @return True if the fields of the command have been cleared. False by default.
+	 */
+	protected boolean resetForReuse() {
+		return false;
+	}
+
+
 	@Override
 	public CmdStatus getStatus() {
 		return status;
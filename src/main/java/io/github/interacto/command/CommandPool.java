@@ -0,0 +1,97 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A bounded pool of flushed commands that can be reused instead of created (cf. Command::recycle).
+ * Only the commands that opt in recycling (cf. CommandImpl::resetForReuse) can be pooled.
+ * A widget binding given a pool reuses the commands of the pool and releases its cancelled commands into it.
+ * @param <C> The type of the pooled commands.
+ * @author Arnaud Blouin
+ */
+public class CommandPool<C extends Command> {
+	private final Deque<C> free;
+	/** The commands of the pool, to check in constant time that a released command is not already pooled. */
+	private final Set<C> pooled;
+	private final int capacity;
+
+	/**
+	 * Creates an empty pool.
+	 * @param capacity The maximal number of commands the pool can contain.
+	 * @throws IllegalArgumentException If the capacity is lower than 1.
+	 */
+	public CommandPool(final int capacity) {
+		super();
+		if(capacity < 1) {
+			throw new IllegalArgumentException("The capacity of a command pool must be greater than 0: " + capacity);
+		}
+		this.capacity = capacity;
+		free = new ArrayDeque<>(capacity);
+		pooled = Collections.newSetFromMap(new IdentityHashMap<>(capacity));
+	}
+
+	/**
+	 * Takes a command from the pool.
+	 * @return A command whose status is CREATED, or null if the pool is empty.
+	 */
+	public synchronized C acquire() {
+		final C cmd = free.poll();
+		if(cmd != null) {
+			pooled.remove(cmd);
+		}
+		return cmd;
+	}
+
+	/**
+	 * Gives back a command to the pool. The command is flushed (if not already) and then recycled.
+	 * The command must not be used by any other object (e.g. the commands registry).
+	 * @param cmd The command to give back. Nothing done if null.
+	 * @return True if the command is now in the pool. False if the pool is full or the command cannot be recycled.
+	 */
+	public synchronized boolean release(final C cmd) {
+		if(cmd == null || free.size() >= capacity || pooled.contains(cmd)) {
+			return false;
+		}
+		if(cmd.getStatus() != Command.CmdStatus.FLUSHED) {
+			cmd.flush();
+		}
+		if(cmd.recycle()) {
+			free.push(cmd);
+			pooled.add(cmd);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return The number of commands in the pool.
+	 */
+	public synchronized int size() {
+		return free.size();
+	}
+
+	/**
+	 * @return The maximal number of commands the pool can contain.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -14,12 +14,27 @@
  */
 package io.github.interacto.command;
 
+import io.github.interacto.error.ErrorCatcher;
 import io.github.interacto.undo.UndoCollector;
 import io.github.interacto.undo.Undoable;
+import io.github.interacto.undo.UndoableGroup;
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.PublishSubject;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A register of commands.
@@ -28,14 +43,31 @@ import java.util.List;
  * @author Arnaud Blouin
  */
 public class CommandsRegistry {
+	/** The name of the thread that delivers the commands to the subscribers of the command feeds. */
+	public static final String FEED_THREAD_NAME = "interacto-cmd-feed";
+
 	/** The singleton. */
 	private static CommandsRegistry instance = new CommandsRegistry();
 
-	/** The saved commands. */
-	private final List<Command> cmds;
+	/** The saved commands, indexed to get constant-time membership, removal, and eviction. */
+	private final RegisteredCommands cmds;
 	/** The max number of cleanable commands (cf. Command::getRegistrationPolicy) that can contain the register. */
 	private int sizeMax;
 	private final PublishSubject<Command> cmdPublisher;
+	private final PublishSubject<List<Command>> batchPublisher;
+	/**
+	 * Held from the registration of undoable commands to their add to the undo collector, so that the undo history
+	 * follows the order of the register. Taken before the lock of the register.
+	 */
+	private final ReentrantLock undoLock;
+	/** The transaction in progress in each thread. Transactions are scoped to the thread that begins them. */
+	private final ThreadLocal<Transaction> transaction;
+	/** The notifications produced under the lock, to send once the lock is released. */
+	private final Queue<Runnable> notifications;
+	/** True while a thread sends the pending notifications. */
+	private final AtomicBoolean notifying;
+	/** The scheduler of the command feeds. Created on the first feed. */
+	private Scheduler feedScheduler;
 
 	/**
 	 * @return The single instance. Cannot be null.
@@ -59,29 +91,96 @@ public class CommandsRegistry {
 	 */
 	public CommandsRegistry() {
 		super();
-		cmds = new ArrayList<>();
+		cmds = new RegisteredCommands();
 		sizeMax = 50;
 		cmdPublisher = PublishSubject.create();
+		batchPublisher = PublishSubject.create();
+		undoLock = new ReentrantLock();
+		transaction = new ThreadLocal<>();
+		notifications = new ConcurrentLinkedQueue<>();
+		notifying = new AtomicBoolean();
 	}
 
 	/**
 	 * @return An RX observable objects that will provide the commands produced by the binding.
+	 *     The commands added during a transaction are not provided here but in a batch (cf. commandBatches).
 	 * */
 	public Observable<Command> commands() {
 		return cmdPublisher;
 	}
 
+	/**
+	 * A feed of the commands produced by the bindings (cf. commands()) for slow subscribers:
+	 * the commands are delivered on a dedicated thread, so that subscribers do not slow down the registry.
+	 * @param strategy How the commands are buffered when the subscriber is too slow:
+	 *     DROP drops the newest commands; LATEST keeps the latest command only; BUFFER drops the oldest buffered commands;
+	 *     ERROR signals a MissingBackpressureException; MISSING ignores backpressure.
+	 * @param capacity The number of commands buffered for the subscriber. Must be greater than 0.
+	 * @return A flowable of commands. Cannot be null.
+	 * @throws IllegalArgumentException If the strategy is null or the capacity lower than 1.
+	 */
+	public Flowable<Command> commands(final BackpressureStrategy strategy, final int capacity) {
+		return commands(strategy, capacity, getFeedScheduler());
+	}
 
 	/**
-	 * @return The stored commands. Cannot be null. Because of concurrency, you should not modify this list.
+	 * A feed of the commands produced by the bindings (cf. commands(BackpressureStrategy, int))
+	 * delivered on the given scheduler.
+	 * @param strategy How the commands are buffered when the subscriber is too slow.
+	 * @param capacity The number of commands buffered for the subscriber. Must be greater than 0.
+	 * @param scheduler The scheduler that delivers the commands.
+	 * @return A flowable of commands. Cannot be null.
+	 * @throws IllegalArgumentException If the strategy or the scheduler is null or the capacity lower than 1.
+	 */
+	public Flowable<Command> commands(final BackpressureStrategy strategy, final int capacity, final Scheduler scheduler) {
+		if(strategy == null || scheduler == null || capacity < 1) {
+			throw new IllegalArgumentException("Invalid command feed: " + strategy + ", " + capacity + ", " + scheduler);
+		}
+
+		final Flowable<Command> feed;
+		if(strategy == BackpressureStrategy.BUFFER) {
+			// Bounded: the oldest commands are dropped
+			feed = cmdPublisher.toFlowable(BackpressureStrategy.MISSING)
+				.onBackpressureBuffer(capacity, null, BackpressureOverflowStrategy.DROP_OLDEST);
+		}else {
+			feed = cmdPublisher.toFlowable(strategy);
+		}
+		return feed.observeOn(scheduler, false, capacity);
+	}
+
+	private synchronized Scheduler getFeedScheduler() {
+		if(feedScheduler == null) {
+			feedScheduler = Schedulers.from(Executors.newSingleThreadExecutor(job -> {
+				final Thread thread = new Thread(job, FEED_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+		return feedScheduler;
+	}
+
+	/**
+	 * @return An RX observable objects that will provide the commands registered by each committed transaction,
+	 *     in their order.
+	 */
+	public Observable<List<Command>> commandBatches() {
+		return batchPublisher;
+	}
+
+
+	/**
+	 * @return The stored commands, from the oldest to the newest one. Cannot be null.
+	 *     This is an immutable snapshot of the register that can be iterated without locking:
+	 *     it does not reflect the later changes of the register.
 	 */
 	public List<Command> getCommands() {
-		return cmds;
+		return cmds.snapshot();
 	}
 
 
 	/**
 	 * Removes and flushes the commands from the register that use the given command type.
+	 * Only the registered commands that may be unregistered by the given one are checked (cf. UnregisteredBy).
 	 * @see Command ::unregisteredBy
 	 * @param cmd The command that may cancels others.
 	 */
@@ -90,15 +189,10 @@ public class CommandsRegistry {
 			return;
 		}
 
-		int i = 0;
-
 		synchronized(cmds) {
-			while(i < cmds.size()) {
-				if(cmds.get(i).unregisteredBy(cmd)) {
-					cmds.remove(i).flush();
-				}else {
-					i++;
-				}
+			for(final Command registered : cmds.getUnregisteredBy(cmd)) {
+				cmds.remove(registered);
+				registered.flush();
 			}
 		}
 	}
@@ -108,33 +202,210 @@ public class CommandsRegistry {
 	 * Adds a command to the register. Before being added, the given command is used to cancel commands
 	 * already added. Handlers are notified of the add of the given command. If Undoable, the cmd is
 	 * added to the undo collector as well.
+	 * The handlers are notified, and the undo collector updated, once the lock of the register is released.
+	 * The undo collector is updated by the calling thread before this method returns, in the order of the register.
+	 * The handlers may be notified after this method returns, by another thread (cf. sendNotifications).
+	 * During a transaction of the calling thread, the command is only registered when the transaction is committed.
 	 * @param cmd The command to add. If null, nothing is done.
 	 */
 	public void addCommand(final Command cmd) {
+		final Transaction tx = transaction.get();
+		if(tx != null) {
+			synchronized(cmds) {
+				if(cmd != null && !cmds.contains(cmd)) {
+					tx.add(cmd);
+				}
+			}
+			return;
+		}
+
+		if(cmd instanceof Undoable) {
+			undoLock.lock();
+			try {
+				if(registerAndNotify(cmd)) {
+					UndoCollector.getInstance().add((Undoable) cmd);
+				}
+			}finally {
+				undoLock.unlock();
+			}
+		}else {
+			registerAndNotify(cmd);
+		}
+		sendNotifications();
+	}
+
+
+	private boolean registerAndNotify(final Command cmd) {
 		synchronized(cmds) {
-			if(cmd != null && !cmds.contains(cmd) &&
-				(sizeMax > 0 || cmd.getRegistrationPolicy() == Command.RegistrationPolicy.UNLIMITED)) {
-				unregisterCommand(cmd);
-
-				// If there is too many commands in the register, the oldest removable command is removed and flushed.
-				if(cmds.size() >= sizeMax) {
-					cmds.stream()
-						.filter(command -> command.getRegistrationPolicy() != Command.RegistrationPolicy.UNLIMITED)
-						.findFirst()
-						.ifPresent(command -> {
-							cmds.remove(command);
-							command.flush();
-						});
+			final boolean registered = register(cmd);
+			if(registered) {
+				notifications.add(() -> cmdPublisher.onNext(cmd));
+			}
+			return registered;
+		}
+	}
+
+
+	/**
+	 * Sends the pending notifications out of the lock.
+	 * A single thread sends them at a time, so that their order is kept. So, if another thread is sending notifications,
+	 * or if called by a handler during a notification, the notifications are sent by this other thread (resp. after the
+	 * current notification), and this method may return before they are sent.
+	 * A failing notification is reported (cf. ErrorCatcher) and does not prevent the next ones from being sent.
+	 */
+	private void sendNotifications() {
+		while(!notifications.isEmpty() && notifying.compareAndSet(false, true)) {
+			try {
+				Runnable notification = notifications.poll();
+				while(notification != null) {
+					sendNotification(notification);
+					notification = notifications.poll();
 				}
+			}finally {
+				notifying.set(false);
+			}
+		}
+	}
 
-				cmds.add(cmd);
-				cmdPublisher.onNext(cmd);
 
-				if(cmd instanceof Undoable) {
-					UndoCollector.getInstance().add((Undoable) cmd);
+	private static void sendNotification(final Runnable notification) {
+		try {
+			notification.run();
+		}catch(final RuntimeException ex) {
+			ErrorCatcher.getInstance().reportError(ex);
+		}
+	}
+
+
+	/**
+	 * Adds the command to the register, without any notification.
+	 * @return True if added.
+	 */
+	private boolean register(final Command cmd) {
+		if(cmd == null || cmds.contains(cmd) ||
+			(sizeMax <= 0 && cmd.getRegistrationPolicy() != Command.RegistrationPolicy.UNLIMITED)) {
+			return false;
+		}
+
+		unregisterCommand(cmd);
+
+		// If there is too many commands in the register, the oldest removable command is removed and flushed.
+		if(cmds.size() >= sizeMax) {
+			final Command evicted = cmds.pollOldestEvictable();
+			if(evicted != null) {
+				evicted.flush();
+			}
+		}
+
+		cmds.add(cmd);
+		return true;
+	}
+
+
+	/**
+	 * Begins a transaction in the current thread: the commands added by this thread until the transaction
+	 * is committed or rolled back are neither registered nor notified.
+	 * The commands added by the other threads are not part of the transaction.
+	 * Transactions can be nested: only the outermost one is committed.
+	 */
+	public void beginTransaction() {
+		Transaction tx = transaction.get();
+		if(tx == null) {
+			tx = new Transaction();
+			transaction.set(tx);
+		}
+		tx.depth++;
+	}
+
+
+	/**
+	 * Commits the current transaction of the current thread. If this is the outermost one, the commands added
+	 * during the transaction are registered and notified as a single batch (cf. commandBatches). The undoable ones are added
+	 * to the undo collector as a single undoable object (cf. UndoableGroup).
+	 * Nothing done if there is no transaction in the current thread.
+	 */
+	public void commitTransaction() {
+		final Transaction tx = transaction.get();
+		if(tx == null) {
+			return;
+		}
+		tx.depth--;
+		if(tx.depth > 0) {
+			return;
+		}
+		transaction.remove();
+
+		if(tx.undoable) {
+			undoLock.lock();
+			try {
+				final List<Undoable> undoables = commit(tx);
+				if(undoables.size() == 1) {
+					UndoCollector.getInstance().add(undoables.get(0));
+				}else if(!undoables.isEmpty()) {
+					UndoCollector.getInstance().add(new UndoableGroup(undoables));
 				}
+			}finally {
+				undoLock.unlock();
 			}
+		}else {
+			commit(tx);
 		}
+		sendNotifications();
+	}
+
+
+	/**
+	 * Registers the commands of the given transaction.
+	 * @return The registered undoable commands, in their order.
+	 */
+	private List<Undoable> commit(final Transaction tx) {
+		final List<Undoable> undoables = new ArrayList<>();
+		synchronized(cmds) {
+			final List<Command> registered = new ArrayList<>(tx.cmds.size());
+			for(final Command cmd : tx.cmds) {
+				if(register(cmd)) {
+					registered.add(cmd);
+					if(cmd instanceof Undoable) {
+						undoables.add((Undoable) cmd);
+					}
+				}
+			}
+
+			if(!registered.isEmpty()) {
+				notifications.add(() -> batchPublisher.onNext(Collections.unmodifiableList(registered)));
+			}
+		}
+		return undoables;
+	}
+
+
+	/**
+	 * Rolls back the current transaction of the current thread, and the enclosing ones: the undoable commands added
+	 * during the transaction are undone, from the last to the first one. All of them are then flushed.
+	 * Nothing done if there is no transaction in the current thread.
+	 */
+	public void rollbackTransaction() {
+		final Transaction tx = transaction.get();
+		if(tx == null) {
+			return;
+		}
+		transaction.remove();
+
+		for(int i = tx.cmds.size() - 1; i >= 0; i--) {
+			final Command cmd = tx.cmds.get(i);
+			if(cmd instanceof Undoable) {
+				((Undoable) cmd).undo();
+			}
+		}
+		tx.cmds.forEach(cmd -> cmd.flush());
+	}
+
+
+	/**
+	 * @return True if a transaction is in progress in the current thread.
+	 */
+	public boolean isInTransaction() {
+		return transaction.get() != null;
 	}
 
 
@@ -197,20 +468,35 @@ public class CommandsRegistry {
 	public void setSizeMax(final int newSizeMax) {
 		if(newSizeMax >= 0) {
 			synchronized(cmds) {
-				int i = 0;
-				int nb = 0;
-				final int toRemove = cmds.size() - newSizeMax;
-
-				while(nb < toRemove && i < cmds.size()) {
-					if(cmds.get(i).getRegistrationPolicy() != Command.RegistrationPolicy.UNLIMITED) {
-						cmds.remove(i).flush();
-						nb++;
-					}else {
-						i++;
-					}
+				Command evicted = cmds.size() > newSizeMax ? cmds.pollOldestEvictable() : null;
+
+				while(evicted != null) {
+					evicted.flush();
+					evicted = cmds.size() > newSizeMax ? cmds.pollOldestEvictable() : null;
 				}
 			}
 			sizeMax = newSizeMax;
 		}
 	}
+
+
+	/**
+	 * A transaction in progress, confined to the thread that began it.
+	 */
+	private static final class Transaction {
+		/** The number of begun and not committed nested transactions. */
+		int depth;
+		/** The commands added during the transaction, in their order. */
+		final List<Command> cmds = new ArrayList<>();
+		/** True if one of the commands is undoable. */
+		boolean undoable;
+		private final Set<Command> cmdsSet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		void add(final Command cmd) {
+			if(cmdsSet.add(cmd)) {
+				cmds.add(cmd);
+				undoable |= cmd instanceof Undoable;
+			}
+		}
+	}
 }
@@ -0,0 +1,133 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable list of commands that can be read concurrently without locking.
+ * Snapshots share their backing array: appending a command to the newest snapshot, or removing its first command,
+ * does not copy the array (amortised constant time). Other changes copy it.
+ * The slot of a removed first command is cleared, unless a published snapshot (cf. publish) still shows it,
+ * so that the array does not retain the removed commands.
+ * New snapshots must be created by a single thread at a time and published safely (e.g. through a volatile field).
+ */
+final class CommandsSnapshot extends AbstractList<Command> implements RandomAccess {
+	static final CommandsSnapshot EMPTY = new CommandsSnapshot(new Buffer(new Command[0], 0), 0, 0);
+
+	private final Buffer buffer;
+	private final int from;
+	private final int to;
+
+	private CommandsSnapshot(final Buffer buffer, final int from, final int to) {
+		super();
+		this.buffer = buffer;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @param cmds The commands of the snapshot, in their order.
+	 * @param size The number of commands.
+	 * @return A snapshot of the given commands.
+	 */
+	static CommandsSnapshot of(final Iterable<Command> cmds, final int size) {
+		final Command[] array = new Command[Math.max(8, size * 2)];
+		int i = 0;
+		for(final Command cmd : cmds) {
+			array[i] = cmd;
+			i++;
+		}
+		return new CommandsSnapshot(new Buffer(array, i), 0, i);
+	}
+
+	@Override
+	public Command get(final int i) {
+		Objects.checkIndex(i, size());
+		return buffer.cmds[from + i];
+	}
+
+	@Override
+	public int size() {
+		return to - from;
+	}
+
+	/**
+	 * @param cmd The command to append.
+	 * @return A snapshot made of the commands of this snapshot followed by the given one.
+	 */
+	CommandsSnapshot append(final Command cmd) {
+		// The slots after the end of the buffer are not visible to any snapshot: they can be written.
+		if(to == buffer.end && to < buffer.cmds.length) {
+			buffer.cmds[to] = cmd;
+			buffer.end++;
+			return new CommandsSnapshot(buffer, from, to + 1);
+		}
+
+		final Command[] array = new Command[Math.max(8, (size() + 1) * 2)];
+		System.arraycopy(buffer.cmds, from, array, 0, size());
+		array[size()] = cmd;
+		return new CommandsSnapshot(new Buffer(array, size() + 1), 0, size() + 1);
+	}
+
+	/**
+	 * @return A snapshot made of the commands of this snapshot but its first one. This snapshot must not be empty.
+	 */
+	CommandsSnapshot dropFirst() {
+		return new CommandsSnapshot(buffer, from + 1, to);
+	}
+
+	/**
+	 * Marks this snapshot as visible to readers: its commands will not be cleared (cf. clearFirst).
+	 * Can be called by any thread.
+	 */
+	void publish() {
+		buffer.publishedTo.accumulateAndGet(to, Math::max);
+	}
+
+	/**
+	 * Clears the slot of the first command of this snapshot, once the snapshot has been replaced by dropFirst.
+	 * @return False if a published snapshot shows this command: the slot is not cleared.
+	 */
+	boolean clearFirst() {
+		if(buffer.publishedTo.get() > from) {
+			return false;
+		}
+		buffer.cmds[from] = null;
+		return true;
+	}
+
+
+	/**
+	 * The array shared by snapshots.
+	 */
+	private static final class Buffer {
+		final Command[] cmds;
+		/** The number of written slots. */
+		int end;
+		/** The end of the published snapshot that ends last. */
+		final AtomicInteger publishedTo;
+
+		Buffer(final Command[] cmds, final int end) {
+			super();
+			this.cmds = cmds;
+			this.end = end;
+			publishedTo = new AtomicInteger();
+		}
+	}
+}
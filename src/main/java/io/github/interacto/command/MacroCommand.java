@@ -0,0 +1,227 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import io.github.interacto.undo.Undoable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A command composed of sub-commands executed in their order.
+ * Sub-commands that declare the resources they use are executed in parallel (on a fork/join pool)
+ * with the following ones that do not share any of these resources.
+ * A sub-command that does not declare its resources is executed alone.
+ * If a sub-command throws an exception, the undoable sub-commands already executed are undone
+ * from the last to the first one, then the exception is rethrown.
+ * The executed sub-commands that are not undoable keep their effects.
+ * @author Arnaud Blouin
+ */
+public class MacroCommand extends CommandImpl {
+	/** The sub-commands, in their order. */
+	protected final List<Command> cmds;
+	/** The resources declared by each sub-command, in the same order. Null if not declared. */
+	protected final List<Set<Object>> resources;
+	/** The sub-commands that have been successfully executed, in their order. */
+	protected final List<Command> executed;
+	private ForkJoinPool pool;
+
+	/**
+	 * Creates an empty macro command, executed on the common fork/join pool.
+	 */
+	public MacroCommand() {
+		super();
+		cmds = new ArrayList<>();
+		resources = new ArrayList<>();
+		executed = new ArrayList<>();
+		pool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Adds a sub-command that does not declare its resources: it will be executed alone.
+	 * @param cmd The sub-command. Nothing done if null.
+	 */
+	public void add(final Command cmd) {
+		if(cmd != null) {
+			cmds.add(cmd);
+			resources.add(null);
+		}
+	}
+
+	/**
+	 * Adds a sub-command that only uses the given resources: it can be executed in parallel
+	 * with the other sub-commands that do not use any of these resources (compared using equals).
+	 * @param cmd The sub-command. Nothing done if null.
+	 * @param usedResources The resources used by the sub-command. If empty, the sub-command is independent.
+	 */
+	public void add(final Command cmd, final Object... usedResources) {
+		if(cmd != null) {
+			cmds.add(cmd);
+			resources.add(usedResources == null ? Set.of() : new HashSet<>(Arrays.asList(usedResources)));
+		}
+	}
+
+	/**
+	 * @return The sub-commands, in their order. Cannot be null.
+	 */
+	public List<Command> getCommands() {
+		return Collections.unmodifiableList(cmds);
+	}
+
+	/**
+	 * @return The sub-commands successfully executed, in their order. Cannot be null.
+	 */
+	public List<Command> getExecutedCommands() {
+		return Collections.unmodifiableList(executed);
+	}
+
+	/**
+	 * Sets the pool that executes the sub-commands in parallel.
+	 * @param newPool The fork/join pool. Nothing done if null.
+	 */
+	public void setPool(final ForkJoinPool newPool) {
+		if(newPool != null) {
+			pool = newPool;
+		}
+	}
+
+	/**
+	 * @return True if the macro command has sub-commands and all of them can be executed.
+	 */
+	@Override
+	public boolean canDo() {
+		return !cmds.isEmpty() && cmds.stream().allMatch(cmd -> cmd.canDo());
+	}
+
+	@Override
+	protected void doCmdBody() {
+		executed.clear();
+		try {
+			executeWaves();
+		}catch(final RuntimeException ex) {
+			rollback(ex);
+			throw ex;
+		}
+	}
+
+	private void executeWaves() {
+		final List<Command> wave = new ArrayList<>();
+		final Set<Object> waveResources = new HashSet<>();
+
+		for(int i = 0, size = cmds.size(); i < size; i++) {
+			final Command cmd = cmds.get(i);
+			final Set<Object> cmdResources = resources.get(i);
+
+			if(cmdResources == null || !Collections.disjoint(waveResources, cmdResources)) {
+				execute(wave);
+				waveResources.clear();
+			}
+			wave.add(cmd);
+			if(cmdResources == null) {
+				execute(wave);
+			}else {
+				waveResources.addAll(cmdResources);
+			}
+		}
+		execute(wave);
+	}
+
+	/**
+	 * Executes the given sub-commands in parallel, then clears the list.
+	 * If sub-commands fail, the first failure is rethrown once all the sub-commands have completed.
+	 */
+	private void execute(final List<Command> wave) {
+		if(wave.size() == 1) {
+			final Command cmd = wave.get(0);
+			if(cmd.doIt()) {
+				executed.add(cmd);
+			}
+		}else if(wave.size() > 1) {
+			final List<ForkJoinTask<Boolean>> tasks = new ArrayList<>(wave.size());
+			wave.forEach(cmd -> tasks.add(pool.submit(cmd::doIt)));
+			RuntimeException failure = null;
+			// All the tasks are joined, even after a failure, so that the successful ones are recorded
+			for(int i = 0, size = wave.size(); i < size; i++) {
+				try {
+					if(tasks.get(i).join()) {
+						executed.add(wave.get(i));
+					}
+				}catch(final RuntimeException ex) {
+					if(failure == null) {
+						failure = ex;
+					}
+				}
+			}
+			if(failure != null) {
+				wave.clear();
+				throw failure;
+			}
+		}
+		wave.clear();
+	}
+
+	/**
+	 * Undoes the undoable executed sub-commands, from the last to the first one, and removes them
+	 * from the executed sub-commands.
+	 * @param failure The exception of the failing sub-command. The exceptions thrown while undoing are suppressed in it.
+	 */
+	private void rollback(final RuntimeException failure) {
+		for(int i = executed.size() - 1; i >= 0; i--) {
+			if(executed.get(i) instanceof Undoable) {
+				try {
+					((Undoable) executed.remove(i)).undo();
+				}catch(final RuntimeException ex) {
+					failure.addSuppressed(ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return True if the macro command is done and one of its executed sub-commands had effects.
+	 */
+	@Override
+	public boolean hadEffect() {
+		return isDone() && executed.stream().anyMatch(cmd -> cmd.hadEffect());
+	}
+
+	@Override
+	public void done() {
+		super.done();
+		if(isDone()) {
+			executed.forEach(cmd -> cmd.done());
+		}
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		cmds.forEach(cmd -> cmd.cancel());
+	}
+
+	@Override
+	public void flush() {
+		super.flush();
+		cmds.forEach(cmd -> cmd.flush());
+		cmds.clear();
+		resources.clear();
+		executed.clear();
+	}
+}
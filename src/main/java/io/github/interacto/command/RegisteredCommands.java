@@ -0,0 +1,461 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import java.util.AbstractSequentialList;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The storage of the commands registry: an insertion-ordered list of commands indexed by identity.
+ * A second list links the evictable commands (the ones whose registration policy is not UNLIMITED
+ * when added), from the oldest one to the newest one.
+ * So that membership, removal and eviction of the oldest evictable command run in constant time.
+ * The commands are also indexed by the types of the commands that can unregister them (cf. UnregisteredBy),
+ * so that unregistration only checks the relevant commands.
+ * A command cannot be stored twice. Commands are compared by identity, not using equals.
+ * This class is not thread-safe, but its immutable snapshot (cf. snapshot) can be read by any thread.
+ * Its changes must be done while holding its monitor.
+ */
+final class RegisteredCommands extends AbstractSequentialList<Command> {
+	/** The node of each stored command. */
+	private final Map<Command, Node> index;
+	/** The oldest stored command. */
+	private Node head;
+	/** The newest stored command. */
+	private Node tail;
+	/** The oldest evictable command. */
+	private Node evictHead;
+	/** The newest evictable command. */
+	private Node evictTail;
+	/**
+	 * The commands that declare their unregisterers, indexed by these unregisterers.
+	 * The sets are kept once empty, so that the cached targets remain valid.
+	 */
+	private final Map<Class<? extends Command>, Set<Node>> byUnregisterer;
+	/** The entries of byUnregisterer whose type is a super type of a given command type. Cleared when a type is indexed. */
+	private final Map<Class<?>, Map<Class<? extends Command>, Set<Node>>> targets;
+	/** The commands that do not declare their unregisterers and that must be checked on each unregistration. */
+	private final Set<Node> checkedByAll;
+	/**
+	 * The immutable copy of the list. Updated when a command is appended or the first one removed.
+	 * Null when out of date: it is then rebuilt on the next read.
+	 */
+	private volatile CommandsSnapshot snapshot;
+
+	RegisteredCommands() {
+		super();
+		index = new IdentityHashMap<>();
+		byUnregisterer = new HashMap<>();
+		targets = new HashMap<>();
+		checkedByAll = new LinkedHashSet<>();
+		snapshot = CommandsSnapshot.EMPTY;
+	}
+
+	/**
+	 * @return An immutable copy of the list, that can be read without locking. Cannot be null.
+	 *     Locks the list only when the copy is out of date.
+	 */
+	List<Command> snapshot() {
+		CommandsSnapshot current = snapshot;
+		// Published before checking that it is still the current snapshot: unlink then sees it is published.
+		while(current != null) {
+			current.publish();
+			if(current == snapshot) {
+				return current;
+			}
+			current = snapshot;
+		}
+
+		synchronized(this) {
+			if(snapshot == null) {
+				snapshot = CommandsSnapshot.of(this, size());
+			}
+			snapshot.publish();
+			return snapshot;
+		}
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public boolean contains(final Object obj) {
+		return index.containsKey(obj);
+	}
+
+	@Override
+	public boolean add(final Command cmd) {
+		linkBefore(cmd, null);
+		return true;
+	}
+
+	@Override
+	public boolean remove(final Object obj) {
+		final Node node = index.remove(obj);
+		if(node == null) {
+			return false;
+		}
+		unlink(node);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		index.clear();
+		head = null;
+		tail = null;
+		evictHead = null;
+		evictTail = null;
+		byUnregisterer.clear();
+		targets.clear();
+		checkedByAll.clear();
+		snapshot = CommandsSnapshot.EMPTY;
+		modCount++;
+	}
+
+	@Override
+	public ListIterator<Command> listIterator(final int position) {
+		if(position < 0 || position > size()) {
+			throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+		}
+		return new Itr(position);
+	}
+
+	/**
+	 * Removes the oldest evictable command.
+	 * @return The removed command or null if no evictable command is stored.
+	 */
+	Command pollOldestEvictable() {
+		if(evictHead == null) {
+			return null;
+		}
+		final Node node = evictHead;
+		index.remove(node.cmd);
+		unlink(node);
+		return node.cmd;
+	}
+
+	/**
+	 * @param cmd The command that may unregister stored commands.
+	 * @return The stored commands that the given command unregisters (cf. Command::unregisteredBy).
+	 *     Only the commands that may be unregistered by the given one are checked.
+	 */
+	List<Command> getUnregisteredBy(final Command cmd) {
+		final List<Command> unregistered = new ArrayList<>();
+
+		for(final Node node : checkedByAll) {
+			if(node.cmd.unregisteredBy(cmd)) {
+				unregistered.add(node.cmd);
+			}
+		}
+
+		for(final Map.Entry<Class<? extends Command>, Set<Node>> entry : getTargets(cmd.getClass()).entrySet()) {
+			for(final Node node : entry.getValue()) {
+				// A command that declares several types of the given command is checked once, for the first one.
+				if(node.decl.firstDeclaredUnregisterer(cmd) == entry.getKey() && node.cmd.unregisteredBy(cmd)) {
+					unregistered.add(node.cmd);
+				}
+			}
+		}
+		return unregistered;
+	}
+
+	private Map<Class<? extends Command>, Set<Node>> getTargets(final Class<?> type) {
+		Map<Class<? extends Command>, Set<Node>> typeTargets = targets.get(type);
+		if(typeTargets == null) {
+			typeTargets = new HashMap<>();
+			for(final Map.Entry<Class<? extends Command>, Set<Node>> entry : byUnregisterer.entrySet()) {
+				if(entry.getKey().isAssignableFrom(type)) {
+					typeTargets.put(entry.getKey(), entry.getValue());
+				}
+			}
+			targets.put(type, typeTargets);
+		}
+		return typeTargets;
+	}
+
+	/**
+	 * Inserts the given command before the given node.
+	 * @param cmd The command to add.
+	 * @param succ The node that will follow the new one. Null: the command is added at the end.
+	 * @throws IllegalArgumentException If the command is null or already stored.
+	 */
+	private void linkBefore(final Command cmd, final Node succ) {
+		if(cmd == null || index.containsKey(cmd)) {
+			throw new IllegalArgumentException("Null or already registered command: " + cmd);
+		}
+
+		final Node node = new Node(cmd, cmd.getRegistrationPolicy() != Command.RegistrationPolicy.UNLIMITED);
+		node.next = succ;
+		node.prev = succ == null ? tail : succ.prev;
+		if(node.prev == null) {
+			head = node;
+		}else {
+			node.prev.next = node;
+		}
+		if(succ == null) {
+			tail = node;
+		}else {
+			succ.prev = node;
+		}
+
+		if(node.evictable) {
+			linkEvictable(node);
+		}
+
+		indexUnregisterers(node);
+		index.put(cmd, node);
+		final CommandsSnapshot current = snapshot;
+		snapshot = succ == null && current != null ? current.append(cmd) : null;
+		modCount++;
+	}
+
+	private void linkEvictable(final Node node) {
+		// Looking for the previous evictable node. Constant time when adding at the end of the list.
+		Node before = node.prev;
+		while(before != null && !before.evictable) {
+			before = before.prev;
+		}
+
+		node.prevEvict = before;
+		node.nextEvict = before == null ? evictHead : before.nextEvict;
+		if(before == null) {
+			evictHead = node;
+		}else {
+			before.nextEvict = node;
+		}
+		if(node.nextEvict == null) {
+			evictTail = node;
+		}else {
+			node.nextEvict.prevEvict = node;
+		}
+	}
+
+	private void indexUnregisterers(final Node node) {
+		if(node.decl.checkedByAll) {
+			checkedByAll.add(node);
+		}
+		for(final Class<? extends Command> type : node.decl.unregisterers) {
+			Set<Node> nodes = byUnregisterer.get(type);
+			if(nodes == null) {
+				nodes = new LinkedHashSet<>();
+				byUnregisterer.put(type, nodes);
+				targets.clear();
+			}
+			nodes.add(node);
+		}
+	}
+
+	private void unindexUnregisterers(final Node node) {
+		if(node.decl.checkedByAll) {
+			checkedByAll.remove(node);
+		}
+		for(final Class<? extends Command> type : node.decl.unregisterers) {
+			byUnregisterer.get(type).remove(node);
+		}
+	}
+
+	private void unlink(final Node node) {
+		final boolean first = node == head;
+		unindexUnregisterers(node);
+		if(node.prev == null) {
+			head = node.next;
+		}else {
+			node.prev.next = node.next;
+		}
+		if(node.next == null) {
+			tail = node.prev;
+		}else {
+			node.next.prev = node.prev;
+		}
+
+		if(node.evictable) {
+			if(node.prevEvict == null) {
+				evictHead = node.nextEvict;
+			}else {
+				node.prevEvict.nextEvict = node.nextEvict;
+			}
+			if(node.nextEvict == null) {
+				evictTail = node.prevEvict;
+			}else {
+				node.nextEvict.prevEvict = node.prevEvict;
+			}
+		}
+		final CommandsSnapshot current = snapshot;
+		if(first && current != null) {
+			snapshot = current.dropFirst();
+			// Cleared once replaced, so that the readers that got the current snapshot published it (cf. snapshot).
+			// If a reader shows the removed command, the snapshot is rebuilt so that it does not retain this command.
+			if(!current.clearFirst()) {
+				snapshot = null;
+			}
+		}else {
+			snapshot = null;
+		}
+		modCount++;
+	}
+
+
+	private static final class Node {
+		final Command cmd;
+		final boolean evictable;
+		final UnregistrationDecl decl;
+		Node prev;
+		Node next;
+		Node prevEvict;
+		Node nextEvict;
+
+		Node(final Command cmd, final boolean evictable) {
+			super();
+			this.cmd = cmd;
+			this.evictable = evictable;
+			decl = UnregistrationDecl.of(cmd.getClass());
+		}
+	}
+
+
+	private final class Itr implements ListIterator<Command> {
+		private Node nextNode;
+		private Node lastReturned;
+		private int nextIndex;
+		private int expectedModCount;
+
+		Itr(final int position) {
+			super();
+			nextNode = head;
+			for(int i = 0; i < position; i++) {
+				nextNode = nextNode.next;
+			}
+			nextIndex = position;
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nextIndex < size();
+		}
+
+		@Override
+		public Command next() {
+			checkForComodification();
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			lastReturned = nextNode;
+			nextNode = nextNode.next;
+			nextIndex++;
+			return lastReturned.cmd;
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return nextIndex > 0;
+		}
+
+		@Override
+		public Command previous() {
+			checkForComodification();
+			if(!hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			nextNode = nextNode == null ? tail : nextNode.prev;
+			lastReturned = nextNode;
+			nextIndex--;
+			return lastReturned.cmd;
+		}
+
+		@Override
+		public int nextIndex() {
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return nextIndex - 1;
+		}
+
+		@Override
+		public void remove() {
+			checkForComodification();
+			if(lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			if(nextNode == lastReturned) {
+				nextNode = lastReturned.next;
+			}else {
+				nextIndex--;
+			}
+			index.remove(lastReturned.cmd);
+			unlink(lastReturned);
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+
+		/**
+		 * Replaces the last returned command: its node is unlinked and a node of the given command
+		 * is linked at the same position (and indexed according to the policy of the new command).
+		 * @throws IllegalArgumentException If the given command is null or already stored at another position.
+		 */
+		@Override
+		public void set(final Command cmd) {
+			checkForComodification();
+			if(lastReturned == null) {
+				throw new IllegalStateException();
+			}
+			if(cmd == lastReturned.cmd) {
+				return;
+			}
+			if(cmd == null || index.containsKey(cmd)) {
+				throw new IllegalArgumentException("Null or already registered command: " + cmd);
+			}
+			final Node succ = lastReturned.next;
+			final boolean returnedByPrevious = nextNode == lastReturned;
+			index.remove(lastReturned.cmd);
+			unlink(lastReturned);
+			linkBefore(cmd, succ);
+			lastReturned = index.get(cmd);
+			if(returnedByPrevious) {
+				nextNode = lastReturned;
+			}
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public void add(final Command cmd) {
+			checkForComodification();
+			linkBefore(cmd, nextNode);
+			lastReturned = null;
+			nextIndex++;
+			expectedModCount = modCount;
+		}
+
+		private void checkForComodification() {
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import io.github.interacto.undo.Undoable;
+import io.github.interacto.undo.UndoableGroup;
+import java.util.List;
+import java.util.ResourceBundle;
+
+/**
+ * A macro command that can be undone when all its sub-commands are undoable.
+ * Undoing undoes the executed sub-commands from the last to the first one. Redoing redoes them in their order.
+ * @author Arnaud Blouin
+ */
+public class UndoableMacroCommand extends MacroCommand implements Undoable {
+	private final String undoName;
+
+	/**
+	 * Creates an empty undoable macro command.
+	 * @param undoName The name of the macro command, used for undo and redo. Can be null.
+	 */
+	public UndoableMacroCommand(final String undoName) {
+		super();
+		this.undoName = undoName;
+	}
+
+	/**
+	 * @return True if the macro command has sub-commands, all of them are undoable and can be executed.
+	 */
+	@Override
+	public boolean canDo() {
+		return cmds.stream().allMatch(cmd -> cmd instanceof Undoable) && super.canDo();
+	}
+
+	/**
+	 * @return The executed sub-commands. They are undoable as the macro command can be executed only
+	 *     when all its sub-commands are undoable (cf. canDo).
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Undoable> getExecutedUndoables() {
+		return (List<Undoable>) (List<?>) executed;
+	}
+
+	@Override
+	public void undo() {
+		UndoableGroup.undoAll(getExecutedUndoables());
+	}
+
+	@Override
+	public void redo() {
+		UndoableGroup.redoAll(getExecutedUndoables());
+	}
+
+	@Override
+	public String getUndoName(final ResourceBundle bundle) {
+		return undoName;
+	}
+
+	@Override
+	public long getRetainedSize() {
+		return UndoableGroup.retainedSizeOf(getExecutedUndoables());
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * To put on a command class to declare the types of the commands that can unregister its instances
+ * (cf. Command::unregisteredBy).
+ * The commands registry then only checks the annotated commands when such a command is added,
+ * instead of checking every registered command.
+ * The default implementation of CommandImpl::unregisteredBy returns true for instances of the declared types.
+ * Commands that neither use this annotation nor override CommandImpl::unregisteredBy are never unregistered.
+ * @author Arnaud Blouin
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface UnregisteredBy {
+	/**
+	 * @return The types of the commands that can unregister the annotated command.
+	 */
+	Class<? extends Command>[] value();
+}
@@ -0,0 +1,86 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import java.util.List;
+
+/**
+ * The unregistration declaration of a command type, cached per type.
+ * Used by the commands registry to only check the commands that can be unregistered by an added command.
+ */
+final class UnregistrationDecl {
+	private static final ClassValue<UnregistrationDecl> DECLS = new ClassValue<>() {
+		@Override
+		protected UnregistrationDecl computeValue(final Class<?> type) {
+			return new UnregistrationDecl(type);
+		}
+	};
+
+	/**
+	 * @param type The command type to analyse.
+	 * @return The unregistration declaration of the given type. Cannot be null.
+	 */
+	static UnregistrationDecl of(final Class<?> type) {
+		return DECLS.get(type);
+	}
+
+	/** The types declared using UnregisteredBy. Empty if no declaration. */
+	final List<Class<? extends Command>> unregisterers;
+
+	/** True: the type does not declare its unregisterers but overrides unregisteredBy, so it must be always checked. */
+	final boolean checkedByAll;
+
+	private UnregistrationDecl(final Class<?> type) {
+		super();
+		final UnregisteredBy decl = type.getAnnotation(UnregisteredBy.class);
+
+		if(decl == null) {
+			unregisterers = List.of();
+			checkedByAll = overridesUnregisteredBy(type);
+		}else {
+			unregisterers = List.of(decl.value());
+			checkedByAll = false;
+		}
+	}
+
+	/**
+	 * @param cmd The command that may unregister commands of the analysed type.
+	 * @return True: the given command is an instance of a declared type.
+	 */
+	boolean isDeclaredUnregisterer(final Command cmd) {
+		return firstDeclaredUnregisterer(cmd) != null;
+	}
+
+	/**
+	 * @param cmd The command that may unregister commands of the analysed type.
+	 * @return The first declared type the given command is an instance of, or null.
+	 */
+	Class<? extends Command> firstDeclaredUnregisterer(final Command cmd) {
+		for(final Class<? extends Command> type : unregisterers) {
+			if(type.isInstance(cmd)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	private static boolean overridesUnregisteredBy(final Class<?> type) {
+		try {
+			return type.getMethod("unregisteredBy", Command.class).getDeclaringClass() != CommandImpl.class;
+		}catch(final NoSuchMethodException ex) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,590 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.fsm;
+
+import io.github.interacto.interaction.TimerService;
+import io.github.interacto.logging.TraceEvent;
+import io.github.interacto.logging.TraceRecorder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+
+/**
+ * An FSM that runs a shared FSMDefinition.
+ * The behaviour of the FSM (guards, actions, dispatch tables) is defined once in the definition:
+ * an instance only holds the state of its execution (current state, started flag, timeout in progress, pending events).
+ * Its states and transitions are views of the definition created on demand, for example by getCurrentState or getStates:
+ * an FSM whose states are not inspected does not hold them. The views belong to the FSM and delegate to it,
+ * so that they can be used as the states and transitions of any FSM (e.g. executing a transition of
+ * getCurrentState().getTransitions() executes it in this FSM). Since the events are processed using
+ * the transition table of the definition, transitions cannot be added to the views.
+ * The currentState attribute is not maintained: getCurrentState must be used.
+ * @param <E> The type of events the FSM processes.
+ */
+public class DefinedFSM<E> extends FSM<E> {
+	/** The definition run by this FSM. */
+	protected final FSMDefinition<E> definition;
+	/** The index of the current state in the definition. */
+	protected int current;
+	/** The index of the timeout transition in progress, -1 if none. Read by the timer thread. */
+	private volatile int timeoutTransition;
+	/** The timeout in progress. Null if none. Read by the timer thread. */
+	private volatile Future<?> timeoutFuture;
+	/** Set by the timer thread when the timeout is reached. */
+	private volatile boolean timeouted;
+	/** The views of the states by index, created on demand (the initial state is initState). Null until a view is created. */
+	private List<State<E>> stateViews;
+
+	/**
+	 * Creates an FSM that runs the given definition.
+	 * @param definition The definition to run. Can be shared with other FSMs.
+	 * @throws IllegalArgumentException If the definition is null.
+	 */
+	public DefinedFSM(final FSMDefinition<E> definition) {
+		super(initFactory(definition), new HashSet<>());
+		this.definition = definition;
+		current = 0;
+		timeoutTransition = -1;
+		startingState = getStateView(definition.getStartingState());
+	}
+
+	private static <E> Function<FSM<E>, InitState<E>> initFactory(final FSMDefinition<E> definition) {
+		if(definition == null) {
+			throw new IllegalArgumentException("null definition");
+		}
+		return InitView::new;
+	}
+
+	/**
+	 * @return The definition run by this FSM.
+	 */
+	public FSMDefinition<E> getDefinition() {
+		return definition;
+	}
+
+	/**
+	 * @return The index of the current state in the definition.
+	 */
+	public int getCurrentStateIndex() {
+		return current;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The view of the current state is created if not already done.
+	 */
+	@Override
+	public OutputState<E> getCurrentState() {
+		return (OutputState<E>) getStateView(current);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The views of all the states are created if not already done.
+	 */
+	@Override
+	public Set<State<E>> getStates() {
+		for(int i = 1; i < definition.getStateCount(); i++) {
+			getStateView(i);
+		}
+		return super.getStates();
+	}
+
+	/**
+	 * @return The view of the given state of the definition, created if not already done.
+	 */
+	State<E> getStateView(final int state) {
+		if(state == 0) {
+			return initState;
+		}
+		if(stateViews == null) {
+			stateViews = new ArrayList<>(Collections.nCopies(definition.getStateCount(), null));
+		}
+		State<E> view = stateViews.get(state);
+		if(view == null) {
+			view = createStateView(state);
+			stateViews.set(state, view);
+			states.add(view);
+		}
+		return view;
+	}
+
+	private State<E> createStateView(final int state) {
+		final String name = definition.getStateName(state);
+		switch(definition.getStateKind(state)) {
+			case TERMINAL:
+				return new TerminalView<>(this, name, state);
+			case CANCELLING:
+				return new CancellingState<>(this, name);
+			default:
+				return new StdView<>(this, name, state);
+		}
+	}
+
+	/**
+	 * Creates the views of the transitions of the given state. They register themselves in the view of the state.
+	 */
+	void createTransitionViews(final int state) {
+		for(int i = 0; i < definition.getTransitionCount(); i++) {
+			final FSMDefinition.TransitionDef<E> tr = definition.getTransition(i);
+			if(tr.src == state) {
+				final OutputState<E> src = (OutputState<E>) getStateView(tr.src);
+				final InputState<E> tgt = (InputState<E>) getStateView(tr.tgt);
+				if(tr.timeout == null) {
+					new TransitionView<>(src, tgt, tr);
+				}else {
+					new TimeoutView<>(src, tgt, i, tr.timeout);
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Only the transitions of the current state that the transition table of the definition
+	 * associates with the key of the event are tried: their accepted events are not checked again.
+	 */
+	@Override
+	public boolean process(final E event) {
+		if(event == null) {
+			return false;
+		}
+		final int row = definition.getRow(current, event);
+		final int end = definition.getRowEnd(row);
+		for(int i = definition.getRowStart(row); i < end; i++) {
+			try {
+				if(execute(definition.getTransition(definition.getTableEntry(i)), event)) {
+					return true;
+				}
+			}catch(final CancelFSMException ignored) {
+				// Already processed
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Executes the given event transition if its guard accepts the event (cf. Transition::execute).
+	 */
+	private boolean execute(final FSMDefinition.TransitionDef<E> tr, final E event) throws CancelFSMException {
+		if(!tr.guard.test(event)) {
+			return false;
+		}
+		stopCurrentTimeout();
+		tr.action.accept(event);
+		exitState(tr.src);
+		enterState(tr.tgt);
+		return true;
+	}
+
+	/**
+	 * Exits the given state (cf. OutputState::exit): only exiting the initial state may start the FSM.
+	 */
+	void exitState(final int state) throws CancelFSMException {
+		if(state == 0) {
+			checkStartingState(state);
+		}
+	}
+
+	/**
+	 * Enters the given state (cf. InputState::enter).
+	 */
+	void enterState(final int state) throws CancelFSMException {
+		switch(definition.getStateKind(state)) {
+			case STD:
+				checkStartingState(state);
+				enterStd(state);
+				break;
+			case TERMINAL:
+				checkStartingState(state);
+				onTerminating();
+				break;
+			case CANCELLING:
+				onCancelling();
+				break;
+			default:
+				// The initial state cannot be entered
+				break;
+		}
+	}
+
+	/**
+	 * Starts the FSM if the given state is its starting state (cf. State::checkStartingState).
+	 */
+	private void checkStartingState(final int state) throws CancelFSMException {
+		if(!started && definition.getStartingState() == state) {
+			onStarting();
+		}
+	}
+
+	/**
+	 * Enters the given standard state (cf. FSM::enterStdState).
+	 */
+	private void enterStd(final int state) throws CancelFSMException {
+		moveTo(state);
+		checkTimeoutTransition();
+		if(started) {
+			onUpdating();
+		}
+	}
+
+	@Override
+	protected void enterStdState(final StdState<E> state) throws CancelFSMException {
+		enterStd(indexOf(state));
+	}
+
+	@Override
+	protected void setCurrentState(final OutputState<E> state) {
+		moveTo(indexOf(state));
+	}
+
+	private static int indexOf(final OutputState<?> state) {
+		return state instanceof StdView<?> ? ((StdView<?>) state).index : 0;
+	}
+
+	/**
+	 * Changes the current state. The views of the states are created only if the state changes are observed.
+	 */
+	private void moveTo(final int state) {
+		final int old = current;
+		current = state;
+		if(hasStateObserver()) {
+			notifyStateChanged((OutputState<E>) getStateView(old), (OutputState<E>) getStateView(state));
+		}
+	}
+
+	/**
+	 * Launches the timeout transition of the current state, if any.
+	 */
+	@Override
+	protected void checkTimeoutTransition() {
+		final int tr = definition.getTimeoutTransition(current);
+		if(tr >= 0) {
+			startTimeout(tr);
+		}
+	}
+
+	/**
+	 * Launches the given timeout transition (cf. TimeoutTransition::startTimeout).
+	 */
+	void startTimeout(final int tr) {
+		if(logger != null) {
+			logger.log(Level.INFO, "Timeout starting");
+		}
+		timeoutTransition = tr;
+
+		// Nothing done if a timeout is already in progress
+		if(timeoutFuture == null || timeoutFuture.isDone()) {
+			final long time = definition.getTransition(tr).timeout.getAsLong();
+
+			// If incorrect duration value, no timer used
+			if(time <= 0L) {
+				onTimeout();
+				return;
+			}
+
+			timeoutFuture = TimerService.getInstance().schedule(() -> {
+				// There is a timeoutDuration and the interaction must be notified of that.
+				timeouted = true;
+				onTimeout();
+			}, time);
+		}
+	}
+
+	/**
+	 * Stops the given timeout transition if it is in progress (cf. TimeoutTransition::stopTimeout).
+	 */
+	void stopTimeout(final int tr) {
+		if(timeoutTransition == tr) {
+			cancelTimeout();
+		}
+	}
+
+	@Override
+	protected void stopCurrentTimeout() {
+		if(timeoutTransition >= 0) {
+			if(logger != null) {
+				logger.log(Level.INFO, "Timeout stopped");
+			}
+			cancelTimeout();
+		}
+	}
+
+	private void cancelTimeout() {
+		final Future<?> future = timeoutFuture;
+		if(future != null) {
+			future.cancel(false);
+			timeoutFuture = null;
+		}
+		timeoutTransition = -1;
+	}
+
+	/**
+	 * @return True if the timeout of the given timeout transition has been reached.
+	 */
+	boolean isTimeouted(final int tr) {
+		return timeouted && timeoutTransition == tr;
+	}
+
+	/**
+	 * Executes the given timeout transition if its timeout has been reached (cf. TimeoutTransition::execute).
+	 * @return True if the transition has been executed.
+	 */
+	boolean executeTimeout(final int tr) throws CancelFSMException {
+		if(!isTimeouted(tr)) {
+			return false;
+		}
+		timeouted = false;
+		// The timeout is over: the target state can launch its own timeout
+		timeoutFuture = null;
+		timeoutTransition = -1;
+		final FSMDefinition.TransitionDef<E> def = definition.getTransition(tr);
+		exitState(def.src);
+		enterState(def.tgt);
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Executes the timeout transition in progress if its timeout has been reached.
+	 */
+	@Override
+	protected void onTimeout() {
+		final int tr = timeoutTransition;
+		if(tr < 0) {
+			return;
+		}
+		if(logger != null) {
+			logger.log(Level.INFO, "Timeout");
+		}
+		TraceRecorder.getInstance().record(TraceEvent.FSM_TIMEOUT, this);
+
+		try {
+			executeTimeout(tr);
+		}catch(final CancelFSMException ignored) {
+			// Already processed
+		}
+	}
+
+	@Override
+	public void reinit() {
+		cancelTimeout();
+		timeouted = false;
+		super.reinit();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Nothing done: the events are always dispatched through the transition table of the definition.
+	 */
+	@Override
+	public void setIndexedDispatch(final Function<? super E, ?> keyProvider) {
+		// The definition already has its dispatch table
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The views of the states are created again if requested.
+	 */
+	@Override
+	protected void uninstallStates() {
+		super.uninstallStates();
+		stateViews = null;
+	}
+
+	/**
+	 * Transitions cannot be added to the views: the events are processed using the transition table of the definition.
+	 */
+	static void checkAddedTransition(final Transition<?> tr) {
+		if(!(tr instanceof TransitionView<?>) && !(tr instanceof TimeoutView<?>)) {
+			throw new UnsupportedOperationException("The transitions of a DefinedFSM are defined by its definition");
+		}
+	}
+
+	/**
+	 * The view of the initial state of the definition.
+	 * @param <E> The type of events the FSM processes.
+	 */
+	static class InitView<E> extends InitState<E> {
+		private boolean transitionsCreated;
+
+		InitView(final FSM<E> stateMachine) {
+			super(stateMachine, FSMDefinition.INIT_STATE);
+		}
+
+		@Override
+		public void exit() throws CancelFSMException {
+			((DefinedFSM<E>) fsm).exitState(0);
+		}
+
+		@Override
+		public List<Transition<E>> getTransitions() {
+			if(!transitionsCreated) {
+				transitionsCreated = true;
+				((DefinedFSM<E>) fsm).createTransitionViews(0);
+			}
+			return super.getTransitions();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @throws UnsupportedOperationException If the transition is not a view of a transition of the definition.
+		 */
+		@Override
+		public void addTransition(final Transition<E> tr) {
+			checkAddedTransition(tr);
+			super.addTransition(tr);
+		}
+	}
+
+	/**
+	 * The view of a standard state of the definition.
+	 * @param <E> The type of events the FSM processes.
+	 */
+	static class StdView<E> extends StdState<E> {
+		final int index;
+		private boolean transitionsCreated;
+
+		StdView(final FSM<E> stateMachine, final String stateName, final int index) {
+			super(stateMachine, stateName);
+			this.index = index;
+		}
+
+		@Override
+		public void enter() throws CancelFSMException {
+			((DefinedFSM<E>) fsm).enterState(index);
+		}
+
+		@Override
+		public List<Transition<E>> getTransitions() {
+			if(!transitionsCreated) {
+				transitionsCreated = true;
+				((DefinedFSM<E>) fsm).createTransitionViews(index);
+			}
+			return super.getTransitions();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @throws UnsupportedOperationException If the transition is not a view of a transition of the definition.
+		 */
+		@Override
+		public void addTransition(final Transition<E> tr) {
+			checkAddedTransition(tr);
+			super.addTransition(tr);
+		}
+	}
+
+	/**
+	 * The view of a terminal state of the definition.
+	 * @param <E> The type of events the FSM processes.
+	 */
+	static class TerminalView<E> extends TerminalState<E> {
+		private final int index;
+
+		TerminalView(final FSM<E> stateMachine, final String stateName, final int index) {
+			super(stateMachine, stateName);
+			this.index = index;
+		}
+
+		@Override
+		public void enter() throws CancelFSMException {
+			((DefinedFSM<E>) fsm).enterState(index);
+		}
+	}
+
+	/**
+	 * The view of an event transition of the definition. Executing it executes the transition in the FSM.
+	 * @param <E> The type of events the FSM processes.
+	 */
+	static class TransitionView<E> extends Transition<E> {
+		private final FSMDefinition.TransitionDef<E> def;
+
+		TransitionView(final OutputState<E> srcState, final InputState<E> tgtState, final FSMDefinition.TransitionDef<E> def) {
+			super(srcState, tgtState);
+			this.def = def;
+		}
+
+		@Override
+		protected boolean accept(final E event) {
+			return event != null && (def.accepted.isEmpty()
+				|| def.accepted.contains(((DefinedFSM<E>) src.getFSM()).definition.getKeyProvider().apply(event)));
+		}
+
+		@Override
+		protected boolean isGuardOK(final E event) {
+			return def.guard.test(event);
+		}
+
+		@Override
+		protected void action(final E event) {
+			def.action.accept(event);
+		}
+
+		@Override
+		public Set<Object> getAcceptedEvents() {
+			return def.accepted;
+		}
+	}
+
+	/**
+	 * The view of a timeout transition of the definition. Its timeout is the one of the FSM.
+	 * @param <E> The type of events the FSM processes.
+	 */
+	static class TimeoutView<E> extends TimeoutTransition<E> {
+		private final int index;
+
+		TimeoutView(final OutputState<E> srcState, final InputState<E> tgtState, final int index, final LongSupplier timeout) {
+			super(srcState, tgtState, timeout);
+			this.index = index;
+		}
+
+		private DefinedFSM<E> owner() {
+			return (DefinedFSM<E>) src.getFSM();
+		}
+
+		@Override
+		public void startTimeout() {
+			owner().startTimeout(index);
+		}
+
+		@Override
+		public void stopTimeout() {
+			owner().stopTimeout(index);
+		}
+
+		@Override
+		protected boolean accept(final E event) {
+			return owner().isTimeouted(index);
+		}
+
+		@Override
+		protected boolean isGuardOK(final E event) {
+			return owner().isTimeouted(index);
+		}
+
+		@Override
+		public Optional<InputState<E>> execute(final E event) throws CancelFSMException {
+			return owner().executeTimeout(index) ? Optional.of(tgt) : Optional.empty();
+		}
+	}
+}
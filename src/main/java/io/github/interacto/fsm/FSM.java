@@ -14,14 +14,16 @@
  */
 package io.github.interacto.fsm;
 
+import io.github.interacto.logging.TraceEvent;
+import io.github.interacto.logging.TraceRecorder;
 import io.reactivex.Observable;
 import io.reactivex.subjects.PublishSubject;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +32,11 @@ import java.util.logging.Logger;
  * @param <E> The type of events the FSM processes.
  */
 public class FSM<E> {
+	/** The empty array of state listeners shared by the FSMs that have no listener. */
+	private static final StateChangeListener<?>[] NO_STATE_LISTENER = new StateChangeListener<?>[0];
+	/** The empty array of handlers shared by the FSMs that have no handler. */
+	private static final FSMHandler[] NO_HANDLER = new FSMHandler[0];
+
 	protected Logger logger;
 	protected boolean inner;
 	/**
@@ -45,44 +52,119 @@ public class FSM<E> {
 	protected boolean started;
 	protected final InitState<E> initState;
 	protected OutputState<E> currentState;
-	protected final PublishSubject<Map.Entry<OutputState<E>, OutputState<E>>> currentStatePublisher;
+	/**
+	 * Publishes the state changes. Created on the first call to currentState(), that subclasses must use
+	 * to access it.
+	 */
+	private PublishSubject<Map.Entry<OutputState<E>, OutputState<E>>> currentStatePublisher;
+	/** The listeners notified of the state changes. Copied on write so that notifying them does not allocate. */
+	protected StateChangeListener<E>[] stateListeners;
 	/** The states that compose the finite state machine. */
 	protected final Set<State<E>> states;
-	/** The handler that want to be notified when the state machine of the interaction changed. */
-	protected final Set<FSMHandler> handlers;
+	/**
+	 * The handler that want to be notified when the state machine of the interaction changed, in their order of addition.
+	 * Copied on write so that notifying them does not allocate.
+	 * Formerly a Set: subclasses must now use addHandler and removeHandler to modify it.
+	 * Duplicates are detected using equals by a linear scan, handlers being few per FSM.
+	 */
+	protected FSMHandler[] handlers;
 	/**
 	 * The events still in process. For example when the user press key ctrl and scroll one time using the wheel of the mouse, the interaction scrolling is
 	 * finished but the event keyPressed 'ctrl' is still in process. At the end of the interaction, these events are re-introduced into the
 	 * state machine of the interaction for processing.
+	 * Formerly an unbounded List: by default, at most PendingEvents.DEFAULT_CAPACITY events are kept and the oldest
+	 * ones are dropped beyond (cf. getPendingEvents to change the capacity or the overflow policy).
 	 */
-	protected final List<E> eventsToProcess;
+	protected final PendingEvents<E> eventsToProcess;
 	/** The current timeout in progress. */
 	protected TimeoutTransition<E> currentTimeout;
 	protected FSM<E> currentSubFSM;
+	/** Computes the dispatch key of the events when the indexed dispatch is enabled. Null otherwise. */
+	protected Function<? super E, ?> eventKeyProvider;
 
 
 	public FSM() {
+		this(fsm -> new InitState<>(fsm, "init"), new HashSet<>());
+	}
+
+	/**
+	 * Creates an FSM whose states are provided by a subclass (cf. DefinedFSM).
+	 * @param initFactory Creates the initial state of the FSM. Called with this FSM.
+	 * @param stateSet The states of the FSM. The initial state is added to it.
+	 */
+	FSM(final Function<FSM<E>, InitState<E>> initFactory, final Set<State<E>> stateSet) {
 		super();
-		eventsToProcess = new ArrayList<>();
+		eventsToProcess = new PendingEvents<>();
 		started = false;
-		initState = new InitState<>(this, "init");
-		states = new HashSet<>();
+		states = stateSet;
+		initState = initFactory.apply(this);
 		states.add(initState);
 		startingState = initState;
 		currentState = initState;
-		currentStatePublisher = PublishSubject.create();
+		currentStatePublisher = null;
+		stateListeners = noStateListener();
 		inner = false;
-		handlers = new HashSet<>(2);
+		handlers = NO_HANDLER;
+	}
+
+	/**
+	 * @return The shared empty array of state listeners. Never modified since the listeners are copied on write.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> StateChangeListener<E>[] noStateListener() {
+		return (StateChangeListener<E>[]) NO_STATE_LISTENER;
 	}
 
 	public OutputState<E> getCurrentState() {
 		return currentState;
 	}
 
+	/**
+	 * An RX adapter of the state changes, created on the first call.
+	 * Prefer addStateChangeListener that does not allocate objects on each state change.
+	 * @return An observable of the state changes: the keys are the former states, the values the new states.
+	 */
 	public Observable<Map.Entry<OutputState<E>, OutputState<E>>> currentState() {
+		if(currentStatePublisher == null) {
+			currentStatePublisher = PublishSubject.create();
+		}
+		return currentStatePublisher;
+	}
+
+	/**
+	 * @return The publisher of the state changes, or null if currentState() has not been called yet.
+	 */
+	PublishSubject<Map.Entry<OutputState<E>, OutputState<E>>> getCurrentStatePublisher() {
 		return currentStatePublisher;
 	}
 
+	/**
+	 * Adds a listener notified each time the current state changes.
+	 * @param listener The listener to add. Nothing done if null.
+	 */
+	public void addStateChangeListener(final StateChangeListener<E> listener) {
+		if(listener != null) {
+			final StateChangeListener<E>[] newListeners = Arrays.copyOf(stateListeners, stateListeners.length + 1);
+			newListeners[stateListeners.length] = listener;
+			stateListeners = newListeners;
+		}
+	}
+
+	/**
+	 * Removes a listener of the state changes.
+	 * @param listener The listener to remove. Nothing done if null or not registered.
+	 */
+	public void removeStateChangeListener(final StateChangeListener<E> listener) {
+		for(int i = 0; i < stateListeners.length; i++) {
+			if(stateListeners[i] == listener) {
+				final StateChangeListener<E>[] newListeners = Arrays.copyOf(stateListeners, stateListeners.length - 1);
+				System.arraycopy(stateListeners, i + 1, newListeners, i, stateListeners.length - i - 1);
+				stateListeners = newListeners;
+				return;
+			}
+		}
+	}
+
 	public void setInner(final boolean inner) {
 		this.inner = inner;
 	}
@@ -91,6 +173,35 @@ public class FSM<E> {
 		return inner;
 	}
 
+	/**
+	 * Enables or disables the indexed dispatch of the events.
+	 * By default, a state tries each of its transitions until one accepts the event.
+	 * With the indexed dispatch, each state indexes its transitions by the objects returned by
+	 * Transition::getAcceptedEvents so that only the transitions that declare the key of the event are tried.
+	 * Transitions that declare no accepted event (e.g. timeout transitions) are tried for any event.
+	 * The dispatch tables of the states of the FSM are compiled by this call and rebuilt when a transition is added.
+	 * @param keyProvider Computes the key of an event, i.e. the object to look for in the accepted events
+	 * 				of the transitions (for example the type of the event). Null disables the indexed dispatch.
+	 */
+	public void setIndexedDispatch(final Function<? super E, ?> keyProvider) {
+		eventKeyProvider = keyProvider;
+
+		if(keyProvider != null) {
+			for(final State<E> state : states) {
+				if(state instanceof OutputStateImpl) {
+					((OutputStateImpl<E>) state).compileDispatch();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The function that computes the dispatch key of the events, or null if the indexed dispatch is disabled.
+	 */
+	public Function<? super E, ?> getEventKeyProvider() {
+		return eventKeyProvider;
+	}
+
 	public boolean process(final E event) {
 		if(event == null) {
 			return false;
@@ -116,39 +227,59 @@ public class FSM<E> {
 	protected void setCurrentState(final OutputState<E> state) {
 		final var old = currentState;
 		currentState = state;
-		currentStatePublisher.onNext(Map.entry(old, currentState));
+		notifyStateChanged(old, state);
 	}
 
 	/**
-	 * At the end of the FSM execution, the events still (eg keyPress) in process must be recycled to be reused in the FSM.
+	 * @return True if a listener or an observer of currentState() is notified of the state changes.
 	 */
-	protected void processRemainingEvents() {
-		synchronized(eventsToProcess) {
-			// All the events must be processed but the list stillProcessingEvents can be modified
-			// during the process. So, a clone of the list must be created.
-			final List<E> list = new ArrayList<>(eventsToProcess);
+	boolean hasStateObserver() {
+		return stateListeners.length > 0 || (currentStatePublisher != null && currentStatePublisher.hasObservers());
+	}
 
-			// All the events must be processed.
-			while(!list.isEmpty()) {
-				final E event = list.remove(0);
-				// Do not forget to remove the event from its original list.
-				eventsToProcess.remove(0);
+	/**
+	 * Notifies the listeners and the observers of currentState() that the current state changed.
+	 */
+	void notifyStateChanged(final OutputState<E> old, final OutputState<E> state) {
+		for(final StateChangeListener<E> listener : stateListeners) {
+			listener.stateChanged(old, state);
+		}
 
-				if(logger != null) {
-					logger.log(Level.INFO, "Recycling event: " + event);
-				}
+		if(currentStatePublisher != null && currentStatePublisher.hasObservers()) {
+			currentStatePublisher.onNext(Map.entry(old, state));
+		}
+	}
+
+	/**
+	 * At the end of the FSM execution, the events still (eg keyPress) in process must be recycled to be reused in the FSM.
+	 */
+	protected void processRemainingEvents() {
+		// Only the events pending now are recycled: processing them may add new pending events.
+		// Events are polled one by one, so that they are not processed twice if the FSM terminates again meanwhile.
+		for(int i = eventsToProcess.size(); i > 0; i--) {
+			final E event = eventsToProcess.poll();
+			if(event == null) {
+				return;
+			}
 
-				process(event);
+			if(logger != null && logger.isLoggable(Level.INFO)) {
+				logger.log(Level.INFO, () -> "Recycling event: " + event);
 			}
+			TraceRecorder.getInstance().record(TraceEvent.FSM_EVENT_RECYCLED, this);
+
+			process(event);
 		}
 	}
 
 	protected void addRemaningEventsToProcess(final E event) {
-		if(event != null) {
-			synchronized(eventsToProcess) {
-				eventsToProcess.add(event);
-			}
-		}
+		eventsToProcess.add(event);
+	}
+
+	/**
+	 * @return The events still in process, recycled when the FSM terminates. Can be configured (capacity, overflow policy).
+	 */
+	public PendingEvents<E> getPendingEvents() {
+		return eventsToProcess;
 	}
 
 	/**
@@ -159,6 +290,7 @@ public class FSM<E> {
 		if(logger != null) {
 			logger.log(Level.INFO, "FSM ended");
 		}
+		TraceRecorder.getInstance().record(TraceEvent.FSM_ENDED, this);
 
 		if(started) {
 			notifyHandlerOnStop();
@@ -174,6 +306,7 @@ public class FSM<E> {
 		if(logger != null) {
 			logger.log(Level.INFO, "FSM cancelled");
 		}
+		TraceRecorder.getInstance().record(TraceEvent.FSM_CANCELLED, this);
 
 		if(started) {
 			notifyHandlerOnCancel();
@@ -190,6 +323,7 @@ public class FSM<E> {
 		if(logger != null) {
 			logger.log(Level.INFO, "FSM started");
 		}
+		TraceRecorder.getInstance().record(TraceEvent.FSM_STARTED, this);
 
 		started = true;
 		notifyHandlerOnStart();
@@ -204,6 +338,7 @@ public class FSM<E> {
 			if(logger != null) {
 				logger.log(Level.INFO, "FSM updated");
 			}
+			TraceRecorder.getInstance().record(TraceEvent.FSM_UPDATED, this);
 
 			notifyHandlerOnUpdate();
 		}
@@ -248,9 +383,7 @@ public class FSM<E> {
 	}
 
 	public void fullReinit() {
-		synchronized(eventsToProcess) {
-			eventsToProcess.clear();
-		}
+		eventsToProcess.clear();
 		reinit();
 
 		if(currentSubFSM != null) {
@@ -269,6 +402,7 @@ public class FSM<E> {
 			if(logger != null) {
 				logger.log(Level.INFO, "Timeout");
 			}
+			TraceRecorder.getInstance().record(TraceEvent.FSM_TIMEOUT, this);
 
 			try {
 				currentTimeout
@@ -303,36 +437,74 @@ public class FSM<E> {
 	 * If it is the case, the timeout transition is launched.
 	 */
 	protected void checkTimeoutTransition() {
-		currentState.getTransitions().stream().filter(tr -> tr instanceof TimeoutTransition).findFirst().map(tr -> (TimeoutTransition<E>) tr).ifPresent(tr -> {
-			if(logger != null) {
-				logger.log(Level.INFO, "Timeout starting");
-			}
+		for(final Transition<E> tr : currentState.getTransitions()) {
+			if(tr instanceof TimeoutTransition) {
+				if(logger != null) {
+					logger.log(Level.INFO, "Timeout starting");
+				}
 
-			currentTimeout = tr;
-			currentTimeout.startTimeout();
-		});
+				currentTimeout = (TimeoutTransition<E>) tr;
+				currentTimeout.startTimeout();
+				return;
+			}
+		}
 	}
 
+	/**
+	 * Adds a handler notified of the FSM life cycle. Handlers are notified in their order of addition.
+	 * @param handler The handler to add. Nothing done if null or already added.
+	 */
 	public void addHandler(final FSMHandler handler) {
-		if(handler != null) {
-			handlers.add(handler);
+		if(handler != null && !isHandler(handler)) {
+			final FSMHandler[] newHandlers = Arrays.copyOf(handlers, handlers.length + 1);
+			newHandlers[handlers.length] = handler;
+			handlers = newHandlers;
 		}
 	}
 
+	/**
+	 * Removes a handler. If removed while the handlers are notified, the handler is not notified anymore.
+	 * @param handler The handler to remove. Nothing done if null or not added.
+	 */
 	public void removeHandler(final FSMHandler handler) {
-		if(handler != null) {
-			handlers.remove(handler);
+		for(int i = 0; i < handlers.length; i++) {
+			if(handlers[i].equals(handler)) {
+				final FSMHandler[] newHandlers = Arrays.copyOf(handlers, handlers.length - 1);
+				System.arraycopy(handlers, i + 1, newHandlers, i, handlers.length - i - 1);
+				handlers = newHandlers;
+				return;
+			}
 		}
 	}
 
+	private boolean isHandler(final FSMHandler handler) {
+		for(final FSMHandler registered : handlers) {
+			if(registered.equals(handler)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a handler of the given array, iterated to notify the handlers, must be notified:
+	 * the handlers may have changed during the notification.
+	 */
+	private boolean mustNotify(final FSMHandler[] notified, final FSMHandler handler) {
+		return notified == handlers || isHandler(handler);
+	}
+
 	/**
 	 * Notifies handler that the interaction starts.
 	 * @throws CancelFSMException If the interaction is cancelled by a handler during the starting step.
 	 */
 	protected void notifyHandlerOnStart() throws CancelFSMException {
 		try {
-			for(final FSMHandler handler : handlers) {
-				handler.fsmStarts();
+			final FSMHandler[] notified = handlers;
+			for(final FSMHandler handler : notified) {
+				if(mustNotify(notified, handler)) {
+					handler.fsmStarts();
+				}
 			}
 		}catch(final CancelFSMException ex) {
 			onCancelling();
@@ -346,8 +518,11 @@ public class FSM<E> {
 	 */
 	protected void notifyHandlerOnUpdate() throws CancelFSMException {
 		try {
-			for(final FSMHandler handler : handlers) {
-				handler.fsmUpdates();
+			final FSMHandler[] notified = handlers;
+			for(final FSMHandler handler : notified) {
+				if(mustNotify(notified, handler)) {
+					handler.fsmUpdates();
+				}
 			}
 		}catch(final CancelFSMException ex) {
 			onCancelling();
@@ -361,8 +536,11 @@ public class FSM<E> {
 	 */
 	protected void notifyHandlerOnStop() throws CancelFSMException {
 		try {
-			for(final FSMHandler handler : new ArrayList<>(handlers)) {
-				handler.fsmStops();
+			final FSMHandler[] notified = handlers;
+			for(final FSMHandler handler : notified) {
+				if(mustNotify(notified, handler)) {
+					handler.fsmStops();
+				}
 			}
 		}catch(final CancelFSMException ex) {
 			onCancelling();
@@ -374,7 +552,12 @@ public class FSM<E> {
 	 * Notifies handler that the interaction is cancelled.
 	 */
 	protected void notifyHandlerOnCancel() {
-		new ArrayList<>(handlers).forEach(handler -> handler.fsmCancels());
+		final FSMHandler[] notified = handlers;
+		for(final FSMHandler handler : notified) {
+			if(mustNotify(notified, handler)) {
+				handler.fsmCancels();
+			}
+		}
 	}
 
 	public Set<State<E>> getStates() {
@@ -384,9 +567,19 @@ public class FSM<E> {
 	public void uninstall() {
 		fullReinit();
 		logger = null;
-		currentStatePublisher.onComplete();
+		if(currentStatePublisher != null) {
+			currentStatePublisher.onComplete();
+		}
+		stateListeners = noStateListener();
 		startingState = null;
 		currentSubFSM = null;
+		uninstallStates();
+	}
+
+	/**
+	 * Uninstalls and removes the states of the FSM. Called by uninstall.
+	 */
+	protected void uninstallStates() {
 		states.forEach(state -> state.uninstall());
 		states.clear();
 	}
@@ -0,0 +1,475 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.fsm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * The immutable definition of a finite state machine: its states, transitions, guards, actions and compiled dispatch tables.
+ * A definition is built once (see builder) and shared by all the interactions of the same kind:
+ * each of them runs the definition in its own DefinedFSM that only holds the state of the execution
+ * (current state, started flag, timeout in progress, pending events).
+ * The initial state of a definition is named 'init' and has the index 0.
+ * The transitions are compiled in an integer-indexed table, by state and by id of event key.
+ * This class is thread-safe.
+ * @param <E> The type of events the FSM processes.
+ */
+public final class FSMDefinition<E> {
+	/** The name of the initial state. */
+	public static final String INIT_STATE = "init";
+
+	/**
+	 * The kinds of states.
+	 */
+	public enum StateKind {
+		/** The initial state. */
+		INIT,
+		/** A standard state. */
+		STD,
+		/** A terminal state: entering it stops the interaction. */
+		TERMINAL,
+		/** A cancelling state: entering it cancels the interaction. */
+		CANCELLING
+	}
+
+	private final List<String> names;
+	private final List<StateKind> kinds;
+	private final List<TransitionDef<E>> transitions;
+	private final int startingState;
+	private final Function<? super E, ?> keyProvider;
+	/** The ids of the keys of the accepted events, from 0. The id keyIds.size() identifies the other events. */
+	private final Map<Object, Integer> keyIds;
+	/**
+	 * The transition table, in rows of event transitions to try in their declaration order.
+	 * The row of the state s and of the key id k is s * (keyIds.size() + 1) + k.
+	 * Its transitions are the ones of tableEntries from tableOffsets[row] (included) to tableOffsets[row + 1] (excluded).
+	 * Timeout transitions are not dispatched.
+	 */
+	private final int[] tableOffsets;
+	private final int[] tableEntries;
+	/** The index of the timeout transition of each state, -1 if the state has no timeout transition. */
+	private final int[] timeoutTransitions;
+	private FSMDefinition(final Builder<E> builder) {
+		super();
+		names = List.copyOf(builder.names);
+		kinds = List.copyOf(builder.kinds);
+		transitions = List.copyOf(builder.transitions);
+		startingState = builder.startingState;
+		keyProvider = builder.keyProvider;
+		validate();
+		keyIds = compileKeyIds(transitions);
+		tableOffsets = new int[names.size() * (keyIds.size() + 1) + 1];
+		tableEntries = compileTable();
+		timeoutTransitions = new int[names.size()];
+		Arrays.fill(timeoutTransitions, -1);
+		for(int i = 0; i < transitions.size(); i++) {
+			if(transitions.get(i).timeout != null) {
+				timeoutTransitions[transitions.get(i).src] = i;
+			}
+		}
+	}
+
+	/**
+	 * Checks that all the states are reachable from the initial state, that all the states can reach
+	 * a terminal or cancelling state, and that there are no ambiguous transitions.
+	 */
+	private void validate() {
+		final boolean[] reachable = new boolean[names.size()];
+		final boolean[] ending = new boolean[names.size()];
+		reachable[0] = true;
+		for(int state = 0; state < names.size(); state++) {
+			ending[state] = kinds.get(state) == StateKind.TERMINAL || kinds.get(state) == StateKind.CANCELLING;
+		}
+		propagate(reachable, true);
+		propagate(ending, false);
+
+		for(int state = 0; state < names.size(); state++) {
+			if(!reachable[state]) {
+				throw new IllegalStateException("Unreachable state: " + names.get(state));
+			}
+			if(!ending[state]) {
+				throw new IllegalStateException("Dead state (cannot reach a terminal or cancelling state): " + names.get(state));
+			}
+		}
+
+		for(int i = 0; i < transitions.size(); i++) {
+			for(int j = i + 1; j < transitions.size(); j++) {
+				if(areAmbiguous(transitions.get(i), transitions.get(j))) {
+					throw new IllegalStateException("Ambiguous transitions from state: " + names.get(transitions.get(i).src));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the states linked by transitions to marked states, until no more state can be marked.
+	 * @param forward True: the targets of the marked states are marked. False: their sources.
+	 */
+	private void propagate(final boolean[] marked, final boolean forward) {
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(final TransitionDef<E> tr : transitions) {
+				final int from = forward ? tr.src : tr.tgt;
+				final int to = forward ? tr.tgt : tr.src;
+				if(marked[from] && !marked[to]) {
+					marked[to] = true;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Two event transitions are ambiguous when they have the same source state, none of them has a guard,
+	 * and an event can be accepted by both of them: only the first one declared would be executed.
+	 */
+	private static <E> boolean areAmbiguous(final TransitionDef<E> tr1, final TransitionDef<E> tr2) {
+		if(tr1.src != tr2.src || tr1.guarded || tr2.guarded || tr1.timeout != null || tr2.timeout != null) {
+			return false;
+		}
+		return tr1.accepted.isEmpty() || tr2.accepted.isEmpty() || !Collections.disjoint(tr1.accepted, tr2.accepted);
+	}
+
+	private static <E> Map<Object, Integer> compileKeyIds(final List<TransitionDef<E>> transitions) {
+		final Map<Object, Integer> ids = new HashMap<>();
+		transitions.forEach(tr -> tr.accepted.forEach(key -> ids.putIfAbsent(key, ids.size())));
+		return Map.copyOf(ids);
+	}
+
+	/**
+	 * Fills the offsets of the transition table and returns its entries.
+	 */
+	private int[] compileTable() {
+		final int width = keyIds.size() + 1;
+		final List<Integer> entries = new ArrayList<>();
+
+		for(int row = 0; row < tableOffsets.length - 1; row++) {
+			tableOffsets[row] = entries.size();
+			for(int i = 0; i < transitions.size(); i++) {
+				if(isDispatched(transitions.get(i), row / width, row % width)) {
+					entries.add(i);
+				}
+			}
+		}
+		tableOffsets[tableOffsets.length - 1] = entries.size();
+		return entries.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private boolean isDispatched(final TransitionDef<E> tr, final int state, final int keyId) {
+		return tr.src == state && tr.timeout == null
+			&& (tr.accepted.isEmpty() || tr.accepted.stream().anyMatch(key -> keyIds.get(key) == keyId));
+	}
+
+	/**
+	 * Creates a builder of definitions.
+	 * @param keyProvider Computes the key of an event, i.e. the object to look for in the accepted events
+	 *     of the transitions (for example the type of the event).
+	 * @param <E> The type of events the FSM processes.
+	 * @return The created builder.
+	 * @throws IllegalArgumentException If the key provider is null.
+	 */
+	public static <E> Builder<E> builder(final Function<? super E, ?> keyProvider) {
+		return new Builder<>(keyProvider);
+	}
+
+	/**
+	 * Creates a new FSM that runs this definition.
+	 * @return The created FSM, in its initial state.
+	 */
+	public DefinedFSM<E> createFSM() {
+		return new DefinedFSM<>(this);
+	}
+
+	/**
+	 * @return The number of states, the initial state included.
+	 */
+	public int getStateCount() {
+		return names.size();
+	}
+
+	/**
+	 * @param state The index of the state.
+	 * @return The name of the state.
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public String getStateName(final int state) {
+		return names.get(state);
+	}
+
+	/**
+	 * @param state The index of the state.
+	 * @return The kind of the state.
+	 * @throws IndexOutOfBoundsException If the index is not valid.
+	 */
+	public StateKind getStateKind(final int state) {
+		return kinds.get(state);
+	}
+
+	/**
+	 * @param name The name of the state to look for.
+	 * @return The index of the state, or -1 if there is no such state.
+	 */
+	public int indexOf(final String name) {
+		return names.indexOf(name);
+	}
+
+	/**
+	 * @return The index of the state that starts the interaction when reached.
+	 */
+	public int getStartingState() {
+		return startingState;
+	}
+
+	/**
+	 * @return The number of transitions, timeout transitions included.
+	 */
+	public int getTransitionCount() {
+		return transitions.size();
+	}
+
+	/**
+	 * @return The function that computes the dispatch key of the events.
+	 */
+	public Function<? super E, ?> getKeyProvider() {
+		return keyProvider;
+	}
+
+	TransitionDef<E> getTransition(final int transition) {
+		return transitions.get(transition);
+	}
+
+	/**
+	 * @return The index of the timeout transition of the given state, or -1 if the state has no timeout transition.
+	 */
+	int getTimeoutTransition(final int state) {
+		return timeoutTransitions[state];
+	}
+
+	/**
+	 * @return The row of the transition table that gives the event transitions of the given state to try for the given event.
+	 */
+	int getRow(final int state, final E event) {
+		final Integer keyId = keyIds.get(keyProvider.apply(event));
+		return state * (keyIds.size() + 1) + (keyId == null ? keyIds.size() : keyId);
+	}
+
+	/**
+	 * @return The position in the table of the first transition of the given row.
+	 */
+	int getRowStart(final int row) {
+		return tableOffsets[row];
+	}
+
+	/**
+	 * @return The position in the table that follows the last transition of the given row.
+	 */
+	int getRowEnd(final int row) {
+		return tableOffsets[row + 1];
+	}
+
+	/**
+	 * @return The index of the transition at the given position of the table.
+	 */
+	int getTableEntry(final int position) {
+		return tableEntries[position];
+	}
+
+	/**
+	 * @return A copy of the indexes of the event transitions of the given state to try for the given event, in their declaration order.
+	 */
+	int[] getCandidates(final int state, final E event) {
+		final int row = getRow(state, event);
+		return Arrays.copyOfRange(tableEntries, tableOffsets[row], tableOffsets[row + 1]);
+	}
+
+	/**
+	 * The definition of a transition.
+	 * @param <E> The type of events the FSM processes.
+	 */
+	static final class TransitionDef<E> {
+		final int src;
+		final int tgt;
+		/** The keys of the accepted events. Empty: any event is accepted. */
+		final Set<Object> accepted;
+		final Predicate<? super E> guard;
+		/** False: the transition has no guard. */
+		final boolean guarded;
+		final Consumer<? super E> action;
+		/** The duration of a timeout transition in ms. Null for the event transitions. */
+		final LongSupplier timeout;
+
+		TransitionDef(final int src, final int tgt, final Set<Object> accepted, final Predicate<? super E> guard,
+					final boolean guarded, final Consumer<? super E> action, final LongSupplier timeout) {
+			super();
+			this.src = src;
+			this.tgt = tgt;
+			this.accepted = accepted;
+			this.guard = guard;
+			this.guarded = guarded;
+			this.action = action;
+			this.timeout = timeout;
+		}
+	}
+
+	/**
+	 * Builds FSM definitions. The initial state is already defined.
+	 * @param <E> The type of events the FSM processes.
+	 */
+	public static final class Builder<E> {
+		private final Function<? super E, ?> keyProvider;
+		private final List<String> names;
+		private final List<StateKind> kinds;
+		private final List<TransitionDef<E>> transitions;
+		private int startingState;
+
+		private Builder(final Function<? super E, ?> keyProvider) {
+			super();
+			if(keyProvider == null) {
+				throw new IllegalArgumentException("null key provider");
+			}
+			this.keyProvider = keyProvider;
+			names = new ArrayList<>();
+			kinds = new ArrayList<>();
+			transitions = new ArrayList<>();
+			startingState = 0;
+			names.add(INIT_STATE);
+			kinds.add(StateKind.INIT);
+		}
+
+		private Builder<E> state(final String name, final StateKind kind) {
+			if(name == null || names.contains(name)) {
+				throw new IllegalArgumentException("Invalid state name: " + name);
+			}
+			names.add(name);
+			kinds.add(kind);
+			return this;
+		}
+
+		private int index(final String name) {
+			final int index = names.indexOf(name);
+			if(index < 0) {
+				throw new IllegalArgumentException("Unknown state: " + name);
+			}
+			return index;
+		}
+
+		/**
+		 * Adds a standard state.
+		 * @param name The name of the state. Must be unique.
+		 * @return The builder.
+		 * @throws IllegalArgumentException If the name is null or already used.
+		 */
+		public Builder<E> stdState(final String name) {
+			return state(name, StateKind.STD);
+		}
+
+		/**
+		 * Adds a terminal state.
+		 * @param name The name of the state. Must be unique.
+		 * @return The builder.
+		 * @throws IllegalArgumentException If the name is null or already used.
+		 */
+		public Builder<E> terminalState(final String name) {
+			return state(name, StateKind.TERMINAL);
+		}
+
+		/**
+		 * Adds a cancelling state.
+		 * @param name The name of the state. Must be unique.
+		 * @return The builder.
+		 * @throws IllegalArgumentException If the name is null or already used.
+		 */
+		public Builder<E> cancellingState(final String name) {
+			return state(name, StateKind.CANCELLING);
+		}
+
+		/**
+		 * Defines the state that starts the interaction when reached. By default, the initial state.
+		 * @param name The name of an already added state.
+		 * @return The builder.
+		 * @throws IllegalArgumentException If there is no such state.
+		 */
+		public Builder<E> startingState(final String name) {
+			startingState = index(name);
+			return this;
+		}
+
+		/**
+		 * Adds a transition triggered by events.
+		 * @param src The name of the source state: the initial state or a standard state.
+		 * @param tgt The name of the target state: not the initial state.
+		 * @param accepted The keys of the events accepted by the transition (cf. the key provider). Empty or null: any event.
+		 * @param guard The condition the events must respect. Null: no condition.
+		 * @param action The action executed when the transition is executed. Can be null.
+		 * @return The builder.
+		 * @throws IllegalArgumentException If the states do not exist or are not valid source or target states.
+		 */
+		public Builder<E> transition(final String src, final String tgt, final Set<?> accepted, final Predicate<? super E> guard,
+									final Consumer<? super E> action) {
+			addTransition(src, tgt, accepted == null ? Set.of() : Set.copyOf(accepted), guard, action == null ? evt -> { } : action, null);
+			return this;
+		}
+
+		/**
+		 * Adds a timeout transition. A source state has at most one timeout transition.
+		 * @param src The name of the source state: the initial state or a standard state.
+		 * @param tgt The name of the target state: not the initial state.
+		 * @param timeout The duration of the timeout in ms.
+		 * @return The builder.
+		 * @throws IllegalArgumentException If the states do not exist or are not valid source or target states,
+		 *     if the timeout is null, or if the source state already has a timeout transition.
+		 */
+		public Builder<E> timeoutTransition(final String src, final String tgt, final LongSupplier timeout) {
+			if(timeout == null || transitions.stream().anyMatch(tr -> tr.timeout != null && tr.src == names.indexOf(src))) {
+				throw new IllegalArgumentException("Invalid timeout transition from: " + src);
+			}
+			addTransition(src, tgt, Set.of(), null, null, timeout);
+			return this;
+		}
+
+		private void addTransition(final String src, final String tgt, final Set<Object> accepted, final Predicate<? super E> guard,
+								final Consumer<? super E> action, final LongSupplier timeout) {
+			final int srcIndex = index(src);
+			final int tgtIndex = index(tgt);
+			final StateKind srcKind = kinds.get(srcIndex);
+			if((srcKind != StateKind.INIT && srcKind != StateKind.STD) || tgtIndex == 0) {
+				throw new IllegalArgumentException("Invalid transition: " + src + " -> " + tgt);
+			}
+			transitions.add(new TransitionDef<>(srcIndex, tgtIndex, accepted, guard == null ? evt -> true : guard, guard != null, action, timeout));
+		}
+
+		/**
+		 * Builds and validates the definition: all the states must be reachable from the initial state,
+		 * all the states must be able to reach a terminal or cancelling state,
+		 * and a state cannot have two transitions without guard that accept the same events.
+		 * @return The definition. The builder can be reused to build other definitions.
+		 * @throws IllegalStateException If the definition is not valid.
+		 */
+		public FSMDefinition<E> build() {
+			return new FSMDefinition<>(this);
+		}
+	}
+}
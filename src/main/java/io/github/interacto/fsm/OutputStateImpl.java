@@ -16,7 +16,10 @@ package io.github.interacto.fsm;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Base implementation of the OutputState interface.
@@ -24,22 +27,88 @@ import java.util.List;
  */
 public abstract class OutputStateImpl<E> extends StateImpl<E> implements OutputState<E> {
 	protected final List<Transition<E>> transitions;
+	/** The read-only view of the transitions returned by getTransitions. */
+	private final List<Transition<E>> transitionsView;
+	/**
+	 * The dispatch table used when the FSM enables the indexed dispatch: the transitions to try
+	 * for each accepted event. Null if not compiled yet.
+	 */
+	private Map<Object, List<Transition<E>>> dispatchTable;
+	/** The transitions that do not declare accepted events (e.g. timeout transitions). Tried for any event. */
+	private List<Transition<E>> fallbackTransitions;
 
 	protected OutputStateImpl(final FSM<E> stateMachine, final String stateName) {
 		super(stateMachine, stateName);
 		transitions = new ArrayList<>();
+		transitionsView = Collections.unmodifiableList(transitions);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * If the FSM enables the indexed dispatch, only the transitions that declare the key of the event
+	 * in their accepted events, or that declare no accepted event, are tried.
+	 */
+	@Override
+	public boolean process(final E event) {
+		final Function<? super E, ?> keyProvider = fsm == null ? null : fsm.getEventKeyProvider();
+
+		if(keyProvider == null) {
+			return OutputState.super.process(event);
+		}
+
+		if(dispatchTable == null) {
+			compileDispatch();
+		}
+
+		final List<Transition<E>> candidates = dispatchTable.get(keyProvider.apply(event));
+		return processTransitions(candidates == null ? fallbackTransitions : candidates, event);
+	}
+
+	private boolean processTransitions(final List<Transition<E>> candidates, final E event) {
+		for(final Transition<E> tr : candidates) {
+			try {
+				if(tr.execute(event).isPresent()) {
+					return true;
+				}
+			}catch(final CancelFSMException ignored) {
+				// Already processed
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the dispatch table of the state from the accepted events of its transitions.
+	 * Each entry keeps the declaration order of the transitions, transitions without accepted events included.
+	 */
+	void compileDispatch() {
+		final Map<Object, List<Transition<E>>> table = new HashMap<>();
+		final List<Transition<E>> fallback = new ArrayList<>();
+
+		for(final Transition<E> tr : transitions) {
+			final var accepted = tr.getAcceptedEvents();
+			if(accepted.isEmpty()) {
+				fallback.add(tr);
+				table.values().forEach(candidates -> candidates.add(tr));
+			}else {
+				accepted.forEach(key -> table.computeIfAbsent(key, k -> new ArrayList<>(fallback)).add(tr));
+			}
+		}
+
+		fallbackTransitions = fallback;
+		dispatchTable = table;
+	}
 
 	@Override
 	public List<Transition<E>> getTransitions() {
-		return Collections.unmodifiableList(transitions);
+		return transitionsView;
 	}
 
 	@Override
 	public void addTransition(final Transition<E> tr) {
 		if(tr != null) {
 			transitions.add(tr);
+			dispatchTable = null;
 		}
 	}
 
@@ -48,5 +117,7 @@ public abstract class OutputStateImpl<E> extends StateImpl<E> implements OutputS
 		super.uninstall();
 		transitions.forEach(tr -> tr.uninstall());
 		transitions.clear();
+		dispatchTable = null;
+		fallbackTransitions = null;
 	}
 }
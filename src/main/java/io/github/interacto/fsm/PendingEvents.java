@@ -0,0 +1,218 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.fsm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events still in process that an FSM recycles when it terminates (e.g. a key still pressed).
+ * A bounded FIFO queue stored in a ring buffer: adding and polling events run in constant time
+ * and do not allocate. When full, an event is dropped according to the overflow policy
+ * (the dropped events are counted, cf. getDroppedCount).
+ * This class is thread-safe.
+ * @param <E> The type of the events.
+ */
+public class PendingEvents<E> {
+	/** The default maximal number of pending events. */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	/**
+	 * What to do when an event is added to a full queue.
+	 */
+	public enum OverflowPolicy {
+		/** The oldest pending event is dropped. */
+		DROP_OLDEST,
+		/** The added event is dropped. */
+		DROP_NEWEST
+	}
+
+	/** The ring buffer of the events. Created on the first added event, so that idle FSMs do not hold it. */
+	private Object[] events;
+	private int capacity;
+	/** The index of the oldest event. */
+	private int head;
+	private int size;
+	private OverflowPolicy overflowPolicy;
+	private long addedCount;
+	private long droppedCount;
+	private long polledCount;
+
+	/**
+	 * Creates an empty queue of DEFAULT_CAPACITY events that drops the oldest events on overflow.
+	 */
+	public PendingEvents() {
+		this(DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Creates an empty queue.
+	 * @param capacity The maximal number of pending events.
+	 * @param policy What to do when an event is added to a full queue.
+	 * @throws IllegalArgumentException If the capacity is lower than 1 or the policy null.
+	 */
+	public PendingEvents(final int capacity, final OverflowPolicy policy) {
+		super();
+		if(capacity < 1 || policy == null) {
+			throw new IllegalArgumentException("Invalid pending events: " + capacity + ", " + policy);
+		}
+		this.capacity = capacity;
+		overflowPolicy = policy;
+	}
+
+	/**
+	 * Adds an event at the end of the queue. If the queue is full, an event is dropped (cf. OverflowPolicy).
+	 * @param event The event to add. Nothing done if null.
+	 * @return False if the given event has not been added.
+	 */
+	public synchronized boolean add(final E event) {
+		if(event == null) {
+			return false;
+		}
+		addedCount++;
+
+		if(events == null) {
+			events = new Object[capacity];
+		}
+
+		if(size == capacity) {
+			droppedCount++;
+			if(overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+				return false;
+			}
+			events[head] = null;
+			head = (head + 1) % capacity;
+			size--;
+		}
+
+		events[(head + size) % capacity] = event;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes the oldest event.
+	 * @return The oldest event or null if the queue is empty.
+	 */
+	public synchronized E poll() {
+		if(size == 0) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		final E event = (E) events[head];
+		events[head] = null;
+		head = (head + 1) % capacity;
+		size--;
+		polledCount++;
+		return event;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all the events. The removed events are not counted as dropped.
+	 */
+	public synchronized void clear() {
+		for(int i = 0; i < size; i++) {
+			events[(head + i) % capacity] = null;
+		}
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * @return The pending events, from the oldest to the newest one. A copy that can be modified.
+	 */
+	public synchronized List<E> toList() {
+		final List<E> list = new ArrayList<>(size);
+		for(int i = 0; i < size; i++) {
+			@SuppressWarnings("unchecked")
+			final E event = (E) events[(head + i) % capacity];
+			list.add(event);
+		}
+		return list;
+	}
+
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Changes the maximal number of pending events. If the queue contains more events, the oldest ones are dropped.
+	 * @param capacity The new capacity. Nothing done if lower than 1.
+	 */
+	public synchronized void setCapacity(final int capacity) {
+		if(capacity < 1) {
+			return;
+		}
+		if(events != null) {
+			final List<E> kept = toList().subList(Math.max(0, size - capacity), size);
+			droppedCount += size - kept.size();
+			events = kept.toArray(new Object[capacity]);
+			head = 0;
+			size = kept.size();
+		}
+		this.capacity = capacity;
+	}
+
+	public synchronized OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @param policy What to do when an event is added to a full queue. Nothing done if null.
+	 */
+	public synchronized void setOverflowPolicy(final OverflowPolicy policy) {
+		if(policy != null) {
+			overflowPolicy = policy;
+		}
+	}
+
+	/**
+	 * @return The number of events given to add (null events excepted) since the last reset.
+	 */
+	public synchronized long getAddedCount() {
+		return addedCount;
+	}
+
+	/**
+	 * @return The number of events dropped because of overflows since the last reset.
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * @return The number of events polled (i.e. recycled by the FSM) since the last reset.
+	 */
+	public synchronized long getPolledCount() {
+		return polledCount;
+	}
+
+	/**
+	 * Sets the counters to 0.
+	 */
+	public synchronized void resetCounters() {
+		addedCount = 0L;
+		droppedCount = 0L;
+		polledCount = 0L;
+	}
+}
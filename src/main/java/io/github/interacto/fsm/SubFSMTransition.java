@@ -103,7 +103,8 @@ public class SubFSMTransition<E> extends Transition<E> {
 	}
 
 	private Optional<Transition<E>> findTransition(final E event) {
-		return subFSM.initState.transitions
+		return subFSM.initState
+			.getTransitions()
 			.stream()
 			.filter(tr -> tr.accept(event))
 			.findFirst();
@@ -14,28 +14,35 @@
  */
 package io.github.interacto.fsm;
 
-import io.github.interacto.error.ErrorCatcher;
-import io.github.interacto.interaction.ThreadService;
+import io.github.interacto.interaction.TimerService;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.function.LongSupplier;
 
 /**
  * A timeout transition is an FSM transition that is not executed by an event:
  * the FSM goes through such a transition on a timeout.
+ * The timeouts are scheduled using the shared TimerService: no thread is created per timeout.
  * @param <E> The type of events the FSM processes.
  */
 public class TimeoutTransition<E> extends Transition<E> {
-	/** The base name (starts with) of the threads created for the timeout. */
+	/**
+	 * The base name (starts with) of the threads created for the timeout.
+	 * @deprecated No thread is created per timeout anymore: the timeouts run in the single thread of the TimerService
+	 *     (cf. TimerService.TIMER_THREAD_NAME).
+	 */
+	@Deprecated
 	public static final String TIMEOUT_THREAD_NAME_BASE = "malai-timeout-transition-";
 	/** The timeoutDuration in ms. */
 	private final LongSupplier timeoutDuration;
 
-	/** The current thread in progress. */
-	private Thread timeoutThread;
+	/** The current timeout in progress. */
+	protected Future<?> timeoutFuture;
 
-	private boolean timeouted;
+	/** Set by the timer thread when the timeout is reached. */
+	private volatile boolean timeouted;
 
 	public TimeoutTransition(final OutputState<E> srcState, final InputState<E> tgtState, final LongSupplier timeout) {
 		super(srcState, tgtState);
@@ -52,28 +59,21 @@ public class TimeoutTransition<E> extends Transition<E> {
 	 * Launches the timer.
 	 */
 	public void startTimeout() {
-		final long time = TimeoutTransition.this.timeoutDuration.getAsLong();
-		// If incorrect duration value, no thread created
-		if(timeoutThread == null) {
+		// Nothing done if a timeout is already in progress
+		if(timeoutFuture == null || timeoutFuture.isDone()) {
+			final long time = timeoutDuration.getAsLong();
+
+			// If incorrect duration value, no timer used
 			if(time <= 0L) {
-				TimeoutTransition.this.src.getFSM().onTimeout();
+				src.getFSM().onTimeout();
 				return;
 			}
 
-			timeoutThread = new Thread(() -> {
-				try {
-					// Sleeping the thread.
-					ThreadService.getInstance().sleep(time);
-					// There is a timeoutDuration and the interaction must be notified of that.
-					// Notifying the interaction of the timeoutDuration.
-					timeouted = true;
-					TimeoutTransition.this.src.getFSM().onTimeout();
-				}catch(final InterruptedException ex) {
-					ThreadService.getInstance().currentThread().interrupt();
-				}
-			}, TIMEOUT_THREAD_NAME_BASE + System.currentTimeMillis());
-			timeoutThread.setUncaughtExceptionHandler((th, ex) -> ErrorCatcher.getInstance().reportError(ex));
-			timeoutThread.start();
+			timeoutFuture = TimerService.getInstance().schedule(() -> {
+				// There is a timeoutDuration and the interaction must be notified of that.
+				timeouted = true;
+				src.getFSM().onTimeout();
+			}, time);
 		}
 	}
 
@@ -81,9 +81,9 @@ public class TimeoutTransition<E> extends Transition<E> {
 	 * Stops the timer.
 	 */
 	public void stopTimeout() {
-		if(timeoutThread != null) {
-			timeoutThread.interrupt();
-			timeoutThread = null;
+		if(timeoutFuture != null) {
+			timeoutFuture.cancel(false);
+			timeoutFuture = null;
 		}
 	}
 
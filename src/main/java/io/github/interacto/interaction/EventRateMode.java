@@ -0,0 +1,42 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.interaction;
+
+/**
+ * The ways a user interaction reduces the rate of the events of the same type (cf. InteractionImpl::isEventsOfSameType)
+ * during the throttle timeout.
+ */
+public enum EventRateMode {
+	/**
+	 * The first event is processed immediately. During the timeout, the following events
+	 * replace each other and the last one is processed at the end of the timeout.
+	 */
+	THROTTLE,
+	/**
+	 * Trailing debounce: each event restarts the timeout. The last event is processed
+	 * once no event occurred during the timeout.
+	 */
+	DEBOUNCE,
+	/**
+	 * Fixed-rate sampling: the first event starts the timeout. The events replace each other
+	 * and the last one is processed at the end of the timeout.
+	 */
+	SAMPLE,
+	/**
+	 * As THROTTLE, but the events are merged using the event merger of the interaction instead of
+	 * replacing each other, so that no information is lost (e.g. sum of scroll deltas).
+	 */
+	COALESCE
+}
@@ -17,12 +17,10 @@ package io.github.interacto.interaction;
 import io.github.interacto.fsm.FSM;
 import io.github.interacto.fsm.InitState;
 import io.github.interacto.fsm.OutputState;
-import io.reactivex.disposables.Disposable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import io.github.interacto.fsm.StateChangeListener;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -53,10 +51,20 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 	protected long throttleTimeout;
 	protected final AtomicLong throttleCounter;
 	protected E currentThrottledEvent;
-	/** The current throttle thread in progress. */
+	/** The current throttle timeout in progress, scheduled using the TimerService. */
 	protected Future<?> currThrottleTimeoutFuture;
-	protected ExecutorService executor;
-	protected final Disposable disposable;
+	/** Identifies the current throttle timeout: a timeout that was replaced by a new one must do nothing. */
+	protected long throttleGeneration;
+	/** The number of events processed by the FSM. */
+	protected long deliveredEvents;
+	/** The number of events dropped by the throttling. */
+	protected long droppedEvents;
+	/** How the events of the same type are reduced during the throttle timeout. */
+	protected EventRateMode eventRateMode;
+	/** Merges two events of the same type in the COALESCE mode. */
+	protected BinaryOperator<E> eventMerger;
+	/** Updates the events registered on each state change of the FSM. */
+	protected final StateChangeListener<E> stateListener;
 	private boolean consumeEvents;
 
 	protected InteractionImpl(final F fsm) {
@@ -66,11 +74,16 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 			throw new IllegalArgumentException("null fsm");
 		}
 
-		executor = null;
 		currThrottleTimeoutFuture = null;
+		throttleGeneration = 0L;
+		deliveredEvents = 0L;
+		droppedEvents = 0L;
+		eventRateMode = EventRateMode.THROTTLE;
+		eventMerger = null;
 		throttleTimeout = 0L;
 		this.fsm = fsm;
-		disposable = fsm.currentState().subscribe(current -> updateEventsRegistered(current.getValue(), current.getKey()));
+		stateListener = (oldState, newState) -> updateEventsRegistered(newState, oldState);
+		fsm.addStateChangeListener(stateListener);
 		activated = true;
 		throttleCounter = new AtomicLong();
 		currentThrottledEvent = null;
@@ -90,6 +103,33 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 		throttleTimeout = timeout;
 	}
 
+	/**
+	 * Sets how the events of the same type are reduced during the throttle timeout.
+	 * Has an effect only if the throttle timeout is greater than 0.
+	 * @param mode The event rate reduction mode. Nothing done if null.
+	 */
+	public void setEventRateMode(final EventRateMode mode) {
+		if(mode != null) {
+			eventRateMode = mode;
+		}
+	}
+
+	/**
+	 * @return How the events of the same type are reduced during the throttle timeout.
+	 */
+	public EventRateMode getEventRateMode() {
+		return eventRateMode;
+	}
+
+	/**
+	 * Sets the function that merges two events of the same type in the COALESCE mode.
+	 * @param merger Merges the pending event (first parameter) with the new one (second parameter).
+	 * 				The returned event must be of the same type. If null, the new event replaces the pending one.
+	 */
+	public void setEventMerger(final BinaryOperator<E> merger) {
+		eventMerger = merger;
+	}
+
 	protected abstract void updateEventsRegistered(final OutputState<E> newState, final OutputState<E> oldState);
 
 	/**
@@ -107,6 +147,7 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 	}
 
 	private void directEventProcess(final E event) {
+		deliveredEvents++;
 		fsm.process(event);
 		if(consumeEvents) {
 			consumeEvent(event);
@@ -135,35 +176,40 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 	protected abstract boolean isEventsOfSameType(final E evt1, final E evt2);
 
 	/**
-	 * Throttling: sleeping between events of the same type.
+	 * Throttling: schedules the end of the current throttling period using the shared TimerService.
+	 * The end of the period is then processed in the UI thread.
 	 */
 	private void createThrottleTimeout() {
-		if(executor == null) {
-			executor = Executors.newWorkStealingPool();
+		cancelThrottleTimeout();
+		final long generation = throttleGeneration;
+		currThrottleTimeoutFuture = TimerService.getInstance().schedule(() -> runInUIThread(() -> onThrottleTimeout(generation)), throttleTimeout);
+	}
+
+	/**
+	 * Cancels the current throttle timeout, if any.
+	 */
+	private void cancelThrottleTimeout() {
+		if(currThrottleTimeoutFuture != null) {
+			currThrottleTimeoutFuture.cancel(false);
 		}
+		// A timeout already started in the timer thread must do nothing.
+		throttleGeneration++;
+	}
 
-		// Cancelling the current task.
-		if(currThrottleTimeoutFuture != null && !currThrottleTimeoutFuture.isDone()) {
-			currThrottleTimeoutFuture.cancel(true);
+	/**
+	 * The end of a throttling period: the last throttled event, if any, is processed.
+	 * @param generation The identifier of the timeout.
+	 */
+	private void onThrottleTimeout(final long generation) {
+		if(generation != throttleGeneration) {
+			return;
 		}
 
-		// Executing a new timeout for the throttling operation.
-		currThrottleTimeoutFuture = executor.submit(() -> {
-			try {
-				ThreadService.getInstance().sleep(throttleTimeout);
-				E evt = null;
-				if(throttleCounter.getAndSet(0L) > 0L) {
-					evt = currentThrottledEvent;
-				}
-				currentThrottledEvent = null;
-				if(evt != null) {
-					final E evtToProcess = evt;
-					runInUIThread(() -> directEventProcess(evtToProcess));
-				}
-			}catch(final InterruptedException ex) {
-				ThreadService.getInstance().currentThread().interrupt();
-			}
-		});
+		final E evt = throttleCounter.getAndSet(0L) > 0L ? currentThrottledEvent : null;
+		currentThrottledEvent = null;
+		if(evt != null) {
+			directEventProcess(evt);
+		}
 	}
 
 	/**
@@ -175,26 +221,87 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 	protected abstract void runInUIThread(final Runnable cmd);
 
 	/**
-	 * Throttling processing: the given event is checked to be throttled or not.
+	 * Runs the given job in the UI thread.
+	 * Used by the objects that work outside the UI thread (e.g. asynchronous command executions)
+	 * but must come back to the UI thread.
+	 * @param job The job to execute in the UI thread. Nothing done if null.
+	 */
+	public void executeInUIThread(final Runnable job) {
+		if(job != null) {
+			runInUIThread(job);
+		}
+	}
+
+	/**
+	 * Throttling processing: the given event is checked to be throttled or not, according to the event rate mode.
 	 * @param event The event to check.
 	 * @return True: the event must be processed by the interaction.
 	 */
 	private boolean checkThrottlingEvent(final E event) {
 		if(currentThrottledEvent == null || !isEventsOfSameType(currentThrottledEvent, event)) {
+			// The pending throttled event of another type is processed first
 			if(throttleCounter.getAndSet(0L) > 0L) {
-				directEventProcess(event);
+				directEventProcess(currentThrottledEvent);
 			}
 			currentThrottledEvent = event;
 			createThrottleTimeout();
+
+			if(eventRateMode == EventRateMode.DEBOUNCE || eventRateMode == EventRateMode.SAMPLE) {
+				// The event waits for the end of the timeout
+				throttleCounter.set(1L);
+				return false;
+			}
 			return true;
-		}else {
-			// The previous throttled event is ignored
-			throttleCounter.incrementAndGet();
+		}
+
+		pendEvent(event);
+
+		if(eventRateMode == EventRateMode.DEBOUNCE) {
+			createThrottleTimeout();
+		}
+		return false;
+	}
+
+	/**
+	 * The given event of the same type as the pending one becomes the pending event.
+	 * @param event The event to pend.
+	 */
+	private void pendEvent(final E event) {
+		if(throttleCounter.getAndIncrement() == 0L) {
 			currentThrottledEvent = event;
-			return false;
+		}else {
+			if(eventRateMode == EventRateMode.COALESCE && eventMerger != null) {
+				currentThrottledEvent = eventMerger.apply(currentThrottledEvent, event);
+			}else {
+				// The previous throttled event is ignored
+				droppedEvents++;
+				currentThrottledEvent = event;
+			}
 		}
 	}
 
+	/**
+	 * @return The number of events processed by the FSM of the user interaction.
+	 */
+	public long getDeliveredEventsCount() {
+		return deliveredEvents;
+	}
+
+	/**
+	 * @return The number of events dropped by the throttling (i.e. replaced by a more recent event of the same type).
+	 */
+	public long getDroppedEventsCount() {
+		return droppedEvents;
+	}
+
+	/**
+	 * Resets the statistics of the delivered and dropped events.
+	 */
+	public void resetEventsStatistics() {
+		deliveredEvents = 0L;
+		droppedEvents = 0L;
+	}
+
 	/**
 	 * Processes the given UI event.
 	 * @param event The event to process.
@@ -237,8 +344,8 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 	 * @param activated True: the user interaction will be activated.
 	 */
 	public void setActivated(final boolean activated) {
-		if(logger != null) {
-			logger.log(Level.INFO, "Interaction activation: " + activated);
+		if(logger != null && logger.isLoggable(Level.INFO)) {
+			logger.log(Level.INFO, () -> "Interaction activation: " + activated);
 		}
 
 		this.activated = activated;
@@ -267,16 +374,14 @@ public abstract class InteractionImpl<D extends InteractionData, E, F extends FS
 	 * 				Then, user interaction can be used any more.
 	 */
 	public void uninstall() {
-		disposable.dispose();
+		fsm.removeStateChangeListener(stateListener);
 		setActivated(false);
 		logger = null;
-		if(executor != null) {
-			executor.shutdownNow();
-			try {
-				executor.awaitTermination(5, TimeUnit.SECONDS);
-			}catch(final InterruptedException ex) {
-				ThreadService.getInstance().currentThread().interrupt();
-			}
+		cancelThrottleTimeout();
+		// The pending throttled event is dropped
+		if(throttleCounter.getAndSet(0L) > 0L) {
+			droppedEvents++;
 		}
+		currentThrottledEvent = null;
 	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.interaction;
+
+import io.github.interacto.error.ErrorCatcher;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service that runs delayed jobs (e.g. the timeout of timeout transitions).
+ * All the jobs are run by a single daemon thread shared by the whole application,
+ * instead of one thread per delayed job.
+ * A scheduled job is cancelled using Future::cancel: no thread interruption is required.
+ */
+public class TimerService {
+	/** The name of the thread that runs the delayed jobs. */
+	public static final String TIMER_THREAD_NAME = "interacto-timer";
+
+	private static TimerService instance = new TimerService();
+
+	/**
+	 * @return The single instance. Cannot be null.
+	 */
+	public static TimerService getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Sets the single instance.
+	 * @param newInstance The new single instance. Nothing done if null.
+	 */
+	public static void setInstance(final TimerService newInstance) {
+		if(newInstance != null) {
+			instance = newInstance;
+		}
+	}
+
+	/** The executor that runs the jobs. Created on the first scheduled job. */
+	private ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * Creates the service. The timer thread is created on the first scheduled job.
+	 */
+	public TimerService() {
+		super();
+	}
+
+	/**
+	 * Schedules a job. The exceptions and errors thrown by the job are reported to the ErrorCatcher.
+	 * The job is run in the timer thread: UI jobs must be delegated to the UI thread.
+	 * @param job The job to run. Cannot be null.
+	 * @param delay The delay in ms before running the job.
+	 * @return The scheduled job. Cancelling it (Future::cancel) removes it from the timer.
+	 * @throws IllegalArgumentException If the given job is null.
+	 */
+	public Future<?> schedule(final Runnable job, final long delay) {
+		if(job == null) {
+			throw new IllegalArgumentException("null job");
+		}
+
+		final Runnable reportingJob = () -> {
+			try {
+				job.run();
+			}catch(final Throwable ex) {
+				ErrorCatcher.getInstance().reportError(ex);
+			}
+		};
+
+		// Scheduled while holding the lock so that a concurrent shutdown cannot stop the executor
+		// between its creation and the scheduling (that would reject the job).
+		synchronized(this) {
+			return getExecutor().schedule(reportingJob, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops the timer thread. The pending jobs are discarded.
+	 * A new timer thread will be created on the next scheduled job.
+	 */
+	public synchronized void shutdown() {
+		if(executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	private synchronized ScheduledThreadPoolExecutor getExecutor() {
+		if(executor == null) {
+			executor = new ScheduledThreadPoolExecutor(1, job -> {
+				final Thread thread = new Thread(job, TIMER_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.setRemoveOnCancelPolicy(true);
+		}
+		return executor;
+	}
+}
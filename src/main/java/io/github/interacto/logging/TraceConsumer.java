@@ -0,0 +1,29 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.logging;
+
+/**
+ * Consumes the records of a TraceRecorder.
+ */
+@FunctionalInterface
+public interface TraceConsumer {
+	/**
+	 * Consumes a trace record.
+	 * @param nanoTime The time of the record (cf. System::nanoTime).
+	 * @param event The kind of the recorded event.
+	 * @param sourceId The identity hash code of the object that produced the event (FSM, binding, command).
+	 */
+	void accept(final long nanoTime, final TraceEvent event, final int sourceId);
+}
@@ -0,0 +1,53 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.logging;
+
+/**
+ * The kinds of events recorded by the TraceRecorder.
+ */
+public enum TraceEvent {
+	/** An FSM starts. */
+	FSM_STARTED,
+	/** An FSM moves to a new standard state. */
+	FSM_UPDATED,
+	/** An FSM reaches a terminal state. */
+	FSM_ENDED,
+	/** An FSM reaches a cancelling state. */
+	FSM_CANCELLED,
+	/** An FSM executes a timeout transition. */
+	FSM_TIMEOUT,
+	/** An FSM processes an event still in progress at the end of its previous execution. */
+	FSM_EVENT_RECYCLED,
+	/** A binding starts. */
+	BINDING_STARTED,
+	/** A binding is updated. */
+	BINDING_UPDATED,
+	/** A binding ends. */
+	BINDING_ENDED,
+	/** A binding is cancelled. */
+	BINDING_CANCELLED,
+	/** A binding creates a command. */
+	CMD_CREATED,
+	/** A binding executes a command. */
+	CMD_EXECUTED,
+	/** A command cannot be executed. */
+	CMD_NOT_EXECUTABLE,
+	/** A command is cancelled. */
+	CMD_CANCELLED,
+	/** An executed command had effects. */
+	CMD_HAD_EFFECT,
+	/** An executed command had no effect. */
+	CMD_HAD_NO_EFFECT
+}
@@ -0,0 +1,178 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.logging;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the events of FSMs, bindings, and commands in a ring buffer of primitive records.
+ * Recording an event allocates nothing, so the recorder can stay enabled in production.
+ * When the buffer is full, the oldest records are overwritten.
+ * The recorder is disabled by default.
+ */
+public class TraceRecorder {
+	/** The default number of records kept. */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static final TraceEvent[] EVENTS = TraceEvent.values();
+
+	private static TraceRecorder instance = new TraceRecorder(DEFAULT_CAPACITY);
+
+	/**
+	 * @return The single instance. Cannot be null.
+	 */
+	public static TraceRecorder getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Sets the single instance.
+	 * @param newInstance The new single instance. Nothing done if null.
+	 */
+	public static void setInstance(final TraceRecorder newInstance) {
+		if(newInstance != null) {
+			instance = newInstance;
+		}
+	}
+
+	private final long[] times;
+	private final byte[] events;
+	private final int[] sources;
+	/**
+	 * The number of the record stored in each slot, -1 while the slot is being written.
+	 * Permits the readers to skip the records being written or overwritten without locking the writers.
+	 */
+	private final AtomicLongArray sequences;
+	private final int mask;
+	/** The number of records done since the creation. */
+	private final AtomicLong count;
+	/** The value of count at the last clear. */
+	private volatile long cleared;
+	private volatile boolean enabled;
+
+	/**
+	 * Creates a disabled recorder.
+	 * @param capacity The number of records kept. Rounded up to a power of two.
+	 * @throws IllegalArgumentException If the capacity is not strictly positive.
+	 */
+	public TraceRecorder(final int capacity) {
+		super();
+
+		if(capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Incorrect capacity: " + capacity);
+		}
+
+		final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		times = new long[size];
+		events = new byte[size];
+		sources = new int[size];
+		sequences = new AtomicLongArray(size);
+		for(int i = 0; i < size; i++) {
+			sequences.set(i, -1L);
+		}
+		mask = size - 1;
+		count = new AtomicLong();
+		cleared = 0L;
+		enabled = false;
+	}
+
+	/**
+	 * @return True: the events are recorded.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables the recording.
+	 * @param enabled True: the events will be recorded.
+	 */
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return The maximal number of records kept.
+	 */
+	public int getCapacity() {
+		return times.length;
+	}
+
+	/**
+	 * Records an event. Nothing done if the recorder is disabled.
+	 * Lock-free: concurrent threads record their events in distinct slots.
+	 * @param event The kind of event. Nothing done if null.
+	 * @param source The object that produced the event. May be null.
+	 */
+	public void record(final TraceEvent event, final Object source) {
+		if(enabled && event != null) {
+			final long time = System.nanoTime();
+			final int sourceId = System.identityHashCode(source);
+			final long index = count.getAndIncrement();
+			final int slot = (int) (index & mask);
+
+			sequences.set(slot, -1L);
+			VarHandle.storeStoreFence();
+			times[slot] = time;
+			events[slot] = (byte) event.ordinal();
+			sources[slot] = sourceId;
+			sequences.set(slot, index);
+		}
+	}
+
+	/**
+	 * @return The number of records currently kept.
+	 */
+	public int size() {
+		return (int) Math.min(count.get() - cleared, times.length);
+	}
+
+	/**
+	 * Removes all the records.
+	 */
+	public void clear() {
+		cleared = count.get();
+	}
+
+	/**
+	 * Visits the kept records, from the oldest to the newest one.
+	 * The records being written (or overwritten) by other threads during the visit are skipped.
+	 * @param consumer The consumer of the records. Nothing done if null.
+	 */
+	public void forEach(final TraceConsumer consumer) {
+		if(consumer == null) {
+			return;
+		}
+
+		final long end = count.get();
+
+		for(long i = Math.max(cleared, end - times.length); i < end; i++) {
+			final int slot = (int) (i & mask);
+
+			if(sequences.get(slot) == i) {
+				final long time = times[slot];
+				final byte event = events[slot];
+				final int source = sources[slot];
+				VarHandle.loadLoadFence();
+
+				if(sequences.get(slot) == i) {
+					consumer.accept(time, EVENTS[event], source);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+import io.github.interacto.error.ErrorCatcher;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe undo collector, to use (cf. UndoCollector::setInstance) when undoable objects
+ * are added from several threads (e.g. asynchronous commands).
+ * The history is guarded by a lock: its changes are linearized in their lock acquisition order.
+ * Its critical sections only contain the history changes, not the undo/redo of the undoable objects.
+ * Undoing and redoing are guarded by a second lock, taken before the history one: the undoable objects
+ * are undone (resp. redone) one at a time, in the order of the history changes, once the history lock is released.
+ * So adding undoable objects does not wait for a running undo or redo.
+ * The history changes before the undoable object is undone (resp. redone): if this last fails, the history is not restored.
+ * The observers are notified after the locks are released, in the order of the changes.
+ * A failing observer is reported (cf. ErrorCatcher) and does not prevent the next notifications from being sent.
+ * The last undoable and redoable objects are read without locking.
+ * The stacks returned by getUndo and getRedo must not be used concurrently to the collector.
+ */
+public class ConcurrentUndoCollector extends UndoCollector {
+	/** Guards the history. */
+	private final ReentrantLock lock;
+	/** Serialises the undo and redo of the undoable objects. Taken before the history lock. */
+	private final ReentrantLock undoLock;
+	/** The notifications produced under the lock, to send once the lock is released. */
+	private final Queue<Runnable> notifications;
+	/** True while a thread sends the pending notifications. */
+	private final AtomicBoolean notifying;
+	private volatile Optional<Undoable> lastUndo;
+	private volatile Optional<Undoable> lastRedo;
+	private volatile ResourceBundle currentBundle;
+
+	/**
+	 * Creates the undo collector.
+	 */
+	public ConcurrentUndoCollector() {
+		super();
+		lock = new ReentrantLock();
+		undoLock = new ReentrantLock();
+		notifications = new ConcurrentLinkedQueue<>();
+		notifying = new AtomicBoolean();
+		lastUndo = Optional.empty();
+		lastRedo = Optional.empty();
+	}
+
+	@Override
+	protected void notifyUndo(final Optional<Undoable> last) {
+		notifications.add(() -> super.notifyUndo(last));
+	}
+
+	@Override
+	protected void notifyRedo(final Optional<Undoable> last) {
+		notifications.add(() -> super.notifyRedo(last));
+	}
+
+	/**
+	 * Runs the given change of the history under the lock, then sends the notifications it produced.
+	 */
+	private void change(final Runnable job) {
+		changeHistory(() -> {
+			job.run();
+			return null;
+		});
+		sendNotifications();
+	}
+
+	/**
+	 * Runs the given change of the history under the lock. The notifications it produced are not sent.
+	 * @return The result of the change.
+	 */
+	private <T> T changeHistory(final Supplier<T> job) {
+		lock.lock();
+		try {
+			return job.get();
+		}finally {
+			try {
+				lastUndo = super.getLastUndo();
+				lastRedo = super.getLastRedo();
+			}finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Sends the pending notifications. A single thread sends them at a time, so that their order is kept.
+	 */
+	private void sendNotifications() {
+		while(!notifications.isEmpty() && notifying.compareAndSet(false, true)) {
+			try {
+				Runnable notification = notifications.poll();
+				while(notification != null) {
+					sendNotification(notification);
+					notification = notifications.poll();
+				}
+			}finally {
+				notifying.set(false);
+			}
+		}
+	}
+
+	private static void sendNotification(final Runnable notification) {
+		try {
+			notification.run();
+		}catch(final RuntimeException ex) {
+			ErrorCatcher.getInstance().reportError(ex);
+		}
+	}
+
+	@Override
+	public void clear() {
+		change(() -> super.clear());
+	}
+
+	@Override
+	public void add(final Undoable undoable) {
+		change(() -> super.add(undoable));
+	}
+
+	/**
+	 * Undoes the last undoable object. The history lock is released while the undoable object is undone.
+	 */
+	@Override
+	public void undo() {
+		undoLock.lock();
+		try {
+			final Undoable undoable = changeHistory(() -> moveLastUndo());
+			if(undoable != null) {
+				undoable.undo();
+			}
+		}finally {
+			undoLock.unlock();
+			sendNotifications();
+		}
+	}
+
+	/**
+	 * Redoes the last redoable object. The history lock is released while the undoable object is redone.
+	 */
+	@Override
+	public void redo() {
+		undoLock.lock();
+		try {
+			final Undoable undoable = changeHistory(() -> moveLastRedo());
+			if(undoable != null) {
+				undoable.redo();
+			}
+		}finally {
+			undoLock.unlock();
+			sendNotifications();
+		}
+	}
+
+	@Override
+	public void setSizeMax(final int max) {
+		change(() -> super.setSizeMax(max));
+	}
+
+	@Override
+	public void setMemoryBudget(final long budget) {
+		change(() -> super.setMemoryBudget(budget));
+	}
+
+	@Override
+	public void setMergeWindow(final long window) {
+		change(() -> super.setMergeWindow(window));
+	}
+
+	@Override
+	public void enableSpillToDisk(final Path directory, final int live) throws IOException {
+		lock.lock();
+		try {
+			super.enableSpillToDisk(directory, live);
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void disableSpillToDisk() {
+		change(() -> super.disableSpillToDisk());
+	}
+
+	@Override
+	public void setBundle(final ResourceBundle bundle) {
+		currentBundle = bundle;
+		change(() -> super.setBundle(bundle));
+	}
+
+	@Override
+	public Optional<Undoable> getLastUndo() {
+		return lastUndo;
+	}
+
+	@Override
+	public Optional<Undoable> getLastRedo() {
+		return lastRedo;
+	}
+
+	@Override
+	public Optional<String> getLastUndoMessage() {
+		return lastUndo.map(undoable -> undoable.getUndoName(currentBundle));
+	}
+
+	@Override
+	public Optional<String> getLastRedoMessage() {
+		return lastRedo.map(undoable -> undoable.getUndoName(currentBundle));
+	}
+
+	@Override
+	public int getUndoDepth() {
+		lock.lock();
+		try {
+			return super.getUndoDepth();
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getRedoDepth() {
+		lock.lock();
+		try {
+			return super.getRedoDepth();
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getRetainedSize() {
+		lock.lock();
+		try {
+			return super.getRetainedSize();
+		}finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A stack of spilled undoable objects (cf. SpillableUndoable) stored in a memory-mapped file.
+ * Records are appended at the end of the file: [retained size (long)][length (int)][memento].
+ * The readers of the mementos stay in memory.
+ * Popping a record makes its space reusable. Removing bottom records leaves free space at the beginning
+ * of the file: the records are moved back to the beginning of the file once this free space exceeds the space they use,
+ * so that the file does not grow when the history is full.
+ */
+final class MappedUndoStore implements Closeable {
+	/** The header size of a record: the retained size and the length of the memento. */
+	private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+	private static final int INITIAL_MAPPING_SIZE = 1 << 20;
+	private static final int COPY_CHUNK_SIZE = 1 << 16;
+	private static final Logger LOGGER = Logger.getLogger(MappedUndoStore.class.getName());
+	/** sun.misc.Unsafe::invokeCleaner bound to the Unsafe instance. Null if not available. */
+	private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner("sun.misc.Unsafe");
+
+	private final Path file;
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+	/** The offsets of the records. The bottom one is at 'base', the top one at 'top - 1'. */
+	private long[] offsets;
+	/** The readers of the mementos of the records, at the same indexes as their offsets. */
+	private SpillableUndoable.MementoReader[] readers;
+	private int base;
+	private int top;
+	/** The position where the next record is written. */
+	private int writePos;
+	/** The last undoable object whose memento could not be stored. Not pushed again. */
+	private SpillableUndoable rejected;
+
+	/**
+	 * Creates the store in a new file of the given directory. The file is deleted on close.
+	 * @param directory The directory where the file is created.
+	 * @throws IOException If the file cannot be created or mapped. The file is then deleted.
+	 */
+	MappedUndoStore(final Path directory) throws IOException {
+		super();
+		file = Files.createTempFile(directory, "interacto-undo", ".bin");
+		channel = openChannel(file);
+		buffer = mapChannel(channel, file);
+		offsets = new long[64];
+		readers = new SpillableUndoable.MementoReader[64];
+		base = 0;
+		top = 0;
+		writePos = 0;
+	}
+
+	/**
+	 * Opens the given file. The file is deleted if it cannot be opened.
+	 */
+	static FileChannel openChannel(final Path file) throws IOException {
+		try {
+			return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}catch(final IOException ex) {
+			Files.deleteIfExists(file);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Maps the beginning of the file of the given channel. The channel is closed and the file deleted if the mapping fails.
+	 */
+	static MappedByteBuffer mapChannel(final FileChannel channel, final Path file) throws IOException {
+		try {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_MAPPING_SIZE);
+		}catch(final IOException ex) {
+			channel.close();
+			Files.deleteIfExists(file);
+			throw ex;
+		}
+	}
+
+	int size() {
+		return top - base;
+	}
+
+	boolean isEmpty() {
+		return top == base;
+	}
+
+	/**
+	 * @return The size of the file region in use, free space at the beginning of the file included.
+	 */
+	int getUsedSpace() {
+		return writePos;
+	}
+
+	/**
+	 * @param undoable The undoable object to check.
+	 * @return True if the given object can be pushed: it has not been rejected by a previous push.
+	 */
+	boolean accepts(final Undoable undoable) {
+		return undoable instanceof SpillableUndoable && undoable != rejected;
+	}
+
+	/**
+	 * Stores the memento of the given object at the top of the stack.
+	 * If it fails, the object is rejected: it is not accepted anymore (cf. accepts).
+	 * @param undoable The object to store.
+	 * @param retainedSize The retained size of the object, given back when popped.
+	 * @throws IOException If the memento cannot be written or the file cannot grow.
+	 */
+	void push(final SpillableUndoable undoable, final long retainedSize) throws IOException {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try(final DataOutputStream out = new DataOutputStream(bytes)) {
+				undoable.writeMemento(out);
+			}
+			final byte[] data = bytes.toByteArray();
+			ensureMapped((long) writePos + HEADER_SIZE + data.length);
+
+			if(top == offsets.length) {
+				growOffsets();
+			}
+			offsets[top] = writePos;
+			readers[top] = undoable.getMementoReader();
+			top++;
+			buffer.position(writePos);
+			buffer.putLong(retainedSize);
+			buffer.putInt(data.length);
+			buffer.put(data);
+			writePos = buffer.position();
+		}catch(final IOException ex) {
+			rejected = undoable;
+			throw ex;
+		}
+	}
+
+	/**
+	 * @return The retained size of the top object. The stack must not be empty.
+	 */
+	long peekRetainedSize() {
+		return buffer.getLong((int) offsets[top - 1]);
+	}
+
+	/**
+	 * Removes the top record and re-creates its object. The stack must not be empty.
+	 * The record is removed even if the object cannot be re-created.
+	 * @return The re-created object.
+	 * @throws IOException If the object cannot be re-created from its memento.
+	 */
+	Undoable pop() throws IOException {
+		top--;
+		final int offset = (int) offsets[top];
+		final SpillableUndoable.MementoReader reader = readers[top];
+		readers[top] = null;
+		final byte[] data = new byte[buffer.getInt(offset + Long.BYTES)];
+		buffer.position(offset + HEADER_SIZE);
+		buffer.get(data);
+
+		if(isEmpty()) {
+			clear();
+		}else {
+			writePos = offset;
+		}
+
+		try(final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			return reader.read(in);
+		}
+	}
+
+	/**
+	 * Removes the bottom record. The stack must not be empty.
+	 */
+	void removeLast() {
+		readers[base] = null;
+		base++;
+		if(isEmpty()) {
+			clear();
+		}else if(offsets[base] >= writePos - offsets[base]) {
+			compact();
+		}
+	}
+
+	void clear() {
+		Arrays.fill(readers, base, top, null);
+		base = 0;
+		top = 0;
+		writePos = 0;
+		rejected = null;
+	}
+
+	/**
+	 * Closes the file channel, releases the mapping and deletes the file.
+	 * @throws IOException If the file cannot be closed or deleted.
+	 */
+	@Override
+	public void close() throws IOException {
+		clear();
+		unmap(INVOKE_CLEANER, buffer);
+		buffer = null;
+		channel.close();
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Moves the records to the beginning of the file, and their offsets to the beginning of the arrays.
+	 */
+	private void compact() {
+		final int shift = (int) offsets[base];
+		final byte[] chunk = new byte[Math.min(COPY_CHUNK_SIZE, writePos - shift)];
+		// The records are moved backward, so copying the chunks forward does not overwrite records not moved yet
+		for(int pos = shift; pos < writePos; pos += chunk.length) {
+			final int length = Math.min(chunk.length, writePos - pos);
+			buffer.position(pos);
+			buffer.get(chunk, 0, length);
+			buffer.position(pos - shift);
+			buffer.put(chunk, 0, length);
+		}
+		writePos -= shift;
+
+		final int size = size();
+		for(int i = 0; i < size; i++) {
+			offsets[i] = offsets[base + i] - shift;
+		}
+		System.arraycopy(readers, base, readers, 0, size);
+		Arrays.fill(readers, size, top, null);
+		base = 0;
+		top = size;
+	}
+
+	void ensureMapped(final long required) throws IOException {
+		if(required > Integer.MAX_VALUE) {
+			throw new IOException("The undo store is full: " + file);
+		}
+		if(required > buffer.capacity()) {
+			final long newSize = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+			final MappedByteBuffer newBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+			unmap(INVOKE_CLEANER, buffer);
+			buffer = newBuffer;
+		}
+	}
+
+	private void growOffsets() {
+		// Reuses the slots of the removed bottom records before allocating
+		if(base > 0) {
+			System.arraycopy(offsets, base, offsets, 0, top - base);
+			System.arraycopy(readers, base, readers, 0, top - base);
+			Arrays.fill(readers, top - base, top, null);
+			top -= base;
+			base = 0;
+		}else {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			readers = Arrays.copyOf(readers, readers.length * 2);
+		}
+	}
+
+	/**
+	 * Releases the given mapping now rather than when garbage collected, so that the file mappings do not pile up.
+	 * The buffer must not be used afterwards. Relies on sun.misc.Unsafe::invokeCleaner: if not available,
+	 * the mapping is released when the buffer is garbage collected.
+	 * @param invokeCleaner The bound sun.misc.Unsafe::invokeCleaner. Nothing done if null.
+	 */
+	static void unmap(final MethodHandle invokeCleaner, final ByteBuffer mapping) {
+		if(invokeCleaner == null) {
+			return;
+		}
+		try {
+			invokeCleaner.invokeExact(mapping);
+		}catch(final Throwable ex) {
+			LOGGER.log(Level.WARNING, "Cannot release the mapping of an undo store: released when garbage collected", ex);
+		}
+	}
+
+	/**
+	 * @param unsafeClassName The name of the Unsafe class.
+	 * @return The invokeCleaner method of the Unsafe class bound to its instance. Null if not available.
+	 */
+	static MethodHandle findInvokeCleaner(final String unsafeClassName) {
+		try {
+			return bindInvokeCleaner(Class.forName(unsafeClassName));
+		}catch(final ReflectiveOperationException | RuntimeException ex) {
+			LOGGER.log(Level.WARNING, "sun.misc.Unsafe::invokeCleaner not available: the mappings of the undo stores " +
+				"are released when garbage collected", ex);
+			return null;
+		}
+	}
+
+	private static MethodHandle bindInvokeCleaner(final Class<?> unsafeClass) throws ReflectiveOperationException {
+		final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+		theUnsafe.setAccessible(true);
+		return MethodHandles.lookup()
+			.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+			.bindTo(theUnsafe.get(null));
+	}
+}
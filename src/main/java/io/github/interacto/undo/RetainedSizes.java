@@ -0,0 +1,113 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+/**
+ * A stack of retained sizes stored in a ring buffer of primitive values.
+ * Goes with a stack of undoable objects: the first value is the size of the top undoable object.
+ * Pushing and popping values does not allocate once the buffer is large enough.
+ */
+final class RetainedSizes {
+	private long[] values;
+	/** The index of the first (top) value. */
+	private int head;
+	private int size;
+	/** The sum of the stored values. */
+	private long total;
+
+	RetainedSizes(final int capacity) {
+		super();
+		values = new long[Math.max(1, capacity)];
+		head = 0;
+		size = 0;
+		total = 0L;
+	}
+
+	long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Adds a value at the top of the stack.
+	 * @param value The value to add.
+	 */
+	void push(final long value) {
+		if(size == values.length) {
+			grow();
+		}
+		head = (head - 1 + values.length) % values.length;
+		values[head] = value;
+		size++;
+		total += value;
+	}
+
+	/**
+	 * Removes the top value. The stack must not be empty.
+	 * @return The removed value.
+	 */
+	long pop() {
+		final long value = values[head];
+		head = (head + 1) % values.length;
+		size--;
+		total -= value;
+		return value;
+	}
+
+	/**
+	 * Removes the bottom value. The stack must not be empty.
+	 * @return The removed value.
+	 */
+	long removeLast() {
+		final long value = values[(head + size - 1) % values.length];
+		size--;
+		total -= value;
+		return value;
+	}
+
+	/**
+	 * @return The bottom value. The stack must not be empty.
+	 */
+	long peekLast() {
+		return values[(head + size - 1) % values.length];
+	}
+
+	/**
+	 * Adds a value at the bottom of the stack.
+	 * @param value The value to add.
+	 */
+	void addLast(final long value) {
+		if(size == values.length) {
+			grow();
+		}
+		values[(head + size) % values.length] = value;
+		size++;
+		total += value;
+	}
+
+	void clear() {
+		head = 0;
+		size = 0;
+		total = 0L;
+	}
+
+	private void grow() {
+		final long[] newValues = new long[values.length * 2];
+		for(int i = 0; i < size; i++) {
+			newValues[i] = values[(head + i) % values.length];
+		}
+		values = newValues;
+		head = 0;
+	}
+}
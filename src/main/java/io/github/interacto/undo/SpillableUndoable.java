@@ -0,0 +1,54 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An undoable object that the undo collector can spill to disk (cf. UndoCollector::enableSpillToDisk).
+ * The object writes its memento, i.e. the data needed to undo and redo it.
+ * When undone (resp. redone), the object is re-created from its memento by its reader.
+ * The reader must bind the re-created object to the live objects of the application (e.g. the model),
+ * not to copies of them. Undoable objects that do not implement this interface are never spilled.
+ */
+public interface SpillableUndoable extends Undoable {
+	/**
+	 * Writes the memento of the undoable object.
+	 * @param out The output to write the memento to.
+	 * @throws IOException If the memento cannot be written. The object is then kept in memory.
+	 */
+	void writeMemento(final DataOutput out) throws IOException;
+
+	/**
+	 * @return The reader that re-creates the undoable object from its memento. Kept in memory while the object is spilled.
+	 */
+	MementoReader getMementoReader();
+
+	/**
+	 * Re-creates spilled undoable objects from their memento.
+	 */
+	@FunctionalInterface
+	interface MementoReader {
+		/**
+		 * Re-creates an undoable object from its memento.
+		 * @param in The input to read the memento from, as written by SpillableUndoable::writeMemento.
+		 * @return The re-created undoable object, bound to the live objects of the application.
+		 * @throws IOException If the memento cannot be read.
+		 */
+		Undoable read(final DataInput in) throws IOException;
+	}
+}
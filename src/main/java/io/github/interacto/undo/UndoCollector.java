@@ -14,12 +14,16 @@
  */
 package io.github.interacto.undo;
 
+import io.github.interacto.error.ErrorCatcher;
 import io.reactivex.Observable;
 import io.reactivex.subjects.PublishSubject;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A collector of undone/redone objects.
@@ -38,8 +42,26 @@ public class UndoCollector {
 	private final Deque<Undoable> undo;
 	/** Contains the redoable objects. */
 	private final Deque<Undoable> redo;
+	/** The retained sizes of the undoable objects, in the same order. */
+	private final RetainedSizes undoSizes;
+	/** The retained sizes of the redoable objects, in the same order. */
+	private final RetainedSizes redoSizes;
 	/** The maximal number of undo. */
 	private int sizeMax;
+	/** The maximal number of bytes the undoable and redoable objects can retain. */
+	private long memoryBudget;
+	/** The duration in ms during which an added undoable object can be absorbed by the last one. 0 means no merge. */
+	private long mergeWindow;
+	/** The time in ns at which the last undoable object was added or absorbed. */
+	private long lastAddTime;
+	/** True if the last undoable object can absorb the next added one, i.e. it has not been undone since added. */
+	private boolean mergeable;
+	/** The number of undoable (resp. redoable) objects kept in memory when spilling to disk. */
+	private int liveSize;
+	/** The oldest undoable objects, spilled to disk. Null if not spilling to disk. */
+	private MappedUndoStore undoStore;
+	/** The furthest redoable objects, spilled to disk. Null if not spilling to disk. */
+	private MappedUndoStore redoStore;
 	private ResourceBundle bundle;
 	private final PublishSubject<Optional<Undoable>> undoPublisher;
 	private final PublishSubject<Optional<Undoable>> redoPublisher;
@@ -66,9 +88,13 @@ public class UndoCollector {
 	 */
 	public UndoCollector() {
 		super();
-		undo = new ArrayDeque<>();
-		redo = new ArrayDeque<>();
 		sizeMax = 30;
+		memoryBudget = Long.MAX_VALUE;
+		// Preallocated so that pushing and popping objects does not allocate
+		undo = new ArrayDeque<>(sizeMax);
+		redo = new ArrayDeque<>(sizeMax);
+		undoSizes = new RetainedSizes(sizeMax);
+		redoSizes = new RetainedSizes(sizeMax);
 		undoPublisher = PublishSubject.create();
 		redoPublisher = PublishSubject.create();
 	}
@@ -92,13 +118,34 @@ public class UndoCollector {
 	}
 
 
+	/**
+	 * Notifies the observers of the undoable objects (cf. undos).
+	 * @param last The new last undoable object, empty if no undoable object.
+	 */
+	protected void notifyUndo(final Optional<Undoable> last) {
+		undoPublisher.onNext(last);
+	}
+
+
+	/**
+	 * Notifies the observers of the redoable objects (cf. redos).
+	 * @param last The new last redoable object, empty if no redoable object.
+	 */
+	protected void notifyRedo(final Optional<Undoable> last) {
+		redoPublisher.onNext(last);
+	}
+
+
 	/**
 	 * Removes all the undoable objects of the collector.
 	 */
 	public void clear() {
+		mergeable = false;
 		if(!undo.isEmpty()) {
 			undo.clear();
-			undoPublisher.onNext(Optional.empty());
+			undoSizes.clear();
+			clearStore(undoStore);
+			notifyUndo(Optional.empty());
 		}
 		clearRedo();
 	}
@@ -107,25 +154,77 @@ public class UndoCollector {
 	private void clearRedo() {
 		if(!redo.isEmpty()) {
 			redo.clear();
-			redoPublisher.onNext(Optional.empty());
+			redoSizes.clear();
+			clearStore(redoStore);
+			notifyRedo(Optional.empty());
 		}
 	}
 
 
 	/**
 	 * Adds an undoable object to the collector.
+	 * The oldest undoable objects are removed if the memory budget is exceeded.
+	 * If the merge window is set, the last undoable object may absorb the given one (cf. Undoable::absorb):
+	 * in this case, nothing is notified and the history does not grow.
 	 * @param undoable The undoable object to add.
 	 */
 	public void add(final Undoable undoable) {
 		if(undoable != null && sizeMax > 0) {
-			if(undo.size() == sizeMax) {
-				undo.removeLast();
+			final long now = mergeWindow > 0L ? System.nanoTime() : 0L;
+
+			if(absorbedByLast(undoable, now)) {
+				lastAddTime = now;
+				undoSizes.pop();
+				undoSizes.push(Math.max(0L, undo.peek().getRetainedSize()));
+				enforceMemoryBudget();
+				return;
+			}
+
+			if(getUndoDepth() == sizeMax) {
+				removeOldestUndo();
 			}
 
 			undo.push(undoable);
-			undoPublisher.onNext(Optional.of(undoable));
+			undoSizes.push(Math.max(0L, undoable.getRetainedSize()));
+			spill(undo, undoSizes, undoStore);
+			lastAddTime = now;
+			mergeable = true;
+			notifyUndo(Optional.of(undoable));
 			// The redoable objects must be removed.
 			clearRedo();
+			enforceMemoryBudget();
+		}
+	}
+
+
+	private boolean absorbedByLast(final Undoable undoable, final long now) {
+		return mergeable && mergeWindow > 0L && !undo.isEmpty() && now - lastAddTime <= TimeUnit.MILLISECONDS.toNanos(mergeWindow)
+			&& undo.peek() != undoable && undo.peek().absorb(undoable);
+	}
+
+
+	/**
+	 * Removes the oldest undoable objects, then the oldest redoable objects, until the memory budget is respected.
+	 * The last undoable object (or the last redoable one if no undoable object) is never removed.
+	 */
+	private void enforceMemoryBudget() {
+		while(getRetainedSize() > memoryBudget && undo.size() > 1) {
+			// The spilled objects are older than the removed one: they cannot be undone anymore
+			clearStore(undoStore);
+			undo.removeLast();
+			undoSizes.removeLast();
+		}
+
+		boolean redoRemoved = false;
+		while(getRetainedSize() > memoryBudget && !redo.isEmpty() && undo.size() + redo.size() > 1) {
+			clearStore(redoStore);
+			redo.removeLast();
+			redoSizes.removeLast();
+			redoRemoved = true;
+		}
+
+		if(redoRemoved && redo.isEmpty()) {
+			notifyRedo(Optional.empty());
 		}
 	}
 
@@ -134,13 +233,10 @@ public class UndoCollector {
 	 * Undoes the last undoable object.
 	 */
 	public void undo() {
-		if(!undo.isEmpty()) {
-			final Undoable undoable = undo.pop();
-
+		final Undoable undoable = undo.peek();
+		if(undoable != null) {
 			undoable.undo();
-			redo.push(undoable);
-			undoPublisher.onNext(getLastUndo());
-			redoPublisher.onNext(Optional.of(undoable));
+			moveLastUndo();
 		}
 	}
 
@@ -149,14 +245,53 @@ public class UndoCollector {
 	 * Redoes the last undoable object.
 	 */
 	public void redo() {
-		if(!redo.isEmpty()) {
-			final Undoable undoable = redo.pop();
-
+		final Undoable undoable = redo.peek();
+		if(undoable != null) {
 			undoable.redo();
-			undo.push(undoable);
-			undoPublisher.onNext(Optional.of(undoable));
-			redoPublisher.onNext(getLastRedo());
+			moveLastRedo();
+		}
+	}
+
+
+	/**
+	 * Moves the last undoable object to the redoable ones, without undoing it. The observers are notified.
+	 * @return The moved object or null if there is no undoable object.
+	 */
+	protected Undoable moveLastUndo() {
+		if(undo.isEmpty()) {
+			return null;
 		}
+		final Undoable undoable = undo.pop();
+		final long size = undoSizes.pop();
+		mergeable = false;
+		rehydrate(undo, undoSizes, undoStore);
+		redo.push(undoable);
+		redoSizes.push(size);
+		spill(redo, redoSizes, redoStore);
+		notifyUndo(Optional.ofNullable(undo.peek()));
+		notifyRedo(Optional.of(undoable));
+		return undoable;
+	}
+
+
+	/**
+	 * Moves the last redoable object to the undoable ones, without redoing it. The observers are notified.
+	 * @return The moved object or null if there is no redoable object.
+	 */
+	protected Undoable moveLastRedo() {
+		if(redo.isEmpty()) {
+			return null;
+		}
+		final Undoable undoable = redo.pop();
+		final long size = redoSizes.pop();
+		mergeable = false;
+		rehydrate(redo, redoSizes, redoStore);
+		undo.push(undoable);
+		undoSizes.push(size);
+		spill(undo, undoSizes, undoStore);
+		notifyUndo(Optional.of(undoable));
+		notifyRedo(Optional.ofNullable(redo.peek()));
+		return undoable;
 	}
 
 
@@ -206,26 +341,230 @@ public class UndoCollector {
 	public void setSizeMax(final int max) {
 		if(max >= 0) {
 			boolean removed = false;
-			for(int i = 0, nb = undo.size() - max; i < nb; i++) {
-				undo.removeLast();
+			for(int i = 0, nb = getUndoDepth() - max; i < nb; i++) {
+				removeOldestUndo();
 				removed = true;
 			}
 			if(removed && undo.isEmpty()) {
-				undoPublisher.onNext(Optional.empty());
+				notifyUndo(Optional.empty());
 			}
 			this.sizeMax = max;
 		}
 	}
 
 	/**
-	 * @return The stack of saved undoable objects.
+	 * @return The duration in ms during which an added undoable object can be absorbed by the last one.
+	 */
+	public long getMergeWindow() {
+		return mergeWindow;
+	}
+
+
+	/**
+	 * Sets the duration in ms during which an added undoable object can be absorbed by the last added one
+	 * (cf. Undoable::absorb). By default 0: undoable objects are never merged.
+	 * @param window The duration in ms. Must be equal or greater than 0.
+	 */
+	public void setMergeWindow(final long window) {
+		if(window >= 0L) {
+			mergeWindow = window;
+		}
+	}
+
+
+	/**
+	 * Spills the oldest undoable objects and the furthest redoable objects into memory-mapped files,
+	 * so that only the given number of undoable (resp. redoable) objects are kept in memory.
+	 * Only the objects that implement SpillableUndoable are spilled: they are re-created from their memento when undone (resp. redone).
+	 * Other objects stay in memory, as the newer ones. So do the objects whose memento cannot be written.
+	 * @param directory The directory where the files are created. Nothing done if null.
+	 * @param live The number of undoable (resp. redoable) objects kept in memory. Nothing done if lower than 1.
+	 * @throws IOException If the files cannot be created.
+	 */
+	public void enableSpillToDisk(final Path directory, final int live) throws IOException {
+		if(directory == null || live < 1) {
+			return;
+		}
+
+		disableSpillToDisk();
+		final MappedUndoStore newUndoStore = createStore(directory);
+		try {
+			redoStore = createStore(directory);
+		}catch(final IOException ex) {
+			newUndoStore.close();
+			throw ex;
+		}
+		undoStore = newUndoStore;
+		liveSize = live;
+		spill(undo, undoSizes, undoStore);
+		spill(redo, redoSizes, redoStore);
+	}
+
+
+	/**
+	 * Creates a store for the spilled objects (cf. enableSpillToDisk).
+	 */
+	MappedUndoStore createStore(final Path directory) throws IOException {
+		return new MappedUndoStore(directory);
+	}
+
+
+	/**
+	 * Stops spilling objects to disk: the spilled objects are re-created in memory and the files deleted.
+	 */
+	public void disableSpillToDisk() {
+		if(undoStore != null) {
+			restoreAll(undo, undoSizes, undoStore);
+			restoreAll(redo, redoSizes, redoStore);
+			closeStore(undoStore);
+			closeStore(redoStore);
+			undoStore = null;
+			redoStore = null;
+		}
+	}
+
+
+	/**
+	 * @return True if the older objects are spilled to disk.
+	 */
+	public boolean isSpillingToDisk() {
+		return undoStore != null;
+	}
+
+
+	/**
+	 * @return The number of undoable objects, in memory and spilled to disk.
+	 */
+	public int getUndoDepth() {
+		return undo.size() + (undoStore == null ? 0 : undoStore.size());
+	}
+
+
+	/**
+	 * @return The number of redoable objects, in memory and spilled to disk.
+	 */
+	public int getRedoDepth() {
+		return redo.size() + (redoStore == null ? 0 : redoStore.size());
+	}
+
+
+	private void removeOldestUndo() {
+		if(undoStore == null || undoStore.isEmpty()) {
+			undo.removeLast();
+			undoSizes.removeLast();
+		}else {
+			undoStore.removeLast();
+		}
+	}
+
+
+	/**
+	 * Moves the bottom objects of the given stack to the store, until the live size is respected.
+	 */
+	private void spill(final Deque<Undoable> deque, final RetainedSizes sizes, final MappedUndoStore store) {
+		if(store == null) {
+			return;
+		}
+
+		try {
+			while(deque.size() > liveSize && store.accepts(deque.peekLast())) {
+				store.push((SpillableUndoable) deque.peekLast(), sizes.peekLast());
+				deque.removeLast();
+				sizes.removeLast();
+			}
+		}catch(final IOException ex) {
+			ErrorCatcher.getInstance().reportError(ex);
+		}
+	}
+
+
+	/**
+	 * Moves the top object of the store to the given stack if this last is empty.
+	 */
+	private static void rehydrate(final Deque<Undoable> deque, final RetainedSizes sizes, final MappedUndoStore store) {
+		if(store != null && deque.isEmpty() && !store.isEmpty()) {
+			final long size = store.peekRetainedSize();
+			try {
+				deque.push(store.pop());
+				sizes.push(size);
+			}catch(final IOException ex) {
+				// The older objects cannot be reached anymore
+				store.clear();
+				ErrorCatcher.getInstance().reportError(ex);
+			}
+		}
+	}
+
+
+	private static void restoreAll(final Deque<Undoable> deque, final RetainedSizes sizes, final MappedUndoStore store) {
+		try {
+			while(!store.isEmpty()) {
+				final long size = store.peekRetainedSize();
+				deque.addLast(store.pop());
+				sizes.addLast(size);
+			}
+		}catch(final IOException ex) {
+			store.clear();
+			ErrorCatcher.getInstance().reportError(ex);
+		}
+	}
+
+
+	private static void clearStore(final MappedUndoStore store) {
+		if(store != null) {
+			store.clear();
+		}
+	}
+
+
+	private static void closeStore(final MappedUndoStore store) {
+		try {
+			store.close();
+		}catch(final IOException ex) {
+			ErrorCatcher.getInstance().reportError(ex);
+		}
+	}
+
+
+	/**
+	 * @return The maximal number of bytes the undoable and redoable objects can retain (cf. Undoable::getRetainedSize).
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+
+	/**
+	 * Sets the maximal number of bytes the undoable and redoable objects can retain (cf. Undoable::getRetainedSize).
+	 * The oldest undoable objects, then the oldest redoable objects, are removed when the budget is exceeded.
+	 * By default, there is no budget (Long.MAX_VALUE).
+	 * @param budget The memory budget in bytes. Must be equal or greater than 0.
+	 */
+	public void setMemoryBudget(final long budget) {
+		if(budget >= 0L) {
+			memoryBudget = budget;
+			enforceMemoryBudget();
+		}
+	}
+
+
+	/**
+	 * @return The estimated number of bytes retained by the stored undoable and redoable objects.
+	 *     The size of each object is read when it is added.
+	 */
+	public long getRetainedSize() {
+		return undoSizes.getTotal() + redoSizes.getTotal();
+	}
+
+	/**
+	 * @return The stack of saved undoable objects kept in memory. Should not be modified directly.
 	 */
 	public Deque<Undoable> getUndo() {
 		return undo;
 	}
 
 	/**
-	 * @return The stack of saved redoable objects
+	 * @return The stack of saved redoable objects kept in memory. Should not be modified directly.
 	 */
 	public Deque<Undoable> getRedo() {
 		return redo;
@@ -36,4 +36,26 @@ public interface Undoable {
 	 * @param bundle The language bundle. Can be null.
 	 */
 	String getUndoName(final ResourceBundle bundle);
+
+	/**
+	 * The estimated number of bytes retained by the undoable object (e.g. its mementos).
+	 * Used by the undo collector to respect its memory budget.
+	 * Read when the object is added to the undo collector (or absorbs another one), so it should not change afterwards.
+	 * @return The estimated retained size in bytes. 0 by default.
+	 */
+	default long getRetainedSize() {
+		return 0L;
+	}
+
+	/**
+	 * Merges the given undoable object, added right after this one, into this one.
+	 * If merged, undoing (resp. redoing) this object must undo (resp. redo) the effects of both objects
+	 * and the given object is not stored by the undo collector.
+	 * Called by the undo collector only if its merge window is set (cf. UndoCollector::setMergeWindow).
+	 * @param next The undoable object added after this one. Cannot be null.
+	 * @return True if merged. False by default.
+	 */
+	default boolean absorb(final Undoable next) {
+		return false;
+	}
 }
@@ -0,0 +1,102 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+import java.util.List;
+import java.util.ResourceBundle;
+
+/**
+ * An undoable object made of several undoable objects, undone and redone as a single step.
+ * Undoing undoes the objects from the last to the first one. Redoing redoes them in their order.
+ */
+public class UndoableGroup implements Undoable {
+	private final List<Undoable> undoables;
+
+	/**
+	 * Creates the group.
+	 * @param undoables The grouped undoable objects, in their execution order. Cannot be null, empty, or contain null.
+	 * @throws IllegalArgumentException If the list is empty.
+	 */
+	public UndoableGroup(final List<? extends Undoable> undoables) {
+		super();
+		if(undoables.isEmpty()) {
+			throw new IllegalArgumentException("An undoable group cannot be empty");
+		}
+		this.undoables = List.copyOf(undoables);
+	}
+
+	/**
+	 * Undoes the given undoable objects from the last to the first one.
+	 * @param undoables The undoable objects, in their execution order. Cannot be null or contain null.
+	 */
+	public static void undoAll(final List<? extends Undoable> undoables) {
+		for(int i = undoables.size() - 1; i >= 0; i--) {
+			undoables.get(i).undo();
+		}
+	}
+
+	/**
+	 * Redoes the given undoable objects in their order.
+	 * @param undoables The undoable objects, in their execution order. Cannot be null or contain null.
+	 */
+	public static void redoAll(final List<? extends Undoable> undoables) {
+		for(final Undoable undoable : undoables) {
+			undoable.redo();
+		}
+	}
+
+	/**
+	 * @param undoables The undoable objects. Cannot be null or contain null.
+	 * @return The sum of the retained sizes of the given undoable objects. Negative sizes (unknown) count as 0.
+	 */
+	public static long retainedSizeOf(final List<? extends Undoable> undoables) {
+		long size = 0L;
+		for(final Undoable undoable : undoables) {
+			size += Math.max(0L, undoable.getRetainedSize());
+		}
+		return size;
+	}
+
+	/**
+	 * @return The grouped undoable objects, in their execution order. Cannot be null.
+	 */
+	public List<Undoable> getUndoables() {
+		return undoables;
+	}
+
+	@Override
+	public void undo() {
+		undoAll(undoables);
+	}
+
+	@Override
+	public void redo() {
+		redoAll(undoables);
+	}
+
+	/**
+	 * @return The undo name of the last grouped undoable object.
+	 * @param bundle The language bundle. Can be null.
+	 */
+	@Override
+	public String getUndoName(final ResourceBundle bundle) {
+		return undoables.get(undoables.size() - 1).getUndoName(bundle);
+	}
+
+	@Override
+	public long getRetainedSize() {
+		return retainedSizeOf(undoables);
+	}
+}
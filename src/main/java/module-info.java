@@ -2,6 +2,7 @@ module interacto.java.api {
 	requires java.logging;
 	requires java.desktop;
 	requires io.reactivex.rxjava2;
+	requires static jdk.unsupported;
 
 	exports io.github.interacto.binding;
 	exports io.github.interacto.command;
@@ -10,6 +11,7 @@ module interacto.java.api {
 	exports io.github.interacto.fsm;
 	exports io.github.interacto.instrument;
 	exports io.github.interacto.interaction;
+	exports io.github.interacto.logging;
 	exports io.github.interacto.properties;
 	exports io.github.interacto.undo;
 }
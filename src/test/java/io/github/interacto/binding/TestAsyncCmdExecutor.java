@@ -0,0 +1,264 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.binding;
+
+import io.github.interacto.error.ErrorCatcher;
+import io.reactivex.disposables.Disposable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestAsyncCmdExecutor {
+	AsyncCmdExecutor mementoExecutor;
+	AsyncCmdExecutor executor;
+	Thread callerThread;
+
+	@BeforeEach
+	void setUp() {
+		callerThread = Thread.currentThread();
+		mementoExecutor = AsyncCmdExecutor.getInstance();
+		executor = new AsyncCmdExecutor();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdown();
+		AsyncCmdExecutor.setInstance(mementoExecutor);
+	}
+
+	@Test
+	void testGetSet() {
+		final AsyncCmdExecutor mockExec = Mockito.mock(AsyncCmdExecutor.class);
+		AsyncCmdExecutor.setInstance(mockExec);
+		assertSame(mockExec, AsyncCmdExecutor.getInstance());
+	}
+
+	@Test
+	void testSetNull() {
+		AsyncCmdExecutor.setInstance(null);
+		assertSame(mementoExecutor, AsyncCmdExecutor.getInstance());
+	}
+
+	@Test
+	void testExecuteNull() {
+		assertThrows(IllegalArgumentException.class, () -> executor.execute(null));
+	}
+
+	@Test
+	void testExecuteOutsideCallerThread() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<>();
+		executor.execute(() -> {
+			threads.add(Thread.currentThread());
+			latch.countDown();
+		});
+		assertTrue(latch.await(1L, TimeUnit.SECONDS));
+		assertNotSame(Thread.currentThread(), threads.get(0));
+		assertTrue(threads.get(0).isDaemon());
+	}
+
+	@Test
+	void testManyConcurrentJobs() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(500);
+		final List<Thread> callerThreads = new CopyOnWriteArrayList<>();
+		for(int i = 0; i < 500; i++) {
+			final Runnable job = () -> {
+				if(Thread.currentThread() == callerThread) {
+					callerThreads.add(callerThread);
+				}
+				latch.countDown();
+			};
+			// A saturated executor rejects the job
+			if(!executor.execute(job)) {
+				latch.countDown();
+			}
+		}
+		assertTrue(latch.await(5L, TimeUnit.SECONDS));
+		assertTrue(callerThreads.isEmpty());
+	}
+
+	@Test
+	void testErrorReported() throws InterruptedException {
+		final var ex = new IllegalArgumentException("foo");
+		final CountDownLatch latch = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<>();
+		final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(err -> {
+			errors.add(err);
+			latch.countDown();
+		});
+		executor.execute(() -> {
+			throw ex;
+		});
+		assertTrue(latch.await(1L, TimeUnit.SECONDS));
+		disposable.dispose();
+		assertEquals(List.of(ex), errors);
+	}
+
+	@Test
+	void testThrowableReported() throws InterruptedException {
+		final var error = new AssertionError("foo");
+		final CountDownLatch latch = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<>();
+		final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(err -> {
+			errors.add(err);
+			latch.countDown();
+		});
+		executor.execute(() -> {
+			throw error;
+		});
+		assertTrue(latch.await(1L, TimeUnit.SECONDS));
+		disposable.dispose();
+		assertEquals(List.of(error), errors);
+	}
+
+	@Test
+	void testConcurrentShutdownDoesNotReject() throws InterruptedException {
+		executor = new AsyncCmdExecutor() {
+			@Override
+			protected ExecutorService createExecutor() {
+				return Executors.newCachedThreadPool();
+			}
+		};
+		final Thread shutdowns = new Thread(() -> {
+			for(int i = 0; i < 1000; i++) {
+				executor.shutdown();
+			}
+		});
+		final List<Boolean> results = new ArrayList<>();
+		shutdowns.start();
+		for(int i = 0; i < 1000; i++) {
+			results.add(executor.execute(() -> { }));
+		}
+		shutdowns.join();
+		assertTrue(results.stream().allMatch(ok -> ok));
+	}
+
+	@Test
+	void testCreateExecutor() {
+		final ExecutorService exec = executor.createExecutor();
+		assertNotNull(exec);
+		exec.shutdownNow();
+	}
+
+	@Test
+	void testCreateExecutorFromAvailableFactory() {
+		final ExecutorService exec = executor.createExecutor("newWorkStealingPool");
+		assertTrue(exec instanceof ForkJoinPool);
+		exec.shutdownNow();
+	}
+
+	@Test
+	void testCreateExecutorFallsBackToBoundedPool() {
+		final ExecutorService exec = executor.createExecutor("noSuchFactory");
+		assertTrue(exec instanceof ThreadPoolExecutor);
+		exec.shutdownNow();
+	}
+
+	@Test
+	void testBoundedPool() throws InterruptedException {
+		final ExecutorService exec = executor.createBoundedPool(3);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final List<String> names = new ArrayList<>();
+		exec.execute(() -> {
+			names.add(Thread.currentThread().getName());
+			latch.countDown();
+		});
+		assertTrue(latch.await(1L, TimeUnit.SECONDS));
+		assertEquals(3, ((ThreadPoolExecutor) exec).getMaximumPoolSize());
+		assertTrue(names.get(0).startsWith(AsyncCmdExecutor.THREAD_NAME_BASE));
+		exec.shutdownNow();
+	}
+
+	@Test
+	void testShutdownNotStarted() throws InterruptedException {
+		executor.shutdown();
+		final CountDownLatch latch = new CountDownLatch(1);
+		executor.execute(latch::countDown);
+		assertTrue(latch.await(1L, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testBoundedPoolQueueBounded() {
+		final ThreadPoolExecutor exec = (ThreadPoolExecutor) executor.createBoundedPool(2);
+		assertEquals(2 * AsyncCmdExecutor.QUEUE_CAPACITY_PER_THREAD, exec.getQueue().remainingCapacity());
+		exec.shutdownNow();
+	}
+
+	@Test
+	void testBoundedPoolFullQueueRejects() {
+		final ExecutorService exec = executor.createBoundedPool(1);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<>();
+		for(int i = 0; i <= AsyncCmdExecutor.QUEUE_CAPACITY_PER_THREAD; i++) {
+			exec.execute(() -> {
+				try {
+					blocker.await();
+				}catch(final InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		assertThrows(RejectedExecutionException.class, () -> exec.execute(() -> threads.add(Thread.currentThread())));
+		blocker.countDown();
+		exec.shutdownNow();
+		assertTrue(threads.isEmpty());
+	}
+
+	@Test
+	void testRejectedJobReported() {
+		final List<Throwable> errors = new ArrayList<>();
+		final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+		final ExecutorService saturated = Executors.newSingleThreadExecutor();
+		saturated.shutdown();
+		executor = new AsyncCmdExecutor() {
+			@Override
+			protected ExecutorService createExecutor() {
+				return saturated;
+			}
+		};
+		final List<Thread> threads = new ArrayList<>();
+		assertFalse(executor.execute(() -> threads.add(Thread.currentThread())));
+		disposable.dispose();
+		assertTrue(threads.isEmpty());
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof RejectedExecutionException);
+	}
+
+	@Test
+	void testExecuteAccepted() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		assertTrue(executor.execute(latch::countDown));
+		assertTrue(latch.await(1L, TimeUnit.SECONDS));
+	}
+}
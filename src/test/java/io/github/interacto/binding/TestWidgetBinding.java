@@ -16,6 +16,7 @@ package io.github.interacto.binding;
 
 import io.github.interacto.command.CmdStub;
 import io.github.interacto.command.Command;
+import io.github.interacto.command.CommandPool;
 import io.github.interacto.command.CommandsRegistry;
 import io.github.interacto.error.ErrorCatcher;
 import io.github.interacto.fsm.CancelFSMException;
@@ -239,6 +240,57 @@ public class TestWidgetBinding {
 		assertEquals(0, binding.getTimesCancelled());
 	}
 
+	@Test
+	void testNoCommandPoolByDefault() {
+		assertNull(binding.getCommandPool());
+	}
+
+	@Test
+	void testCancelledCmdReleasedToPool() throws CancelFSMException {
+		final CommandPool<CmdStub> pool = new CommandPool<>(2);
+		binding.setCommandPool(pool);
+		binding.conditionRespected = true;
+		binding.fsmStarts();
+		final CmdStub created = binding.getCommand();
+		binding.fsmCancels();
+		assertEquals(1, pool.size());
+		assertEquals(Command.CmdStatus.CREATED, created.getStatus());
+	}
+
+	@Test
+	void testPooledCmdReused() throws CancelFSMException {
+		final CommandPool<CmdStub> pool = new CommandPool<>(2);
+		binding.setCommandPool(pool);
+		binding.conditionRespected = true;
+		binding.fsmStarts();
+		final CmdStub created = binding.getCommand();
+		binding.fsmCancels();
+		binding.fsmStarts();
+		assertSame(created, binding.getCommand());
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	void testDeactivationReleasesCmdToPool() throws CancelFSMException {
+		final CommandPool<CmdStub> pool = new CommandPool<>(2);
+		binding.setCommandPool(pool);
+		binding.conditionRespected = true;
+		binding.fsmStarts();
+		binding.setActivated(false);
+		assertEquals(1, pool.size());
+	}
+
+	@Test
+	void testExecutedCmdNotReleasedToPool() throws CancelFSMException {
+		final CommandPool<CmdStub> pool = new CommandPool<>(2);
+		binding.setCommandPool(pool);
+		binding.conditionRespected = true;
+		binding.fsmStarts();
+		binding.getCommand().candoValue = true;
+		binding.fsmStops();
+		assertEquals(0, pool.size());
+	}
+
 	@Test
 	void testCounterCancelledOnce() throws CancelFSMException {
 		binding.conditionRespected = true;
@@ -17,19 +17,30 @@ package io.github.interacto.binding;
 import io.github.interacto.command.Command;
 import io.github.interacto.command.CommandImpl;
 import io.github.interacto.command.CommandsRegistry;
+import io.github.interacto.error.ErrorCatcher;
 import io.github.interacto.fsm.FSM;
 import io.github.interacto.fsm.TerminalState;
 import io.github.interacto.fsm.Transition;
 import io.github.interacto.interaction.InteractionData;
 import io.github.interacto.interaction.InteractionStub;
+import io.github.interacto.logging.TraceEvent;
+import io.github.interacto.logging.TraceRecorder;
+import io.reactivex.disposables.Disposable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
@@ -120,6 +131,20 @@ public class TestWidgetBindingIntegration {
 			assertEquals(Command.CmdStatus.DONE, cmd.getStatus());
 		}
 
+		@Test
+		void testCmdExecTraced() {
+			final TraceRecorder memento = TraceRecorder.getInstance();
+			final TraceRecorder recorder = new TraceRecorder(64);
+			final List<TraceEvent> events = new ArrayList<>();
+			recorder.setEnabled(true);
+			TraceRecorder.setInstance(recorder);
+			fsm.process(new EventStub1());
+			TraceRecorder.setInstance(memento);
+			recorder.forEach((time, evt, src) -> events.add(evt));
+			assertEquals(List.of(TraceEvent.FSM_STARTED, TraceEvent.BINDING_STARTED, TraceEvent.CMD_CREATED, TraceEvent.FSM_ENDED,
+				TraceEvent.BINDING_ENDED, TraceEvent.CMD_EXECUTED, TraceEvent.CMD_HAD_EFFECT), events);
+		}
+
 		@Test
 		void testCmdKOWhenNotWhenOK() {
 			whenValue.set(false);
@@ -250,6 +275,136 @@ public class TestWidgetBindingIntegration {
 	}
 
 
+	@Nested
+	class DefaultAsyncExec {
+		CountDownLatch latch;
+		List<Thread> execThreads;
+
+		@BeforeEach
+		void setUp() {
+			latch = new CountDownLatch(1);
+			execThreads = new ArrayList<>();
+			interaction = new InteractionStub(fsm) {
+				@Override
+				protected void runInUIThread(final Runnable job) {
+					execThreads.add(Thread.currentThread());
+					super.runInUIThread(job);
+					latch.countDown();
+				}
+			};
+			binding = new WidgetBindingImpl<>(false, i -> cmd, interaction) {
+				@Override
+				public boolean when() {
+					return whenValue.get();
+				}
+				@Override
+				public void ifCmdHadEffects() {
+					super.ifCmdHadEffects();
+					effects++;
+				}
+				@Override
+				public void ifCannotExecuteCmd() {
+					super.ifCannotExecuteCmd();
+					cannotExec++;
+				}
+				@Override
+				protected void unbindCmdAttributes() {
+				}
+			};
+			binding.setActivated(true);
+			binding.setAsync(true);
+		}
+
+		@Test
+		void testCmdExecutedOutsideCallerThread() throws InterruptedException {
+			fsm.process(new EventStub1());
+			assertTrue(latch.await(1L, TimeUnit.SECONDS));
+			assertEquals(1, cmd.executed);
+			assertEquals(1, effects);
+			assertEquals(Command.CmdStatus.DONE, cmd.getStatus());
+			assertEquals(1, execThreads.size());
+			assertNotSame(Thread.currentThread(), execThreads.get(0));
+		}
+
+		@Test
+		void testCmdCannotBeExecuted() throws InterruptedException {
+			cmd.can = false;
+			fsm.process(new EventStub1());
+			assertTrue(latch.await(1L, TimeUnit.SECONDS));
+			assertEquals(0, cmd.executed);
+			assertEquals(0, effects);
+			assertEquals(1, cannotExec);
+		}
+
+		@Test
+		void testCmdFailureCancelsAndFlushesCmd() throws InterruptedException {
+			final List<Throwable> errors = new ArrayList<>();
+			final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+			cmd.failure = new IllegalStateException("failure");
+			fsm.process(new EventStub1());
+			assertTrue(latch.await(1L, TimeUnit.SECONDS));
+			disposable.dispose();
+			assertEquals(List.of(cmd.failure), errors);
+			assertEquals(Command.CmdStatus.FLUSHED, cmd.getStatus());
+			assertEquals(0, effects);
+			assertTrue(CommandsRegistry.getInstance().getCommands().isEmpty());
+		}
+
+		@Test
+		void testCmdErrorCancelsAndFlushesCmd() throws InterruptedException {
+			final List<Throwable> errors = new ArrayList<>();
+			final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+			cmd.error = new AssertionError("error");
+			fsm.process(new EventStub1());
+			assertTrue(latch.await(1L, TimeUnit.SECONDS));
+			disposable.dispose();
+			assertEquals(List.of(cmd.error), errors);
+			assertEquals(Command.CmdStatus.FLUSHED, cmd.getStatus());
+			assertEquals(0, effects);
+		}
+
+		@Test
+		void testCmdFailureLogged() throws InterruptedException {
+			final Logger logger = Mockito.mock(Logger.class);
+			Mockito.when(logger.isLoggable(Level.INFO)).thenReturn(true);
+			binding.loggerCmd = logger;
+			cmd.failure = new IllegalStateException("failure");
+			final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(ex -> { });
+			fsm.process(new EventStub1());
+			assertTrue(latch.await(1L, TimeUnit.SECONDS));
+			disposable.dispose();
+			final ArgumentCaptor<Supplier<String>> messages = ArgumentCaptor.forClass(Supplier.class);
+			Mockito.verify(logger, Mockito.atLeastOnce()).log(Mockito.eq(Level.INFO), messages.capture());
+			assertTrue(messages.getAllValues().stream().anyMatch(msg -> msg.get().startsWith("Command execution failed")));
+		}
+
+		@Test
+		void testCmdFailureNotLoggedWhenLevelDisabled() throws InterruptedException {
+			final Logger logger = Mockito.mock(Logger.class);
+			binding.loggerCmd = logger;
+			cmd.failure = new IllegalStateException("failure");
+			final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(ex -> { });
+			fsm.process(new EventStub1());
+			assertTrue(latch.await(1L, TimeUnit.SECONDS));
+			disposable.dispose();
+			Mockito.verify(logger, Mockito.never()).log(Mockito.eq(Level.INFO), Mockito.<Supplier<String>>any());
+		}
+
+		@Test
+		void testCmdRejectedCancelsAndFlushesCmd() {
+			final AsyncCmdExecutor memento = AsyncCmdExecutor.getInstance();
+			final AsyncCmdExecutor rejecting = Mockito.mock(AsyncCmdExecutor.class);
+			AsyncCmdExecutor.setInstance(rejecting);
+			fsm.process(new EventStub1());
+			AsyncCmdExecutor.setInstance(memento);
+			Mockito.verify(rejecting, Mockito.times(1)).execute(Mockito.any());
+			assertEquals(0, cmd.executed);
+			assertEquals(Command.CmdStatus.FLUSHED, cmd.getStatus());
+			assertEquals(0, effects);
+			assertTrue(execThreads.isEmpty());
+		}
+	}
+
 
 	private static class EventStub1 {
 	}
@@ -282,9 +437,17 @@ public class TestWidgetBindingIntegration {
 		int executed = 0;
 		boolean can = true;
 		boolean effects = true;
+		RuntimeException failure;
+		Error error;
 
 		@Override
 		protected void doCmdBody() {
+			if(failure != null) {
+				throw failure;
+			}
+			if(error != null) {
+				throw error;
+			}
 			executed++;
 		}
 
@@ -29,4 +29,11 @@ public class CmdStub extends CommandImpl {
 	public boolean canDo() {
 		return candoValue;
 	}
+
+	@Override
+	protected boolean resetForReuse() {
+		cptDoCmdBody.set(0);
+		candoValue = false;
+		return true;
+	}
 }
@@ -46,6 +46,12 @@ public class TestCommand {
 		}.canDo());
 	}
 
+	@Test
+	void testNotRecyclableByDefault() {
+		final Command command = Mockito.mock(Command.class, Mockito.CALLS_REAL_METHODS);
+		assertFalse(command.recycle());
+	}
+
 	@Test
 	void testExecuteAndFlushNull() {
 		Command.executeAndFlush(null);
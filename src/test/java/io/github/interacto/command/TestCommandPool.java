@@ -0,0 +1,137 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCommandPool {
+	CommandPool<CmdStub> pool;
+
+	@BeforeEach
+	void setUp() {
+		pool = new CommandPool<>(2);
+	}
+
+	@Test
+	void testInvalidCapacity() {
+		assertThrows(IllegalArgumentException.class, () -> new CommandPool<>(0));
+	}
+
+	@Test
+	void testCapacity() {
+		assertEquals(2, pool.getCapacity());
+	}
+
+	@Test
+	void testAcquireEmpty() {
+		assertNull(pool.acquire());
+	}
+
+	@Test
+	void testReleaseNull() {
+		assertFalse(pool.release(null));
+	}
+
+	@Test
+	void testReleaseFlushesAndRecycles() {
+		final CmdStub cmd = new CmdStub();
+		cmd.cancel();
+		assertTrue(pool.release(cmd));
+		assertEquals(Command.CmdStatus.CREATED, cmd.getStatus());
+		assertSame(cmd, pool.acquire());
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	void testReleaseTwice() {
+		final CmdStub cmd = new CmdStub();
+		pool.release(cmd);
+		assertFalse(pool.release(cmd));
+		assertEquals(1, pool.size());
+	}
+
+	@Test
+	void testReleaseWhenFull() {
+		pool.release(new CmdStub());
+		pool.release(new CmdStub());
+		assertFalse(pool.release(new CmdStub()));
+		assertEquals(2, pool.size());
+	}
+
+	@Test
+	void testReleaseNotRecyclable() {
+		final CommandPool<Command> cmds = new CommandPool<>(2);
+		final Command cmd = Mockito.mock(Command.class);
+		assertFalse(cmds.release(cmd));
+		Mockito.verify(cmd).flush();
+		assertEquals(0, cmds.size());
+	}
+
+	@Test
+	void testRecycleNotFlushed() {
+		assertFalse(new CmdStub().recycle());
+	}
+
+	@Test
+	void testCommandNotRecyclableByDefault() {
+		final CommandImpl cmd = new CommandImpl() {
+			@Override
+			protected void doCmdBody() {
+			}
+		};
+		cmd.flush();
+		assertFalse(cmd.recycle());
+		assertEquals(Command.CmdStatus.FLUSHED, cmd.getStatus());
+	}
+
+	@Test
+	void testReleaseNotOptedInCommand() {
+		final CommandPool<Command> cmds = new CommandPool<>(2);
+		assertFalse(cmds.release(new CommandImpl() {
+			@Override
+			protected void doCmdBody() {
+			}
+		}));
+		assertEquals(0, cmds.size());
+	}
+
+	@Test
+	void testRecycleClearsFields() {
+		final CmdStub cmd = new CmdStub();
+		cmd.candoValue = true;
+		cmd.doIt();
+		cmd.flush();
+		assertTrue(cmd.recycle());
+		assertFalse(cmd.candoValue);
+		assertEquals(0, cmd.cptDoCmdBody.get());
+	}
+
+	@Test
+	void testReleaseAfterAcquire() {
+		final CmdStub cmd = new CmdStub();
+		pool.release(cmd);
+		pool.acquire();
+		assertTrue(pool.release(cmd));
+	}
+}
@@ -15,20 +15,41 @@
 package io.github.interacto.command;
 
 import io.github.interacto.command.Command.CmdStatus;
+import io.github.interacto.error.ErrorCatcher;
 import io.github.interacto.undo.UndoCollector;
 import io.github.interacto.undo.Undoable;
+import io.github.interacto.undo.UndoableGroup;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Random;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestCommandsRegistry {
@@ -37,7 +58,7 @@ public class TestCommandsRegistry {
 	@BeforeEach
 	public void setUp() {
 		instance = CommandsRegistry.getInstance();
-		instance.getCommands().clear();
+		instance.clear();
 		instance.setSizeMax(30);
 		UndoCollector.getInstance().clear();
 	}
@@ -76,13 +97,13 @@ public class TestCommandsRegistry {
 
 	@Test
 	public void testSetSizeMaxRemovesCmd() {
-		final List<Command> cmds = instance.getCommands();
 		final Command command1 = new CommandImplStub();
 		final Command command2 = new CommandImplStub();
 		instance.setSizeMax(10);
 		instance.addCommand(command1);
 		instance.addCommand(command2);
 		instance.setSizeMax(1);
+		final List<Command> cmds = instance.getCommands();
 
 		assertEquals(CmdStatus.FLUSHED, command1.getStatus());
 		assertEquals(CmdStatus.CREATED, command2.getStatus());
@@ -191,10 +212,94 @@ public class TestCommandsRegistry {
 		assertEquals(CmdStatus.FLUSHED, cmd.getStatus());
 	}
 
+	@Test
+	void testUnregisterDeclaredOK() {
+		final Command cmd = new DeclaredCmdStub();
+		instance.addCommand(cmd);
+		instance.unregisterCommand(new CommandImplStub());
+		assertTrue(instance.getCommands().isEmpty());
+		assertEquals(CmdStatus.FLUSHED, cmd.getStatus());
+	}
+
+	@Test
+	void testUnregisterDeclaredInherited() {
+		final Command cmd = new DeclaredCmdStub() { };
+		instance.addCommand(cmd);
+		instance.unregisterCommand(new CommandImplStub());
+		assertTrue(instance.getCommands().isEmpty());
+	}
+
+	@Test
+	void testUnregisterDeclaredDoNothing() {
+		final Command cmd = new DeclaredCmdStub();
+		instance.addCommand(cmd);
+		instance.unregisterCommand(new CommandImplStub2());
+		assertEquals(List.of(cmd), instance.getCommands());
+		assertNotSame(CmdStatus.FLUSHED, cmd.getStatus());
+	}
+
+	@Test
+	void testUnregisterDeclaredNotCheckedWhenIrrelevant() {
+		final DeclaredCmdStub cmd = Mockito.spy(new DeclaredCmdStub());
+		instance.addCommand(cmd);
+		instance.unregisterCommand(new CommandImplStub2());
+		Mockito.verify(cmd, Mockito.never()).unregisteredBy(Mockito.any());
+	}
+
+	@Test
+	void testUnregisterDeclaredAfterRemoval() {
+		final Command cmd1 = new DeclaredCmdStub();
+		final Command cmd2 = new DeclaredCmdStub();
+		instance.addCommand(cmd1);
+		instance.addCommand(cmd2);
+		instance.removeCommand(cmd1);
+		instance.unregisterCommand(new CommandImplStub());
+		assertTrue(instance.getCommands().isEmpty());
+		assertEquals(CmdStatus.FLUSHED, cmd2.getStatus());
+	}
+
+	@Test
+	void testUnregisterDeclaredAddedAfterUnregistration() {
+		instance.unregisterCommand(new CommandImplStub());
+		final Command cmd = new DeclaredCmdStub();
+		instance.addCommand(cmd);
+		instance.unregisterCommand(new CommandImplStub());
+		assertTrue(instance.getCommands().isEmpty());
+	}
+
+	@Test
+	void testUnregisterSeveralDeclaredCheckedOnce() {
+		final MultiDeclaredCmdStub cmd = Mockito.spy(new MultiDeclaredCmdStub());
+		instance.addCommand(cmd);
+		instance.unregisterCommand(new CommandImplStub());
+		Mockito.verify(cmd, Mockito.times(1)).unregisteredBy(Mockito.any());
+		Mockito.verify(cmd, Mockito.times(1)).flush();
+		assertTrue(instance.getCommands().isEmpty());
+	}
+
+	@Test
+	void testDeclaredNotUnregisteredByOtherTypes() {
+		assertFalse(new DeclaredCmdStub().unregisteredBy(new CommandImplStub2()));
+		assertTrue(new DeclaredCmdStub().unregisteredBy(new CommandImplStub()));
+	}
+
+	@Test
+	void testTypeWithoutUnregisteredByCheckedByAll() {
+		assertTrue(UnregistrationDecl.of(Object.class).checkedByAll);
+	}
+
+	@Test
+	void testNoDeclarationNoOverrideNeverUnregistered() {
+		final Command cmd = new CommandImplStub();
+		instance.addCommand(cmd);
+		instance.unregisterCommand(new DeclaredCmdStub());
+		assertEquals(List.of(cmd), instance.getCommands());
+	}
+
 	@Test
 	public void testAddCommandCannotAddBecauseNull() {
 		final Command command = new CommandImplStub();
-		instance.getCommands().add(command);
+		instance.addCommand(command);
 		instance.addCommand(null);
 		assertEquals(1, instance.getCommands().size());
 	}
@@ -202,7 +307,7 @@ public class TestCommandsRegistry {
 	@Test
 	public void testAddCommandCannotAddBecauseExist() {
 		final Command command = new CommandImplStub();
-		instance.getCommands().add(command);
+		instance.addCommand(command);
 		instance.addCommand(command);
 		assertEquals(1, instance.getCommands().size());
 	}
@@ -213,7 +318,7 @@ public class TestCommandsRegistry {
 		final Command command = Mockito.mock(Command.class);
 		final Command command2 = new CommandImplStub();
 		instance.setSizeMax(1);
-		instance.getCommands().add(command2);
+		instance.addCommand(command2);
 		instance.addCommand(command);
 		assertEquals(1, instance.getCommands().size());
 		assertEquals(command, instance.getCommands().get(0));
@@ -252,6 +357,35 @@ public class TestCommandsRegistry {
 		assertEquals(List.of(cmd1), instance.getCommands());
 	}
 
+	@Test
+	void testEvictionAfterRemovalOfOldest() {
+		final var cmd1 = new CommandImplStub();
+		final var cmd2 = new CommandImplStub();
+		final var cmd3 = new CommandImplStub();
+		instance.setSizeMax(2);
+		instance.addCommand(cmd1);
+		instance.addCommand(cmd2);
+		instance.removeCommand(cmd1);
+		instance.addCommand(cmd3);
+		instance.addCommand(new CommandImplStub());
+		assertEquals(CmdStatus.FLUSHED, cmd2.getStatus());
+		assertEquals(CmdStatus.CREATED, cmd3.getStatus());
+		assertEquals(2, instance.getCommands().size());
+	}
+
+	@Test
+	void testManyCommandsKeepLatest() {
+		final List<Command> added = new ArrayList<>();
+		instance.setSizeMax(1000);
+		IntStream.range(0, 5000).forEach(i -> {
+			final Command cmd = new CommandImplStub();
+			added.add(cmd);
+			instance.addCommand(cmd);
+		});
+		assertEquals(added.subList(4000, 5000), instance.getCommands());
+		assertEquals(CmdStatus.FLUSHED, added.get(3999).getStatus());
+	}
+
 	@Test
 	public void testAddCommandAddsUndoableCollector() {
 		final Command command = new CommandImplUndoableStub();
@@ -296,6 +430,393 @@ public class TestCommandsRegistry {
 		Mockito.verify(c2, Mockito.times(1)).flush();
 	}
 
+	@Test
+	void testGetCommandsIsSnapshot() {
+		final Command cmd1 = new CommandImplStub();
+		final Command cmd2 = new CommandImplStub();
+		instance.addCommand(cmd1);
+		final List<Command> snapshot = instance.getCommands();
+		instance.addCommand(cmd2);
+		instance.removeCommand(cmd1);
+		assertEquals(List.of(cmd1), snapshot);
+		assertEquals(List.of(cmd2), instance.getCommands());
+	}
+
+	@Test
+	void testGetCommandsImmutable() {
+		final List<Command> cmds = instance.getCommands();
+		final Command cmd = new CommandImplStub();
+		assertThrows(UnsupportedOperationException.class, () -> cmds.add(cmd));
+	}
+
+	@Test
+	void testGetCommandsIteratedDuringAdds() throws InterruptedException {
+		final Thread writer = new Thread(() -> IntStream.range(0, 2000).forEach(i -> instance.addCommand(new CommandImplStub())));
+		writer.start();
+		while(writer.isAlive()) {
+			for(final Command cmd : instance.getCommands()) {
+				assertNotNull(cmd);
+			}
+		}
+		writer.join();
+		assertEquals(30, instance.getCommands().size());
+	}
+
+	boolean unregisterFromOtherThread() {
+		instance.unregisterCommand(new CommandImplStub());
+		return false;
+	}
+
+	@Test
+	void testNotifiedOutsideLock() {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final List<Boolean> seen = new ArrayList<>();
+		// Unregistering commands from another thread requires the lock of the register
+		final Disposable disposable = instance.commands()
+			.subscribe(c -> seen.add(executor.submit(() -> unregisterFromOtherThread()).get(10, TimeUnit.SECONDS)));
+		instance.addCommand(new CommandImplStub());
+		disposable.dispose();
+		executor.shutdownNow();
+		assertEquals(List.of(false), seen);
+	}
+
+	@Test
+	void testUndoCollectorUpdatedOutsideLock() {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final List<Boolean> seen = new ArrayList<>();
+		final Disposable disposable = UndoCollector.getInstance().undos()
+			.subscribe(u -> seen.add(executor.submit(() -> unregisterFromOtherThread()).get(10, TimeUnit.SECONDS)));
+		instance.addCommand(new CommandImplUndoableStub());
+		disposable.dispose();
+		executor.shutdownNow();
+		assertEquals(List.of(false), seen);
+	}
+
+	@Test
+	void testUndoHistoryInRegisterOrder() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		instance.setSizeMax(1000);
+		UndoCollector.getInstance().setSizeMax(1000);
+		final List<Future<?>> futures = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			futures.add(executor.submit(() -> {
+				for(int j = 0; j < 200; j++) {
+					instance.addCommand(new CommandImplUndoableStub());
+				}
+			}));
+		}
+		for(final Future<?> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		executor.shutdownNow();
+		final List<Undoable> history = new ArrayList<>(UndoCollector.getInstance().getUndo());
+		Collections.reverse(history);
+		UndoCollector.getInstance().setSizeMax(30);
+		assertEquals(instance.getCommands(), history);
+	}
+
+	@Test
+	void testUndoCollectorUpdatedBeforeReturnWhenReentrant() {
+		final Command cmd1 = new CommandImplStub();
+		final CommandImplUndoableStub cmd2 = new CommandImplUndoableStub();
+		final List<Optional<Undoable>> lastUndos = new ArrayList<>();
+		final Disposable disposable = instance.commands().subscribe(c -> {
+			if(c == cmd1) {
+				instance.addCommand(cmd2);
+				lastUndos.add(UndoCollector.getInstance().getLastUndo());
+			}
+		});
+		instance.addCommand(cmd1);
+		disposable.dispose();
+		assertEquals(List.of(Optional.of(cmd2)), lastUndos);
+	}
+
+	@Test
+	void testFailingNotificationReportedAndNextOnesSent() {
+		final Command cmd1 = new CommandImplStub();
+		final Command cmd2 = new CommandImplStub();
+		final List<Command> notified = new ArrayList<>();
+		final List<Throwable> errors = new ArrayList<>();
+		final Disposable errorsDisposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+		final Disposable[] disposable = new Disposable[1];
+		instance.commands().subscribe(new Observer<>() {
+			@Override
+			public void onSubscribe(final Disposable d) {
+				disposable[0] = d;
+			}
+
+			@Override
+			public void onNext(final Command c) {
+				notified.add(c);
+				if(c == cmd1) {
+					// Queued: sent once this notification ends
+					instance.addCommand(cmd2);
+					throw new IllegalStateException();
+				}
+			}
+
+			@Override
+			public void onError(final Throwable e) {
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+		instance.addCommand(cmd1);
+		disposable[0].dispose();
+		errorsDisposable.dispose();
+		assertEquals(List.of(cmd1, cmd2), notified);
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof IllegalStateException);
+	}
+
+	@Nested
+	class CommandFeeds {
+		@Test
+		void testInvalidFeeds() {
+			assertThrows(IllegalArgumentException.class, () -> instance.commands(null, 10));
+			assertThrows(IllegalArgumentException.class, () -> instance.commands(BackpressureStrategy.DROP, 0));
+			assertThrows(IllegalArgumentException.class, () -> instance.commands(BackpressureStrategy.DROP, 10, null));
+		}
+
+		@Test
+		void testDeliveredOnFeedThread() throws InterruptedException {
+			final Command cmd = new CommandImplStub();
+			final TestSubscriber<String> subscriber = instance.commands(BackpressureStrategy.BUFFER, 10)
+				.map(c -> Thread.currentThread().getName())
+				.test();
+			instance.addCommand(cmd);
+			subscriber.awaitCount(1);
+			subscriber.assertValue(CommandsRegistry.FEED_THREAD_NAME);
+			subscriber.dispose();
+		}
+
+		@Test
+		void testBufferDropsOldest() {
+			final TestScheduler scheduler = new TestScheduler();
+			final TestSubscriber<Command> subscriber = instance.commands(BackpressureStrategy.BUFFER, 2, scheduler).test(0L);
+			final List<Command> added = IntStream.range(0, 6).mapToObj(i -> new CommandImplStub()).collect(Collectors.toList());
+			added.forEach(c -> instance.addCommand(c));
+			subscriber.request(10L);
+			scheduler.triggerActions();
+			subscriber.assertValues(added.get(0), added.get(1), added.get(4), added.get(5));
+		}
+
+		@Test
+		void testDropDropsNewest() {
+			final TestScheduler scheduler = new TestScheduler();
+			final TestSubscriber<Command> subscriber = instance.commands(BackpressureStrategy.DROP, 2, scheduler).test(0L);
+			final List<Command> added = IntStream.range(0, 6).mapToObj(i -> new CommandImplStub()).collect(Collectors.toList());
+			added.forEach(c -> instance.addCommand(c));
+			subscriber.request(10L);
+			scheduler.triggerActions();
+			subscriber.assertValues(added.get(0), added.get(1));
+		}
+
+		@Test
+		void testLatestKeepsLatest() {
+			final TestScheduler scheduler = new TestScheduler();
+			final TestSubscriber<Command> subscriber = instance.commands(BackpressureStrategy.LATEST, 2, scheduler).test(0L);
+			final List<Command> added = IntStream.range(0, 6).mapToObj(i -> new CommandImplStub()).collect(Collectors.toList());
+			added.forEach(c -> instance.addCommand(c));
+			subscriber.request(10L);
+			scheduler.triggerActions();
+			subscriber.assertValues(added.get(0), added.get(1), added.get(5));
+		}
+	}
+
+	@Nested
+	class Transactions {
+		List<Command> cmdsNotified;
+		List<List<Command>> batches;
+		List<Disposable> disposables;
+
+		@BeforeEach
+		void setUp() {
+			cmdsNotified = new ArrayList<>();
+			batches = new ArrayList<>();
+			disposables = List.of(instance.commands().subscribe(cmdsNotified::add),
+				instance.commandBatches().subscribe(batches::add));
+		}
+
+		@AfterEach
+		void tearDown() {
+			instance.rollbackTransaction();
+			disposables.forEach(d -> d.dispose());
+		}
+
+		@Test
+		void testNoTransactionByDefault() {
+			assertFalse(instance.isInTransaction());
+		}
+
+		@Test
+		void testBegin() {
+			instance.beginTransaction();
+			assertTrue(instance.isInTransaction());
+		}
+
+		@Test
+		void testCommandsDeferred() {
+			instance.beginTransaction();
+			instance.addCommand(new CommandImplStub());
+			assertTrue(instance.getCommands().isEmpty());
+			assertTrue(cmdsNotified.isEmpty());
+		}
+
+		@Test
+		void testCommit() {
+			final Command cmd1 = new CommandImplStub();
+			final Command cmd2 = new CommandImplStub();
+			instance.beginTransaction();
+			instance.addCommand(cmd1);
+			instance.addCommand(cmd2);
+			instance.addCommand(cmd2);
+			instance.commitTransaction();
+			assertFalse(instance.isInTransaction());
+			assertEquals(List.of(cmd1, cmd2), instance.getCommands());
+			assertEquals(List.of(List.of(cmd1, cmd2)), batches);
+			assertTrue(cmdsNotified.isEmpty());
+		}
+
+		@Test
+		void testCommitWithoutTransaction() {
+			instance.commitTransaction();
+			assertFalse(instance.isInTransaction());
+			assertTrue(batches.isEmpty());
+		}
+
+		@Test
+		void testCommitEmpty() {
+			instance.beginTransaction();
+			instance.commitTransaction();
+			assertTrue(batches.isEmpty());
+		}
+
+		@Test
+		void testNestedCommit() {
+			final Command cmd = new CommandImplStub();
+			instance.beginTransaction();
+			instance.beginTransaction();
+			instance.addCommand(cmd);
+			instance.commitTransaction();
+			assertTrue(instance.isInTransaction());
+			assertTrue(instance.getCommands().isEmpty());
+			instance.commitTransaction();
+			assertEquals(List.of(cmd), instance.getCommands());
+		}
+
+		@Test
+		void testCommitSingleUndoable() {
+			final CommandImplUndoableStub cmd = new CommandImplUndoableStub();
+			instance.beginTransaction();
+			instance.addCommand(cmd);
+			instance.commitTransaction();
+			assertSame(cmd, UndoCollector.getInstance().getLastUndo().orElseThrow());
+		}
+
+		@Test
+		void testCommitOneUndoableGroup() {
+			final CommandImplUndoableStub cmd1 = new CommandImplUndoableStub();
+			final CommandImplUndoableStub cmd2 = new CommandImplUndoableStub();
+			instance.beginTransaction();
+			instance.addCommand(cmd1);
+			instance.addCommand(new CommandImplStub());
+			instance.addCommand(cmd2);
+			instance.commitTransaction();
+			assertEquals(1, UndoCollector.getInstance().getUndo().size());
+			final Undoable group = UndoCollector.getInstance().getLastUndo().orElseThrow();
+			assertEquals(List.of(cmd1, cmd2), ((UndoableGroup) group).getUndoables());
+		}
+
+		@Test
+		void testCommitEvictsOldest() {
+			instance.setSizeMax(2);
+			final Command cmd1 = new CommandImplStub();
+			final Command cmd2 = new CommandImplStub();
+			final Command cmd3 = new CommandImplStub();
+			instance.beginTransaction();
+			instance.addCommand(cmd1);
+			instance.addCommand(cmd2);
+			instance.addCommand(cmd3);
+			instance.commitTransaction();
+			assertEquals(List.of(cmd2, cmd3), instance.getCommands());
+			assertEquals(CmdStatus.FLUSHED, cmd1.getStatus());
+		}
+
+		@Test
+		void testRollback() {
+			final Undoable undoable1 = Mockito.mock(Undoable.class, Mockito.withSettings().extraInterfaces(Command.class));
+			final Undoable undoable2 = Mockito.mock(Undoable.class, Mockito.withSettings().extraInterfaces(Command.class));
+			final Command cmd = Mockito.mock(Command.class);
+			instance.beginTransaction();
+			instance.beginTransaction();
+			instance.addCommand((Command) undoable1);
+			instance.addCommand(cmd);
+			instance.addCommand((Command) undoable2);
+			instance.rollbackTransaction();
+
+			final var inOrder = Mockito.inOrder(undoable1, undoable2);
+			inOrder.verify(undoable2).undo();
+			inOrder.verify(undoable1).undo();
+			Mockito.verify((Command) undoable1).flush();
+			Mockito.verify((Command) undoable2).flush();
+			Mockito.verify(cmd).flush();
+			assertFalse(instance.isInTransaction());
+			assertTrue(instance.getCommands().isEmpty());
+			assertTrue(UndoCollector.getInstance().getUndo().isEmpty());
+		}
+
+		@Test
+		void testOtherThreadsNotInTransaction() throws InterruptedException, ExecutionException, TimeoutException {
+			final ExecutorService executor = Executors.newSingleThreadExecutor();
+			final Command cmd = Mockito.mock(Command.class);
+			instance.beginTransaction();
+			try {
+				assertFalse(executor.submit(() -> instance.isInTransaction()).get(10, TimeUnit.SECONDS));
+				executor.submit(() -> instance.addCommand(cmd)).get(10, TimeUnit.SECONDS);
+			}finally {
+				executor.shutdownNow();
+			}
+			assertEquals(List.of(cmd), instance.getCommands());
+			assertEquals(List.of(cmd), cmdsNotified);
+			instance.rollbackTransaction();
+			Mockito.verify(cmd, Mockito.never()).flush();
+			assertEquals(List.of(cmd), instance.getCommands());
+		}
+
+		@Test
+		void testTransactionsOfThreadsIndependent() throws InterruptedException, ExecutionException, TimeoutException {
+			final ExecutorService executor = Executors.newSingleThreadExecutor();
+			final Command cmd1 = new CommandImplStub();
+			final Command cmd2 = new CommandImplStub();
+			instance.beginTransaction();
+			instance.addCommand(cmd1);
+			try {
+				executor.submit(() -> {
+					instance.beginTransaction();
+					instance.addCommand(cmd2);
+					instance.commitTransaction();
+				}).get(10, TimeUnit.SECONDS);
+			}finally {
+				executor.shutdownNow();
+			}
+			assertTrue(instance.isInTransaction());
+			assertEquals(List.of(cmd2), instance.getCommands());
+			instance.commitTransaction();
+			assertEquals(List.of(cmd2, cmd1), instance.getCommands());
+			assertEquals(List.of(List.of(cmd2), List.of(cmd1)), batches);
+		}
+
+		@Test
+		void testRollbackWithoutTransaction() {
+			instance.rollbackTransaction();
+			assertFalse(instance.isInTransaction());
+		}
+	}
+
+
 	private static class CommandImplUndoableStub extends CommandImpl implements Undoable {
 		CommandImplUndoableStub() {
 			super();
@@ -365,4 +886,30 @@ public class TestCommandsRegistry {
 			return false;
 		}
 	}
+
+
+	@UnregisteredBy(CommandImplStub.class)
+	private static class DeclaredCmdStub extends CommandImpl {
+		DeclaredCmdStub() {
+			super();
+		}
+
+		@Override
+		protected void doCmdBody() {
+			//
+		}
+	}
+
+
+	@UnregisteredBy({CommandImpl.class, CommandImplStub.class})
+	private static class MultiDeclaredCmdStub extends CommandImpl {
+		MultiDeclaredCmdStub() {
+			super();
+		}
+
+		@Override
+		protected void doCmdBody() {
+			//
+		}
+	}
 }
@@ -0,0 +1,125 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCommandsSnapshot {
+	Command c1;
+	Command c2;
+	Command c3;
+
+	@BeforeEach
+	void setUp() {
+		c1 = new CmdStub();
+		c2 = new CmdStub();
+		c3 = new CmdStub();
+	}
+
+	@Test
+	void testEmpty() {
+		assertTrue(CommandsSnapshot.EMPTY.isEmpty());
+	}
+
+	@Test
+	void testAppend() {
+		final CommandsSnapshot s1 = CommandsSnapshot.EMPTY.append(c1);
+		final CommandsSnapshot s2 = s1.append(c2);
+		assertEquals(List.of(c1), s1);
+		assertEquals(List.of(c1, c2), s2);
+		assertTrue(CommandsSnapshot.EMPTY.isEmpty());
+	}
+
+	@Test
+	void testAppendToOlderSnapshotDoesNotAlterNewer() {
+		final CommandsSnapshot s1 = CommandsSnapshot.EMPTY.append(c1);
+		final CommandsSnapshot s2 = s1.append(c2);
+		final CommandsSnapshot s3 = s1.append(c3);
+		assertEquals(List.of(c1, c2), s2);
+		assertEquals(List.of(c1, c3), s3);
+	}
+
+	@Test
+	void testAppendMany() {
+		CommandsSnapshot snapshot = CommandsSnapshot.EMPTY;
+		for(int i = 0; i < 100; i++) {
+			snapshot = snapshot.append(new CmdStub());
+		}
+		assertEquals(100, snapshot.size());
+	}
+
+	@Test
+	void testDropFirst() {
+		final CommandsSnapshot s1 = CommandsSnapshot.EMPTY.append(c1).append(c2);
+		final CommandsSnapshot s2 = s1.dropFirst();
+		assertEquals(List.of(c2), s2);
+		assertEquals(List.of(c1, c2), s1);
+		assertEquals(List.of(c2, c3), s2.append(c3));
+	}
+
+	@Test
+	void testClearFirstNotPublished() {
+		final CommandsSnapshot s1 = CommandsSnapshot.EMPTY.append(c1).append(c2);
+		final CommandsSnapshot s2 = s1.dropFirst();
+		assertTrue(s1.clearFirst());
+		assertNull(s1.get(0));
+		assertEquals(List.of(c2), s2);
+	}
+
+	@Test
+	void testClearFirstPublished() {
+		final CommandsSnapshot s1 = CommandsSnapshot.EMPTY.append(c1).append(c2);
+		s1.publish();
+		assertFalse(s1.dropFirst().clearFirst());
+		assertFalse(s1.clearFirst());
+		assertEquals(List.of(c1, c2), s1);
+	}
+
+	@Test
+	void testClearFirstPublishedBefore() {
+		final CommandsSnapshot s1 = CommandsSnapshot.EMPTY.append(c1);
+		s1.publish();
+		final CommandsSnapshot s2 = s1.append(c2).dropFirst();
+		assertTrue(s2.clearFirst());
+		assertEquals(List.of(c1), s1);
+	}
+
+	@Test
+	void testOf() {
+		assertEquals(List.of(c1, c2), CommandsSnapshot.of(List.of(c1, c2), 2));
+	}
+
+	@Test
+	void testGetOutOfBounds() {
+		final CommandsSnapshot snapshot = CommandsSnapshot.EMPTY.append(c1).append(c2).dropFirst();
+		assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(-1));
+	}
+
+	@Test
+	void testImmutable() {
+		final CommandsSnapshot snapshot = CommandsSnapshot.EMPTY.append(c1);
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.add(c2));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.remove(0));
+	}
+}
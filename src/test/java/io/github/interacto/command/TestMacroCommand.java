@@ -0,0 +1,329 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import io.github.interacto.undo.Undoable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMacroCommand {
+	MacroCommand cmd;
+	ForkJoinPool pool;
+
+	@BeforeEach
+	void setUp() {
+		cmd = new MacroCommand();
+		pool = new ForkJoinPool(4);
+		cmd.setPool(pool);
+	}
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdownNow();
+	}
+
+	CmdStub stub(final boolean cando) {
+		final CmdStub stub = new CmdStub();
+		stub.candoValue = cando;
+		return stub;
+	}
+
+	@Test
+	void testCannotDoEmpty() {
+		assertFalse(cmd.canDo());
+	}
+
+	@Test
+	void testAddNull() {
+		cmd.add(null);
+		cmd.add(null, "a");
+		assertTrue(cmd.getCommands().isEmpty());
+	}
+
+	@Test
+	void testCannotDoWhenSubCmdCannot() {
+		cmd.add(stub(true));
+		cmd.add(stub(false));
+		assertFalse(cmd.canDo());
+	}
+
+	@Test
+	void testSetPoolNull() {
+		cmd.setPool(null);
+		cmd.add(stub(true), "a");
+		cmd.add(stub(true), "b");
+		assertTrue(cmd.doIt());
+	}
+
+	@Test
+	void testExecuteAll() {
+		final CmdStub s1 = stub(true);
+		final CmdStub s2 = stub(true);
+		final CmdStub s3 = stub(true);
+		cmd.add(s1);
+		cmd.add(s2, "a");
+		cmd.add(s3, "b", "b");
+		assertTrue(cmd.doIt());
+		assertEquals(1, s1.cptDoCmdBody.get());
+		assertEquals(1, s2.cptDoCmdBody.get());
+		assertEquals(1, s3.cptDoCmdBody.get());
+		assertEquals(List.of(s1, s2, s3), cmd.getExecutedCommands());
+	}
+
+	@Test
+	void testIndependentCmdsInParallel() {
+		final CountDownLatch latch = new CountDownLatch(2);
+		final AnonCommand c1 = new AnonCommand(() -> awaitOther(latch));
+		final AnonCommand c2 = new AnonCommand(() -> awaitOther(latch));
+		cmd.add(c1, "a");
+		cmd.add(c2, "b");
+		assertTrue(cmd.doIt());
+		assertEquals(List.of(c1, c2), cmd.getExecutedCommands());
+	}
+
+	@Test
+	void testSharedResourcesInOrder() {
+		final AtomicInteger counter = new AtomicInteger();
+		final AtomicInteger first = new AtomicInteger(-1);
+		final AtomicInteger second = new AtomicInteger(-1);
+		cmd.add(new AnonCommand(() -> first.set(counter.getAndIncrement())), "a", "b");
+		cmd.add(new AnonCommand(() -> second.set(counter.getAndIncrement())), "b");
+		cmd.doIt();
+		assertEquals(0, first.get());
+		assertEquals(1, second.get());
+	}
+
+	@Test
+	void testUndeclaredResourcesAlone() {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final Runnable job = () -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			sleep();
+			running.decrementAndGet();
+		};
+		cmd.add(new AnonCommand(job), "a");
+		cmd.add(new AnonCommand(job));
+		cmd.add(new AnonCommand(job), "b");
+		cmd.doIt();
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	void testFailingSubCmdNotExecuted() {
+		final CmdStub s1 = stub(true);
+		final Command s2 = Mockito.mock(Command.class);
+		Mockito.when(s2.canDo()).thenReturn(true);
+		Mockito.when(s2.doIt()).thenReturn(false);
+		cmd.add(s1, "a");
+		cmd.add(s2, "b");
+		assertTrue(cmd.doIt());
+		assertEquals(List.of(s1), cmd.getExecutedCommands());
+	}
+
+	@Test
+	void testExceptionPropagated() {
+		cmd.add(new AnonCommand(() -> {
+			throw new IllegalStateException();
+		}), "a");
+		cmd.add(stub(true), "b");
+		assertThrows(IllegalStateException.class, () -> cmd.doIt());
+	}
+
+	@Test
+	void testFailureInWaveJoinsAllAndRecordsSuccesses() {
+		final AtomicInteger completed = new AtomicInteger();
+		final AnonCommand slow = new AnonCommand(() -> {
+			sleep();
+			completed.incrementAndGet();
+		});
+		cmd.add(new AnonCommand(() -> {
+			throw new IllegalStateException();
+		}), "a");
+		cmd.add(slow, "b");
+		cmd.add(new AnonCommand(() -> {
+			throw new IllegalArgumentException();
+		}), "c");
+		assertThrows(IllegalStateException.class, () -> cmd.doIt());
+		assertEquals(1, completed.get());
+		assertEquals(List.of(slow), cmd.getExecutedCommands());
+	}
+
+	@Test
+	void testFailureUndoesExecutedUndoablesInReverseOrder() {
+		final List<Undoable> undone = new ArrayList<>();
+		final UndoableCmdStub u1 = new UndoableCmdStub(undone);
+		final UndoableCmdStub u2 = new UndoableCmdStub(undone);
+		final CmdStub notUndoable = stub(true);
+		cmd.add(u1);
+		cmd.add(notUndoable);
+		cmd.add(u2);
+		cmd.add(new AnonCommand(() -> {
+			throw new IllegalStateException();
+		}));
+		assertThrows(IllegalStateException.class, () -> cmd.doIt());
+		assertEquals(List.of(u2, u1), undone);
+		assertEquals(List.of(notUndoable), cmd.getExecutedCommands());
+	}
+
+	@Test
+	void testFailureInWaveUndoesTheSuccessfulOnes() {
+		final List<Undoable> undone = new ArrayList<>();
+		final UndoableCmdStub u1 = new UndoableCmdStub(undone);
+		final UndoableCmdStub u2 = new UndoableCmdStub(undone);
+		cmd.add(u1, "a");
+		cmd.add(u2, "b");
+		cmd.add(new AnonCommand(() -> {
+			throw new IllegalStateException();
+		}), "c");
+		assertThrows(IllegalStateException.class, () -> cmd.doIt());
+		assertEquals(List.of(u2, u1), undone);
+		assertTrue(cmd.getExecutedCommands().isEmpty());
+	}
+
+	@Test
+	void testFailureWhileUndoingSuppressed() {
+		final IllegalArgumentException undoFailure = new IllegalArgumentException();
+		final List<Undoable> undone = new ArrayList<>();
+		final UndoableCmdStub u1 = new UndoableCmdStub(undone);
+		final UndoableCmdStub u2 = new UndoableCmdStub(undone);
+		u2.undoFailure = undoFailure;
+		cmd.add(u1);
+		cmd.add(u2);
+		cmd.add(new AnonCommand(() -> {
+			throw new IllegalStateException();
+		}));
+		final IllegalStateException ex = assertThrows(IllegalStateException.class, () -> cmd.doIt());
+		assertEquals(List.of(undoFailure), List.of(ex.getSuppressed()));
+		assertEquals(List.of(u1), undone);
+		assertTrue(cmd.getExecutedCommands().isEmpty());
+	}
+
+	@Test
+	void testNullResourcesIndependent() {
+		final CmdStub s1 = stub(true);
+		final CmdStub s2 = stub(true);
+		cmd.add(s1, (Object[]) null);
+		cmd.add(s2, (Object[]) null);
+		assertTrue(cmd.doIt());
+		assertEquals(List.of(s1, s2), cmd.getExecutedCommands());
+	}
+
+	@Test
+	void testNotRecyclable() {
+		cmd.add(stub(true), "a");
+		cmd.flush();
+		assertFalse(cmd.recycle());
+	}
+
+	@Test
+	void testHadEffect() {
+		final CmdStub s1 = stub(true);
+		cmd.add(s1, "a");
+		cmd.doIt();
+		cmd.done();
+		assertTrue(cmd.hadEffect());
+		assertTrue(s1.isDone());
+	}
+
+	@Test
+	void testNoEffectWhenNotDone() {
+		cmd.add(stub(true), "a");
+		cmd.doIt();
+		assertFalse(cmd.hadEffect());
+	}
+
+	@Test
+	void testCancel() {
+		final CmdStub s1 = stub(true);
+		cmd.add(s1);
+		cmd.cancel();
+		assertEquals(Command.CmdStatus.CANCELLED, s1.getStatus());
+	}
+
+	@Test
+	void testFlush() {
+		final CmdStub s1 = stub(true);
+		cmd.add(s1);
+		cmd.doIt();
+		cmd.flush();
+		assertEquals(Command.CmdStatus.FLUSHED, s1.getStatus());
+		assertTrue(cmd.getCommands().isEmpty());
+		assertTrue(cmd.getExecutedCommands().isEmpty());
+	}
+
+	static void awaitOther(final CountDownLatch latch) {
+		latch.countDown();
+		try {
+			if(!latch.await(5, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Not executed in parallel");
+			}
+		}catch(final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static void sleep() {
+		try {
+			Thread.sleep(20L);
+		}catch(final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	static class UndoableCmdStub extends CmdStub implements Undoable {
+		final List<Undoable> undone;
+		RuntimeException undoFailure;
+
+		UndoableCmdStub(final List<Undoable> undone) {
+			super();
+			this.undone = undone;
+			candoValue = true;
+		}
+
+		@Override
+		public void undo() {
+			if(undoFailure != null) {
+				throw undoFailure;
+			}
+			undone.add(this);
+		}
+
+		@Override
+		public void redo() {
+			//
+		}
+
+		@Override
+		public String getUndoName(final ResourceBundle bundle) {
+			return "";
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestRegisteredCommands {
+	RegisteredCommands cmds;
+	Command limited1;
+	Command limited2;
+	Command unlimited;
+
+	@BeforeEach
+	void setUp() {
+		cmds = new RegisteredCommands();
+		limited1 = Mockito.mock(Command.class);
+		Mockito.when(limited1.getRegistrationPolicy()).thenReturn(Command.RegistrationPolicy.LIMITED);
+		limited2 = Mockito.mock(Command.class);
+		Mockito.when(limited2.getRegistrationPolicy()).thenReturn(Command.RegistrationPolicy.LIMITED);
+		unlimited = Mockito.mock(Command.class);
+		Mockito.when(unlimited.getRegistrationPolicy()).thenReturn(Command.RegistrationPolicy.UNLIMITED);
+	}
+
+	@Test
+	void testEmpty() {
+		assertTrue(cmds.isEmpty());
+		assertNull(cmds.pollOldestEvictable());
+	}
+
+	@Test
+	void testAddKeepsInsertionOrder() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		cmds.add(limited2);
+		assertEquals(List.of(limited1, unlimited, limited2), cmds);
+		assertEquals(unlimited, cmds.get(1));
+	}
+
+	@Test
+	void testSnapshotFollowsChanges() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		cmds.add(limited2);
+		assertEquals(List.of(limited1, unlimited, limited2), cmds.snapshot());
+		cmds.pollOldestEvictable();
+		assertEquals(List.of(unlimited, limited2), cmds.snapshot());
+		cmds.remove(limited2);
+		assertEquals(List.of(unlimited), cmds.snapshot());
+		cmds.listIterator(0).add(limited1);
+		assertEquals(List.of(limited1, unlimited), cmds.snapshot());
+		cmds.clear();
+		assertTrue(cmds.snapshot().isEmpty());
+	}
+
+	@Test
+	void testSnapshotNotAlteredByChanges() {
+		cmds.add(limited1);
+		final List<Command> snapshot = cmds.snapshot();
+		cmds.add(limited2);
+		cmds.remove(limited1);
+		assertEquals(List.of(limited1), snapshot);
+	}
+
+	@Test
+	void testSnapshotRebuiltOnceAfterChanges() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		cmds.add(limited2);
+		cmds.remove(unlimited);
+		cmds.listIterator(1).add(unlimited);
+		final List<Command> snapshot = cmds.snapshot();
+		assertEquals(List.of(limited1, unlimited, limited2), snapshot);
+		assertSame(snapshot, cmds.snapshot());
+	}
+
+	@Test
+	void testSnapshotNotAlteredByEviction() {
+		cmds.add(limited1);
+		cmds.add(limited2);
+		final List<Command> snapshot = cmds.snapshot();
+		cmds.pollOldestEvictable();
+		cmds.add(unlimited);
+		cmds.pollOldestEvictable();
+		assertEquals(List.of(limited1, limited2), snapshot);
+		assertEquals(List.of(unlimited), cmds.snapshot());
+	}
+
+	@Test
+	void testAddNull() {
+		assertThrows(IllegalArgumentException.class, () -> cmds.add(null));
+	}
+
+	@Test
+	void testAddTwice() {
+		cmds.add(limited1);
+		assertThrows(IllegalArgumentException.class, () -> cmds.add(limited1));
+		assertEquals(1, cmds.size());
+	}
+
+	@Test
+	void testContains() {
+		cmds.add(limited1);
+		assertTrue(cmds.contains(limited1));
+		assertFalse(cmds.contains(limited2));
+	}
+
+	@Test
+	void testRemove() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		cmds.add(limited2);
+		assertTrue(cmds.remove(unlimited));
+		assertFalse(cmds.remove(unlimited));
+		assertEquals(List.of(limited1, limited2), cmds);
+	}
+
+	@Test
+	void testPollOldestEvictableSkipsUnlimited() {
+		cmds.add(unlimited);
+		cmds.add(limited1);
+		cmds.add(limited2);
+		assertSame(limited1, cmds.pollOldestEvictable());
+		assertSame(limited2, cmds.pollOldestEvictable());
+		assertNull(cmds.pollOldestEvictable());
+		assertEquals(List.of(unlimited), cmds);
+	}
+
+	@Test
+	void testPollOldestEvictableAfterRemove() {
+		cmds.add(limited1);
+		cmds.add(limited2);
+		cmds.remove(limited1);
+		assertSame(limited2, cmds.pollOldestEvictable());
+		assertTrue(cmds.isEmpty());
+	}
+
+	@Test
+	void testPolicyCapturedWhenAdded() {
+		cmds.add(unlimited);
+		Mockito.when(unlimited.getRegistrationPolicy()).thenReturn(Command.RegistrationPolicy.LIMITED);
+		assertNull(cmds.pollOldestEvictable());
+	}
+
+	@Test
+	void testClear() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		cmds.clear();
+		assertTrue(cmds.isEmpty());
+		assertNull(cmds.pollOldestEvictable());
+		cmds.add(limited1);
+		assertEquals(List.of(limited1), cmds);
+	}
+
+	@Test
+	void testIteratorRemove() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		cmds.add(limited2);
+		final Iterator<Command> it = cmds.iterator();
+		it.next();
+		it.next();
+		it.remove();
+		assertSame(limited2, it.next());
+		assertFalse(it.hasNext());
+		assertEquals(List.of(limited1, limited2), cmds);
+		assertThrows(NoSuchElementException.class, it::next);
+	}
+
+	@Test
+	void testIteratorRemoveTwice() {
+		cmds.add(limited1);
+		final Iterator<Command> it = cmds.iterator();
+		it.next();
+		it.remove();
+		assertThrows(IllegalStateException.class, it::remove);
+	}
+
+	@Test
+	void testListIteratorBackward() {
+		cmds.add(limited1);
+		cmds.add(limited2);
+		final ListIterator<Command> it = cmds.listIterator(2);
+		assertEquals(1, it.previousIndex());
+		assertSame(limited2, it.previous());
+		it.remove();
+		assertSame(limited1, it.previous());
+		assertFalse(it.hasPrevious());
+		assertEquals(0, it.nextIndex());
+		assertThrows(NoSuchElementException.class, it::previous);
+		assertEquals(List.of(limited1), cmds);
+	}
+
+	@Test
+	void testListIteratorPreviousFromMiddle() {
+		cmds.add(limited1);
+		cmds.add(limited2);
+		cmds.add(unlimited);
+		final ListIterator<Command> it = cmds.listIterator(2);
+		assertSame(limited2, it.previous());
+		assertSame(limited1, it.previous());
+		assertSame(limited1, it.next());
+	}
+
+	@Test
+	void testListIteratorAddInMiddleKeepsEvictionOrder() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		final ListIterator<Command> it = cmds.listIterator(1);
+		it.add(limited2);
+		assertEquals(List.of(limited1, limited2, unlimited), cmds);
+		cmds.remove(limited1);
+		assertSame(limited2, cmds.pollOldestEvictable());
+	}
+
+	@Test
+	void testListIteratorAddFirst() {
+		cmds.add(limited1);
+		cmds.listIterator().add(limited2);
+		assertEquals(List.of(limited2, limited1), cmds);
+		assertSame(limited2, cmds.pollOldestEvictable());
+	}
+
+	@Test
+	void testListIteratorSetAfterNext() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		final ListIterator<Command> it = cmds.listIterator();
+		it.next();
+		it.set(limited2);
+		assertEquals(List.of(limited2, unlimited), cmds);
+		assertEquals(List.of(limited2, unlimited), cmds.snapshot());
+		assertTrue(cmds.contains(limited2));
+		assertFalse(cmds.contains(limited1));
+		assertSame(unlimited, it.next());
+		assertSame(limited2, cmds.pollOldestEvictable());
+	}
+
+	@Test
+	void testListIteratorSetAfterPrevious() {
+		cmds.add(limited1);
+		cmds.add(limited2);
+		final ListIterator<Command> it = cmds.listIterator(2);
+		it.previous();
+		it.set(unlimited);
+		assertEquals(List.of(limited1, unlimited), cmds);
+		assertSame(unlimited, it.next());
+		assertFalse(it.hasNext());
+		assertSame(limited1, cmds.pollOldestEvictable());
+		assertNull(cmds.pollOldestEvictable());
+	}
+
+	@Test
+	void testListSet() {
+		cmds.add(limited1);
+		cmds.add(unlimited);
+		assertSame(unlimited, cmds.set(1, limited2));
+		assertEquals(List.of(limited1, limited2), cmds);
+	}
+
+	@Test
+	void testListIteratorSetSameCmd() {
+		cmds.add(limited1);
+		final ListIterator<Command> it = cmds.listIterator();
+		it.next();
+		it.set(limited1);
+		assertEquals(List.of(limited1), cmds);
+	}
+
+	@Test
+	void testListIteratorSetKO() {
+		cmds.add(limited1);
+		cmds.add(limited2);
+		final ListIterator<Command> it = cmds.listIterator();
+		assertThrows(IllegalStateException.class, () -> it.set(unlimited));
+		it.next();
+		assertThrows(IllegalArgumentException.class, () -> it.set(limited2));
+		assertThrows(IllegalArgumentException.class, () -> it.set(null));
+		it.remove();
+		assertThrows(IllegalStateException.class, () -> it.set(unlimited));
+		assertEquals(List.of(limited2), cmds);
+	}
+
+	@Test
+	void testListIteratorBadIndex() {
+		assertThrows(IndexOutOfBoundsException.class, () -> cmds.listIterator(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> cmds.listIterator(-1));
+	}
+
+	@Test
+	void testConcurrentModification() {
+		cmds.add(limited1);
+		final Iterator<Command> it = cmds.iterator();
+		cmds.add(limited2);
+		assertThrows(ConcurrentModificationException.class, it::next);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.command;
+
+import io.github.interacto.undo.Undoable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestUndoableMacroCommand {
+	UndoableMacroCommand cmd;
+	Command u1;
+	Command u2;
+
+	@BeforeEach
+	void setUp() {
+		cmd = new UndoableMacroCommand("macro");
+		u1 = undoableCmd(10L);
+		u2 = undoableCmd(20L);
+	}
+
+	Command undoableCmd(final long size) {
+		final Command sub = Mockito.mock(Command.class, Mockito.withSettings().extraInterfaces(Undoable.class));
+		Mockito.when(sub.canDo()).thenReturn(true);
+		Mockito.when(sub.doIt()).thenReturn(true);
+		Mockito.when(((Undoable) sub).getRetainedSize()).thenReturn(size);
+		return sub;
+	}
+
+	@Test
+	void testUndoName() {
+		assertEquals("macro", cmd.getUndoName(null));
+	}
+
+	@Test
+	void testCannotDoWithNonUndoable() {
+		cmd.add(u1);
+		cmd.add(new CmdStub());
+		assertFalse(cmd.canDo());
+	}
+
+	@Test
+	void testCanDo() {
+		cmd.add(u1);
+		cmd.add(u2);
+		assertTrue(cmd.canDo());
+	}
+
+	@Test
+	void testUndoReverseOrder() {
+		cmd.add(u1, "a");
+		cmd.add(u2, "b");
+		cmd.doIt();
+		cmd.undo();
+		final InOrder inOrder = Mockito.inOrder(u1, u2);
+		inOrder.verify((Undoable) u2).undo();
+		inOrder.verify((Undoable) u1).undo();
+	}
+
+	@Test
+	void testRedoOrder() {
+		cmd.add(u1);
+		cmd.add(u2);
+		cmd.doIt();
+		cmd.redo();
+		final InOrder inOrder = Mockito.inOrder(u1, u2);
+		inOrder.verify((Undoable) u1).redo();
+		inOrder.verify((Undoable) u2).redo();
+	}
+
+	@Test
+	void testRetainedSize() {
+		cmd.add(u1);
+		cmd.add(u2);
+		cmd.doIt();
+		assertEquals(30L, cmd.getRetainedSize());
+	}
+}
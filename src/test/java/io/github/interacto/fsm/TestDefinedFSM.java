@@ -0,0 +1,572 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.fsm;
+
+import io.github.interacto.interaction.TimerService;
+import io.reactivex.disposables.Disposable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDefinedFSM {
+	FSMDefinition<StubEvent> definition;
+	DefinedFSM<StubEvent> fsm;
+	FSMHandler handler;
+	List<StubEvent> actions;
+	boolean cancelOnPress;
+	long timeout;
+
+	@BeforeEach
+	void setUp() {
+		actions = new ArrayList<>();
+		cancelOnPress = false;
+		timeout = 10_000L;
+		handler = Mockito.mock(FSMHandler.class);
+		definition = FSMDefinition.<StubEvent>builder(Object::getClass)
+			.stdState("pressed")
+			.terminalState("released")
+			.cancellingState("cancelled")
+			.transition(FSMDefinition.INIT_STATE, "pressed", Set.of(StubSubEvent1.class), null, actions::add)
+			.transition("pressed", "pressed", Set.of(StubSubEvent2.class), null, actions::add)
+			.transition("pressed", "released", Set.of(StubSubEvent3.class), null, null)
+			.transition("pressed", "cancelled", Set.of(StubSubEvent1.class), evt -> cancelOnPress, null)
+			.timeoutTransition("pressed", "released", () -> timeout)
+			.build();
+		fsm = definition.createFSM();
+		fsm.addHandler(handler);
+	}
+
+	@AfterEach
+	void tearDown() {
+		fsm.uninstall();
+	}
+
+	@Test
+	void testNullDefinition() {
+		assertThrows(IllegalArgumentException.class, () -> new DefinedFSM<StubEvent>(null));
+	}
+
+	@Test
+	void testStatesAreViewsOfTheDefinition() {
+		assertEquals(definition.getStateCount(), fsm.getStates().size());
+		assertSame(fsm.initState, fsm.getCurrentState());
+		assertEquals(Set.of(StubSubEvent1.class), fsm.getCurrentState().getTransitions().get(0).getAcceptedEvents());
+		assertEquals(1, fsm.getCurrentState().getTransitions().size());
+	}
+
+	@Test
+	void testProcessStarts() throws CancelFSMException {
+		assertTrue(fsm.process(new StubSubEvent1()));
+		assertEquals("pressed", fsm.getCurrentState().getName());
+		assertEquals(1, fsm.getCurrentStateIndex());
+		assertTrue(fsm.isStarted());
+		assertEquals(1, actions.size());
+		Mockito.verify(handler, Mockito.times(1)).fsmStarts();
+	}
+
+	@Test
+	void testProcessNotAcceptedEvent() {
+		assertFalse(fsm.process(new StubSubEvent2()));
+		assertFalse(fsm.process(null));
+		assertSame(fsm.initState, fsm.getCurrentState());
+	}
+
+	@Test
+	void testProcessUpdates() throws CancelFSMException {
+		fsm.process(new StubSubEvent1());
+		fsm.process(new StubSubEvent2());
+		fsm.process(new StubSubEvent2());
+		assertEquals(3, actions.size());
+		Mockito.verify(handler, Mockito.times(3)).fsmUpdates();
+	}
+
+	@Test
+	void testProcessStops() throws CancelFSMException {
+		fsm.process(new StubSubEvent1());
+		assertTrue(fsm.process(new StubSubEvent3()));
+		assertSame(fsm.initState, fsm.getCurrentState());
+		assertEquals(0, fsm.getCurrentStateIndex());
+		assertFalse(fsm.isStarted());
+		Mockito.verify(handler, Mockito.times(1)).fsmStops();
+	}
+
+	@Test
+	void testGuardCancels() {
+		fsm.process(new StubSubEvent1());
+		assertFalse(fsm.process(new StubSubEvent1()));
+		cancelOnPress = true;
+		assertTrue(fsm.process(new StubSubEvent1()));
+		assertSame(fsm.initState, fsm.getCurrentState());
+		Mockito.verify(handler, Mockito.times(1)).fsmCancels();
+	}
+
+	@Test
+	void testCancelledByHandlerOnStart() throws CancelFSMException {
+		Mockito.doThrow(new CancelFSMException()).when(handler).fsmStarts();
+		assertFalse(fsm.process(new StubSubEvent1()));
+		assertSame(fsm.initState, fsm.getCurrentState());
+		assertFalse(fsm.isStarted());
+		Mockito.verify(handler, Mockito.times(1)).fsmCancels();
+	}
+
+	@Test
+	void testActionException() {
+		final FSMDefinition<StubEvent> def = FSMDefinition.<StubEvent>builder(Object::getClass)
+			.terminalState("ended")
+			.transition(FSMDefinition.INIT_STATE, "ended", null, null, evt -> {
+				throw new IllegalArgumentException();
+			})
+			.build();
+		assertThrows(IllegalArgumentException.class, () -> def.createFSM().process(new StubEvent()));
+	}
+
+	@Test
+	void testTimeout() throws CancelFSMException, InterruptedException {
+		final CountDownLatch stopped = new CountDownLatch(1);
+		fsm.addHandler(new FSMHandler() {
+			@Override
+			public void fsmStarts() {
+			}
+
+			@Override
+			public void fsmUpdates() {
+			}
+
+			@Override
+			public void fsmStops() {
+				stopped.countDown();
+			}
+
+			@Override
+			public void fsmCancels() {
+			}
+		});
+		timeout = 10L;
+		fsm.process(new StubSubEvent1());
+		assertTrue(stopped.await(1L, TimeUnit.SECONDS));
+		Mockito.verify(handler, Mockito.times(1)).fsmStops();
+	}
+
+	@Test
+	void testInstancesShareTheDefinition() {
+		final DefinedFSM<StubEvent> other = definition.createFSM();
+		fsm.process(new StubSubEvent1());
+		assertEquals(1, fsm.getCurrentStateIndex());
+		assertEquals(0, other.getCurrentStateIndex());
+		other.process(new StubSubEvent1());
+		other.process(new StubSubEvent3());
+		assertEquals(1, fsm.getCurrentStateIndex());
+		assertEquals(0, other.getCurrentStateIndex());
+	}
+
+	@Test
+	void testStartingState() throws CancelFSMException {
+		fsm = FSMDefinition.<StubEvent>builder(Object::getClass)
+			.stdState("pressed")
+			.stdState("moved")
+			.terminalState("released")
+			.transition(FSMDefinition.INIT_STATE, "pressed", Set.of(StubSubEvent1.class), null, null)
+			.transition("pressed", "moved", Set.of(StubSubEvent2.class), null, null)
+			.transition("moved", "released", Set.of(StubSubEvent3.class), null, null)
+			.startingState("moved")
+			.build()
+			.createFSM();
+		fsm.addHandler(handler);
+		fsm.process(new StubSubEvent1());
+		assertFalse(fsm.isStarted());
+		fsm.process(new StubSubEvent2());
+		assertTrue(fsm.isStarted());
+		Mockito.verify(handler, Mockito.times(1)).fsmStarts();
+	}
+
+	@Test
+	void testViewsBelongToTheFSM() {
+		final DefinedFSM<StubEvent> other = definition.createFSM();
+		assertSame(fsm, fsm.initState.getFSM());
+		assertNotSame(fsm.initState, other.initState);
+		assertTrue(fsm.getStates().stream().allMatch(state -> state.getFSM() == fsm));
+	}
+
+	@Test
+	void testExecuteTransitionView() throws CancelFSMException {
+		final Transition<StubEvent> tr = fsm.getCurrentState().getTransitions().get(0);
+		assertEquals(Optional.of(tr.tgt), tr.execute(new StubSubEvent1()));
+		assertEquals(1, fsm.getCurrentStateIndex());
+		assertSame(tr.tgt, fsm.getCurrentState());
+		assertTrue(fsm.isStarted());
+		assertEquals(1, actions.size());
+		Mockito.verify(handler, Mockito.times(1)).fsmStarts();
+	}
+
+	@Test
+	void testExecuteTransitionViewNotAccepted() throws CancelFSMException {
+		final Transition<StubEvent> tr = fsm.getCurrentState().getTransitions().get(0);
+		assertTrue(tr.execute(new StubSubEvent2()).isEmpty());
+		assertTrue(tr.execute(null).isEmpty());
+		assertEquals(0, fsm.getCurrentStateIndex());
+	}
+
+	@Test
+	void testProcessStateView() throws CancelFSMException {
+		assertTrue(fsm.getCurrentState().process(new StubSubEvent1()));
+		assertTrue(fsm.getCurrentState().process(new StubSubEvent3()));
+		assertEquals(0, fsm.getCurrentStateIndex());
+		Mockito.verify(handler, Mockito.times(1)).fsmStops();
+	}
+
+	@Test
+	void testTimeoutView() throws CancelFSMException, InterruptedException {
+		fsm.process(new StubSubEvent1());
+		final TimeoutTransition<StubEvent> tr = fsm.getCurrentState().getTransitions()
+			.stream()
+			.filter(t -> t instanceof TimeoutTransition<?>)
+			.map(t -> (TimeoutTransition<StubEvent>) t)
+			.findFirst()
+			.get();
+		assertTrue(tr.execute(null).isEmpty());
+		tr.stopTimeout();
+		timeout = 10L;
+		tr.startTimeout();
+		Thread.sleep(100L);
+		Mockito.verify(handler, Mockito.times(1)).fsmStops();
+		assertEquals(0, fsm.getCurrentStateIndex());
+	}
+
+	@Test
+	void testStateChangeListener() {
+		final List<String> changes = new ArrayList<>();
+		fsm.addStateChangeListener((old, state) -> changes.add(old.getName() + ">" + state.getName()));
+		fsm.process(new StubSubEvent1());
+		fsm.process(new StubSubEvent2());
+		fsm.process(new StubSubEvent3());
+		assertEquals(List.of("init>pressed", "pressed>pressed", "pressed>init"), changes);
+	}
+
+	@Test
+	void testTransitionsCannotBeAdded() {
+		final InputState<StubEvent> tgt = new StdState<>(fsm, "foo");
+		assertThrows(UnsupportedOperationException.class, () -> new StubTransitionOK(fsm.initState, tgt));
+		assertThrows(UnsupportedOperationException.class, () -> new StubTransitionOK(fsm.getStates()
+			.stream()
+			.filter(st -> st instanceof StdState<?>)
+			.map(st -> (StdState<StubEvent>) st)
+			.findFirst()
+			.get(), tgt));
+		assertEquals(1, fsm.initState.getTransitions().size());
+	}
+
+	@Test
+	void testAddState() {
+		final StdState<StubEvent> state = new StdState<>(fsm, "foo");
+		fsm.addState(state);
+		assertTrue(fsm.getStates().contains(state));
+		assertEquals(definition.getStateCount() + 1, fsm.getStates().size());
+	}
+
+	@Test
+	void testUninstallDoesNotAffectOtherFSMs() {
+		final DefinedFSM<StubEvent> other = definition.createFSM();
+		other.getStates();
+		other.uninstall();
+		assertTrue(other.getStates().stream().noneMatch(state -> state == fsm.initState));
+		assertEquals(definition.getStateCount(), fsm.getStates().size());
+		assertTrue(fsm.process(new StubSubEvent1()));
+		assertEquals(4, fsm.getCurrentState().getTransitions().size());
+	}
+
+	@Test
+	void testChainedTimeoutsAsClassicFSM() throws CancelFSMException, InterruptedException {
+		final List<String> definedEvents = new CopyOnWriteArrayList<>();
+		final CountDownLatch definedStopped = new CountDownLatch(1);
+		fsm = FSMDefinition.<StubEvent>builder(Object::getClass)
+			.stdState("a")
+			.stdState("b")
+			.terminalState("ended")
+			.transition(FSMDefinition.INIT_STATE, "a", Set.of(StubSubEvent1.class), null, null)
+			.timeoutTransition("a", "b", () -> 50L)
+			.timeoutTransition("b", "ended", () -> 50L)
+			.build()
+			.createFSM();
+		fsm.addHandler(new RecordingHandler(definedEvents, definedStopped));
+
+		final List<String> classicEvents = new CopyOnWriteArrayList<>();
+		final CountDownLatch classicStopped = new CountDownLatch(1);
+		final FSM<StubEvent> classic = new FSM<>();
+		final StdState<StubEvent> a = new StdState<>(classic, "a");
+		final StdState<StubEvent> b = new StdState<>(classic, "b");
+		final TerminalState<StubEvent> ended = new TerminalState<>(classic, "ended");
+		classic.addState(a);
+		classic.addState(b);
+		classic.addState(ended);
+		new StubTransitionOK(classic.initState, a);
+		new TimeoutTransition<>(a, b, () -> 50L);
+		new TimeoutTransition<>(b, ended, () -> 50L);
+		classic.addHandler(new RecordingHandler(classicEvents, classicStopped));
+
+		fsm.process(new StubSubEvent1());
+		classic.process(new StubSubEvent1());
+
+		assertTrue(classicStopped.await(1L, TimeUnit.SECONDS));
+		assertTrue(definedStopped.await(1L, TimeUnit.SECONDS));
+		// The FSMs are reinitialised after notifying the handlers
+		Thread.sleep(50L);
+		assertEquals(List.of("start", "update", "update", "stop"), classicEvents);
+		assertEquals(classicEvents, definedEvents);
+		assertSame(classic.initState, classic.getCurrentState());
+		assertSame(fsm.initState, fsm.getCurrentState());
+		assertFalse(fsm.isStarted());
+		classic.uninstall();
+	}
+
+	static class RecordingHandler implements FSMHandler {
+		final List<String> events;
+		final CountDownLatch stopped;
+
+		RecordingHandler(final List<String> events, final CountDownLatch stopped) {
+			this.events = events;
+			this.stopped = stopped;
+		}
+
+		@Override
+		public void fsmStarts() {
+			events.add("start");
+		}
+
+		@Override
+		public void fsmUpdates() {
+			events.add("update");
+		}
+
+		@Override
+		public void fsmStops() {
+			events.add("stop");
+			stopped.countDown();
+		}
+
+		@Override
+		public void fsmCancels() {
+			events.add("cancel");
+		}
+	}
+
+	@Test
+	void testTimeoutStoppedByEvent() throws CancelFSMException, InterruptedException {
+		timeout = 50L;
+		fsm.process(new StubSubEvent1());
+		fsm.process(new StubSubEvent3());
+		Thread.sleep(150L);
+		Mockito.verify(handler, Mockito.times(1)).fsmStops();
+		assertEquals(0, fsm.getCurrentStateIndex());
+	}
+
+	@Test
+	void testTimeoutRestartedOnReentry() throws CancelFSMException, InterruptedException {
+		timeout = 50L;
+		fsm.process(new StubSubEvent1());
+		fsm.process(new StubSubEvent3());
+		fsm.process(new StubSubEvent1());
+		Thread.sleep(200L);
+		Mockito.verify(handler, Mockito.times(2)).fsmStops();
+	}
+
+	@Test
+	void testNoTimeoutWhenDurationNotPositive() throws CancelFSMException, InterruptedException {
+		timeout = 0L;
+		fsm.process(new StubSubEvent1());
+		Thread.sleep(50L);
+		Mockito.verify(handler, Mockito.never()).fsmStops();
+		assertEquals(1, fsm.getCurrentStateIndex());
+	}
+
+	DefinedFSM.TimeoutView<StubEvent> timeoutView() {
+		return fsm.getCurrentState().getTransitions()
+			.stream()
+			.filter(t -> t instanceof DefinedFSM.TimeoutView<?>)
+			.map(t -> (DefinedFSM.TimeoutView<StubEvent>) t)
+			.findFirst()
+			.get();
+	}
+
+	@Test
+	void testEnterStdStateView() throws CancelFSMException {
+		fsm.enterStdState((StdState<StubEvent>) fsm.getStateView(1));
+		assertEquals(1, fsm.getCurrentStateIndex());
+		fsm.setCurrentState(fsm.initState);
+		fsm.setCurrentState((OutputState<StubEvent>) fsm.getStateView(1));
+		assertEquals(1, fsm.getCurrentStateIndex());
+	}
+
+	@Test
+	void testCurrentStateObserver() {
+		final List<Map.Entry<OutputState<StubEvent>, OutputState<StubEvent>>> changes = new ArrayList<>();
+		final Disposable disposable = fsm.currentState().subscribe(changes::add);
+		fsm.process(new StubSubEvent1());
+		disposable.dispose();
+		fsm.process(new StubSubEvent3());
+		assertEquals(1, changes.size());
+		assertSame(fsm.initState, changes.get(0).getKey());
+		assertEquals("pressed", changes.get(0).getValue().getName());
+	}
+
+	@Test
+	void testTimeoutLogged() throws CancelFSMException, InterruptedException {
+		final CountDownLatch stopped = new CountDownLatch(2);
+		fsm.addHandler(new RecordingHandler(new CopyOnWriteArrayList<>(), stopped));
+		fsm.log(true);
+		fsm.process(new StubSubEvent1());
+		fsm.process(new StubSubEvent3());
+		timeout = 10L;
+		fsm.process(new StubSubEvent1());
+		assertTrue(stopped.await(1L, TimeUnit.SECONDS));
+		Mockito.verify(handler, Mockito.times(2)).fsmStops();
+	}
+
+	@Test
+	void testTimeoutRestartedOnlyWhenDone() {
+		final TimerService memento = TimerService.getInstance();
+		final TimerService timer = Mockito.mock(TimerService.class);
+		Mockito.when(timer.schedule(Mockito.any(), Mockito.anyLong()))
+			.thenReturn(CompletableFuture.completedFuture(null), new CompletableFuture<>());
+		TimerService.setInstance(timer);
+		try {
+			fsm.process(new StubSubEvent1());
+			timeoutView().startTimeout();
+			timeoutView().startTimeout();
+		}finally {
+			TimerService.setInstance(memento);
+		}
+		Mockito.verify(timer, Mockito.times(2)).schedule(Mockito.any(), Mockito.eq(10_000L));
+	}
+
+	@Test
+	void testLateTimeoutExecutedByTheView() throws CancelFSMException {
+		final TimerService memento = TimerService.getInstance();
+		final TimerService timer = Mockito.mock(TimerService.class);
+		final ArgumentCaptor<Runnable> job = ArgumentCaptor.forClass(Runnable.class);
+		TimerService.setInstance(timer);
+		try {
+			fsm.process(new StubSubEvent1());
+			final DefinedFSM.TimeoutView<StubEvent> tr = timeoutView();
+			assertFalse(tr.accept(null));
+			assertFalse(tr.isGuardOK(null));
+			fsm.stopCurrentTimeout();
+			Mockito.verify(timer).schedule(job.capture(), Mockito.anyLong());
+			// The stopped timeout is reached: nothing executed
+			job.getValue().run();
+			assertEquals(1, fsm.getCurrentStateIndex());
+			tr.startTimeout();
+			assertTrue(tr.accept(null));
+			assertTrue(tr.isGuardOK(null));
+			assertTrue(tr.execute(null).isPresent());
+		}finally {
+			TimerService.setInstance(memento);
+		}
+		assertEquals(0, fsm.getCurrentStateIndex());
+		Mockito.verify(handler, Mockito.times(1)).fsmStops();
+	}
+
+	@Test
+	void testTimeoutToCancellingState() throws InterruptedException {
+		final List<String> events = new CopyOnWriteArrayList<>();
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		fsm = FSMDefinition.<StubEvent>builder(Object::getClass)
+			.stdState("a")
+			.cancellingState("cancelled")
+			.transition(FSMDefinition.INIT_STATE, "a", Set.of(StubSubEvent1.class), null, null)
+			.timeoutTransition("a", "cancelled", () -> 10L)
+			.build()
+			.createFSM();
+		fsm.addHandler(new RecordingHandler(events, new CountDownLatch(1)) {
+			@Override
+			public void fsmCancels() {
+				super.fsmCancels();
+				cancelled.countDown();
+			}
+		});
+		fsm.process(new StubSubEvent1());
+		assertTrue(cancelled.await(1L, TimeUnit.SECONDS));
+		assertEquals(List.of("start", "update", "cancel"), events);
+	}
+
+	@Test
+	void testTimeoutCancelledByHandler() throws CancelFSMException, InterruptedException {
+		final List<String> events = new CopyOnWriteArrayList<>();
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		fsm = FSMDefinition.<StubEvent>builder(Object::getClass)
+			.stdState("a")
+			.stdState("b")
+			.terminalState("ended")
+			.transition(FSMDefinition.INIT_STATE, "a", Set.of(StubSubEvent1.class), null, null)
+			.transition("b", "ended", Set.of(StubSubEvent3.class), null, null)
+			.timeoutTransition("a", "b", () -> 10L)
+			.build()
+			.createFSM();
+		fsm.addHandler(new FSMHandler() {
+			@Override
+			public void fsmStarts() {
+				events.add("start");
+			}
+
+			@Override
+			public void fsmUpdates() throws CancelFSMException {
+				events.add("update");
+				// Cancels when the timeout is reached
+				if(events.size() > 2) {
+					throw new CancelFSMException();
+				}
+			}
+
+			@Override
+			public void fsmStops() {
+				events.add("stop");
+			}
+
+			@Override
+			public void fsmCancels() {
+				events.add("cancel");
+				cancelled.countDown();
+			}
+		});
+		fsm.process(new StubSubEvent1());
+		assertTrue(cancelled.await(1L, TimeUnit.SECONDS));
+		assertEquals(List.of("start", "update", "update", "cancel"), events);
+	}
+
+	@Test
+	void testSetIndexedDispatchDoesNothing() {
+		fsm.setIndexedDispatch(evt -> null);
+		assertTrue(fsm.process(new StubSubEvent1()));
+		assertTrue(fsm.process(new StubSubEvent2()));
+		assertEquals(2, actions.size());
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.fsm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the memory footprint of FSMs as the number of objects they hold.
+ * The objects of the JDK are counted but their fields are not explored (the content of the collections is explored),
+ * so the counts are lower bounds.
+ */
+public class TestDefinedFSMFootprint {
+	static FSMDefinition<Object> chainDefinition(final int nbStates) {
+		final FSMDefinition.Builder<Object> builder = FSMDefinition.builder(evt -> evt);
+		String previous = FSMDefinition.INIT_STATE;
+		for(int i = 1; i <= nbStates; i++) {
+			builder.stdState("s" + i).transition(previous, "s" + i, Set.of(i), null, null);
+			previous = "s" + i;
+		}
+		return builder.terminalState("end").transition(previous, "end", Set.of(0), null, null).build();
+	}
+
+	static FSM<StubEvent> chainFSM(final int nbStates) {
+		final FSM<StubEvent> fsm = new FSM<>();
+		OutputState<StubEvent> previous = fsm.initState;
+		for(int i = 1; i <= nbStates; i++) {
+			final StdState<StubEvent> state = new StdState<>(fsm, "s" + i);
+			fsm.addState(state);
+			new StubTransitionOK(previous, state);
+			previous = state;
+		}
+		final TerminalState<StubEvent> end = new TerminalState<>(fsm, "end");
+		fsm.addState(end);
+		new StubTransitionOK(previous, end);
+		return fsm;
+	}
+
+	/**
+	 * @return The objects held by the first FSM only: the objects shared with the other FSM
+	 *     (e.g. the definition, the shared empty arrays) are not counted.
+	 */
+	static Set<Object> ownObjects(final FSM<?> fsm, final FSM<?> other) {
+		final Set<Object> owned = reachable(fsm);
+		owned.removeAll(reachable(other));
+		return owned;
+	}
+
+	static Set<Object> reachable(final Object root) {
+		final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Deque<Object> todo = new ArrayDeque<>();
+		todo.push(root);
+
+		while(!todo.isEmpty()) {
+			final Object obj = todo.pop();
+			if(seen.add(obj)) {
+				if(obj instanceof Object[]) {
+					pushAll(Arrays.asList((Object[]) obj), todo);
+				}else if(obj instanceof Collection<?>) {
+					pushAll((Collection<?>) obj, todo);
+				}else if(obj instanceof Map<?, ?>) {
+					pushAll(((Map<?, ?>) obj).keySet(), todo);
+					pushAll(((Map<?, ?>) obj).values(), todo);
+				}else {
+					pushFields(obj, todo);
+				}
+			}
+		}
+		return seen;
+	}
+
+	private static void pushAll(final Collection<?> elts, final Deque<Object> todo) {
+		for(final Object elt : elts) {
+			if(elt != null) {
+				todo.push(elt);
+			}
+		}
+	}
+
+	private static void pushFields(final Object obj, final Deque<Object> todo) {
+		for(Class<?> cl = obj.getClass(); cl != null && cl.getName().startsWith("io.github.interacto"); cl = cl.getSuperclass()) {
+			for(final Field field : cl.getDeclaredFields()) {
+				if(!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+					field.setAccessible(true);
+					try {
+						final Object value = field.get(obj);
+						if(value != null) {
+							todo.push(value);
+						}
+					}catch(final IllegalAccessException ex) {
+						throw new IllegalStateException(ex);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testViewsCreatedOnDemand() {
+		final FSMDefinition<Object> definition = chainDefinition(3);
+		final DefinedFSM<Object> fsm = definition.createFSM();
+		final int idle = ownObjects(fsm, definition.createFSM()).size();
+		fsm.getStates();
+		final Set<Object> owned = ownObjects(fsm, definition.createFSM());
+		assertTrue(owned.size() > idle);
+		assertTrue(owned.containsAll(fsm.getStates()));
+	}
+
+	@Test
+	void testFootprintDoesNotDependOnTheStates() {
+		final FSMDefinition<Object> small = chainDefinition(2);
+		final FSMDefinition<Object> big = chainDefinition(50);
+		assertEquals(ownObjects(small.createFSM(), small.createFSM()).size(), ownObjects(big.createFSM(), big.createFSM()).size());
+	}
+
+	@Test
+	void testFootprintLowerThanClassicFSM() {
+		final FSMDefinition<Object> definition = chainDefinition(20);
+		final int defined = ownObjects(definition.createFSM(), definition.createFSM()).size();
+		final int classic = ownObjects(chainFSM(20), chainFSM(20)).size();
+		assertTrue(defined * 10 < classic, "defined: " + defined + ", classic: " + classic);
+	}
+
+	@Test
+	void testIdleFSMHoldsNoViewButTheInitialState() {
+		final FSMDefinition<Object> definition = chainDefinition(2);
+		final DefinedFSM<Object> fsm = definition.createFSM();
+		final Set<Object> owned = ownObjects(fsm, definition.createFSM());
+		assertTrue(owned.contains(fsm.initState));
+		assertTrue(owned.stream().noneMatch(obj -> obj instanceof Transition<?> || (obj instanceof State<?> && obj != fsm.initState)),
+			() -> "objects: " + owned);
+	}
+}
@@ -31,6 +31,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestFSM {
@@ -110,8 +111,10 @@ public class TestFSM {
 		}
 
 		@Test
-		void testcurrentStateProp() {
-			assertNotNull(fsm.currentStatePublisher);
+		void testcurrentStatePropLazy() {
+			assertNull(fsm.getCurrentStatePublisher());
+			fsm.currentState();
+			assertNotNull(fsm.getCurrentStatePublisher());
 		}
 
 		@Test
@@ -268,21 +271,69 @@ public class TestFSM {
 	@Test
 	void testAddHandlerNull() {
 		fsm.addHandler(null);
-		assertTrue(fsm.handlers.isEmpty());
+		assertEquals(0, fsm.handlers.length);
 	}
 
 	@Test
 	void testRemoveHandlerNull() {
 		fsm.addHandler(handler);
 		fsm.removeHandler(null);
-		assertEquals(Set.of(handler), fsm.handlers);
+		assertEquals(List.of(handler), List.of(fsm.handlers));
 	}
 
 	@Test
 	void testRemoveHandler() {
 		fsm.addHandler(handler);
 		fsm.removeHandler(handler);
-		assertTrue(fsm.handlers.isEmpty());
+		assertEquals(0, fsm.handlers.length);
+	}
+
+	@Test
+	void testAddHandlerTwice() {
+		fsm.addHandler(handler);
+		fsm.addHandler(handler);
+		assertEquals(List.of(handler), List.of(fsm.handlers));
+	}
+
+	@Test
+	void testHandlersNotifiedInOrder() {
+		final FSMHandler handler2 = Mockito.mock(FSMHandler.class);
+		fsm.addHandler(handler);
+		fsm.addHandler(handler2);
+		fsm.notifyHandlerOnCancel();
+		final var inOrder = Mockito.inOrder(handler, handler2);
+		inOrder.verify(handler).fsmCancels();
+		inOrder.verify(handler2).fsmCancels();
+	}
+
+	@Test
+	void testHandlerRemovedDuringNotificationNotNotified() throws CancelFSMException {
+		final FSMHandler handler2 = Mockito.mock(FSMHandler.class);
+		final FSMHandler remover = Mockito.mock(FSMHandler.class);
+		Mockito.doAnswer(inv -> {
+			fsm.removeHandler(handler2);
+			return null;
+		}).when(remover).fsmStops();
+		fsm.addHandler(remover);
+		fsm.addHandler(handler2);
+		fsm.addHandler(handler);
+		fsm.notifyHandlerOnStop();
+		Mockito.verify(handler2, Mockito.never()).fsmStops();
+		Mockito.verify(handler).fsmStops();
+	}
+
+	@Test
+	void testHandlerAddedDuringNotificationNotifiedNextTime() throws CancelFSMException {
+		final FSMHandler added = Mockito.mock(FSMHandler.class);
+		Mockito.doAnswer(inv -> {
+			fsm.addHandler(added);
+			return null;
+		}).when(handler).fsmUpdates();
+		fsm.addHandler(handler);
+		fsm.notifyHandlerOnUpdate();
+		Mockito.verify(added, Mockito.never()).fsmUpdates();
+		fsm.notifyHandlerOnUpdate();
+		Mockito.verify(added).fsmUpdates();
 	}
 
 	@Test
@@ -295,7 +346,7 @@ public class TestFSM {
 	void testAddRemainingNotNull() {
 		final var evt = new StubEvent();
 		fsm.addRemaningEventsToProcess(evt);
-		assertEquals(List.of(evt), fsm.eventsToProcess);
+		assertEquals(List.of(evt), fsm.eventsToProcess.toList());
 	}
 
 	@Test
@@ -324,6 +375,53 @@ public class TestFSM {
 		assertTrue(fsm.eventsToProcess.isEmpty());
 	}
 
+	@Test
+	void testGetPendingEvents() {
+		assertSame(fsm.eventsToProcess, fsm.getPendingEvents());
+	}
+
+	@Test
+	void testProcessRemainingEventsOnlyPendingOnes() {
+		final List<StubEvent> processed = new ArrayList<>();
+		final FSM<StubEvent> recycling = new FSM<>() {
+			@Override
+			public boolean process(final StubEvent event) {
+				processed.add(event);
+				addRemaningEventsToProcess(new StubEvent());
+				return false;
+			}
+		};
+		final var evt1 = new StubEvent();
+		final var evt2 = new StubEvent();
+		recycling.addRemaningEventsToProcess(evt1);
+		recycling.addRemaningEventsToProcess(evt2);
+		recycling.processRemainingEvents();
+		assertEquals(List.of(evt1, evt2), processed);
+		assertEquals(2, recycling.eventsToProcess.size());
+		assertEquals(2L, recycling.eventsToProcess.getPolledCount());
+	}
+
+	@Test
+	void testProcessRemainingEventsConsumedByNestedTermination() {
+		final List<StubEvent> processed = new ArrayList<>();
+		final FSM<StubEvent> terminating = new FSM<>() {
+			@Override
+			public boolean process(final StubEvent event) {
+				processed.add(event);
+				// As if the event terminated the FSM
+				processRemainingEvents();
+				return true;
+			}
+		};
+		final var evt1 = new StubEvent();
+		final var evt2 = new StubEvent();
+		terminating.addRemaningEventsToProcess(evt1);
+		terminating.addRemaningEventsToProcess(evt2);
+		terminating.processRemainingEvents();
+		assertEquals(List.of(evt1, evt2), processed);
+		assertTrue(terminating.eventsToProcess.isEmpty());
+	}
+
 	@Test
 	void testOnTerminatingIfStarted() throws CancelFSMException {
 		fsm.onStarting();
@@ -373,7 +471,7 @@ public class TestFSM {
 	void testOnTimeoutWithoutTimeout() {
 		fsm.logger = Mockito.mock(Logger.class);
 		fsm.onTimeout();
-		Mockito.verify(fsm.logger, Mockito.never()).log(Mockito.any(), Mockito.anyString());
+		Mockito.verifyNoInteractions(fsm.logger);
 	}
 
 
@@ -382,11 +480,14 @@ public class TestFSM {
 		final var s1 = Mockito.mock(InputState.class);
 		fsm.addState(s1);
 		fsm.eventsToProcess.add(new StubEvent());
+		fsm.currentState();
+		fsm.addStateChangeListener((o, n) -> { });
 		fsm.uninstall();
 
 		assertTrue(fsm.states.isEmpty());
 		assertTrue(fsm.eventsToProcess.isEmpty());
-		assertTrue(fsm.currentStatePublisher.hasComplete());
+		assertTrue(fsm.getCurrentStatePublisher().hasComplete());
+		assertEquals(0, fsm.stateListeners.length);
 		assertNull(fsm.logger);
 		assertNull(fsm.startingState);
 		assertNull(fsm.currentSubFSM);
@@ -409,6 +510,52 @@ public class TestFSM {
 		assertEquals(fsm.initState, changes.get(0).getKey());
 	}
 
+	@Test
+	void testUninstallWithoutPublisher() {
+		fsm.uninstall();
+		assertNull(fsm.getCurrentStatePublisher());
+	}
+
+	@Test
+	void testStateChangeListenerNotified() {
+		final List<OutputState<StubEvent>> changes = new ArrayList<>();
+		final OutputState<StubEvent> newCurr = Mockito.mock(OutputState.class);
+		fsm.addStateChangeListener((oldState, newState) -> {
+			changes.add(oldState);
+			changes.add(newState);
+		});
+		fsm.setCurrentState(newCurr);
+		assertEquals(List.of(fsm.initState, newCurr), changes);
+	}
+
+	@Test
+	void testStateChangeListenerNoPublisherCreated() {
+		fsm.addStateChangeListener((oldState, newState) -> { });
+		fsm.setCurrentState(Mockito.mock(OutputState.class));
+		assertNull(fsm.getCurrentStatePublisher());
+	}
+
+	@Test
+	void testAddStateChangeListenerNull() {
+		fsm.addStateChangeListener(null);
+		assertEquals(0, fsm.stateListeners.length);
+	}
+
+	@Test
+	void testRemoveStateChangeListener() {
+		final List<Integer> calls = new ArrayList<>();
+		final StateChangeListener<StubEvent> l1 = (o, n) -> calls.add(1);
+		final StateChangeListener<StubEvent> l2 = (o, n) -> calls.add(2);
+		final StateChangeListener<StubEvent> l3 = (o, n) -> calls.add(3);
+		fsm.addStateChangeListener(l1);
+		fsm.addStateChangeListener(l2);
+		fsm.addStateChangeListener(l3);
+		fsm.removeStateChangeListener(l2);
+		fsm.removeStateChangeListener(null);
+		fsm.setCurrentState(Mockito.mock(OutputState.class));
+		assertEquals(List.of(1, 3), calls);
+	}
+
 	@Nested
 	class TestMultipleTransitionChoice {
 		StdState<StubEvent> std;
@@ -525,6 +672,121 @@ public class TestFSM {
 		}
 	}
 
+	@Nested
+	class TestIndexedDispatch {
+		StdState<StubEvent> std;
+		TerminalState<StubEvent> terminal;
+		CancellingState<StubEvent> cancel;
+		StubTransitionOK iToS;
+		StubTransitionOK sToT;
+
+		@BeforeEach
+		void setUp() {
+			fsm.addHandler(handler);
+			std = new StdState<>(fsm, "s1");
+			terminal = new TerminalState<>(fsm, "t1");
+			cancel = new CancellingState<>(fsm, "c1");
+			iToS = new StubTransitionOK(fsm.initState, std);
+			sToT = new SubStubTransition1(std, terminal, true);
+			new SubStubTransition2(std, cancel, true);
+			fsm.addState(std);
+			fsm.addState(terminal);
+			fsm.addState(cancel);
+			fsm.setIndexedDispatch(Object::getClass);
+		}
+
+		@Test
+		void testGetEventKeyProvider() {
+			assertNotNull(fsm.getEventKeyProvider());
+		}
+
+		@Test
+		void testNoIndexedDispatchByDefault() {
+			assertNull(new FSM<>().getEventKeyProvider());
+		}
+
+		@Test
+		void testTriggerGoodChoice() throws CancelFSMException {
+			fsm.process(new StubEvent());
+			fsm.process(new StubSubEvent2());
+			assertEquals(fsm.initState, fsm.getCurrentState());
+			Mockito.verify(handler, Mockito.times(1)).fsmCancels();
+			Mockito.verify(handler, Mockito.never()).fsmStops();
+		}
+
+		@Test
+		void testTriggerGoodChoice2() throws CancelFSMException {
+			fsm.process(new StubEvent());
+			fsm.process(new StubSubEvent1());
+			assertEquals(fsm.initState, fsm.getCurrentState());
+			Mockito.verify(handler, Mockito.times(1)).fsmStops();
+			Mockito.verify(handler, Mockito.never()).fsmCancels();
+		}
+
+		@Test
+		void testEventWithoutCandidateTransition() {
+			fsm.process(new StubSubEvent1());
+			assertEquals(fsm.initState, fsm.getCurrentState());
+		}
+
+		@Test
+		void testTransitionsNotDeclaringTheEventNotTried() {
+			fsm.process(new StubEvent());
+			final var spy = Mockito.spy(sToT);
+			std.transitions.set(0, spy);
+			fsm.setIndexedDispatch(Object::getClass);
+			fsm.process(new StubSubEvent3());
+			Mockito.verify(spy, Mockito.never()).accept(Mockito.any());
+			assertEquals(std, fsm.getCurrentState());
+		}
+
+		@Test
+		void testTransitionWithoutAcceptedEventsAlwaysTried() {
+			fsm.process(new StubEvent());
+			new StubTransitionOK(std, terminal) {
+				@Override
+				public Set<Object> getAcceptedEvents() {
+					return Set.of();
+				}
+			};
+			fsm.process(new StubSubEvent3());
+			assertEquals(fsm.initState, fsm.getCurrentState());
+		}
+
+		@Test
+		void testDeclarationOrderKeptWithFallbackTransitions() {
+			final StdState<StubEvent> std2 = new StdState<>(fsm, "s2");
+			fsm.addState(std2);
+			fsm.initState.transitions.clear();
+			new StubTransitionOK(fsm.initState, std2) {
+				@Override
+				public Set<Object> getAcceptedEvents() {
+					return Set.of();
+				}
+			};
+			new StubTransitionOK(fsm.initState, std);
+			fsm.process(new StubEvent());
+			assertEquals(std2, fsm.getCurrentState());
+		}
+
+		@Test
+		void testTableRebuiltOnAddedTransition() throws CancelFSMException {
+			fsm.process(new StubEvent());
+			new SubStubTransition3(std, terminal, true);
+			fsm.process(new StubSubEvent3());
+			assertEquals(fsm.initState, fsm.getCurrentState());
+			Mockito.verify(handler, Mockito.times(1)).fsmStops();
+		}
+
+		@Test
+		void testDisableIndexedDispatch() {
+			fsm.setIndexedDispatch(null);
+			fsm.process(new StubSubEvent3());
+			assertNull(fsm.getEventKeyProvider());
+			assertEquals(std, fsm.getCurrentState());
+		}
+	}
+
 	@Nested
 	class TestWithTimeoutTransition {
 		StdState<StubEvent> std;
@@ -534,9 +796,11 @@ public class TestFSM {
 		StubTransitionOK iToS;
 		StubTransitionOK sToT;
 		TimeoutTransition<StubEvent> timeout;
+		long timeoutDuration;
 
 		@BeforeEach
 		void setUp() {
+			timeoutDuration = 100L;
 			fsm.addHandler(handler);
 			std = new StdState<>(fsm, "s1");
 			std2 = new StdState<>(fsm, "s2");
@@ -545,7 +809,7 @@ public class TestFSM {
 			iToS = new StubTransitionOK(fsm.initState, std);
 			sToT = new StubTransitionOK(std, terminal);
 			new SubStubTransition2(std, std3, true);
-			timeout = new TimeoutTransition<>(std, std2, () -> 100L);
+			timeout = new TimeoutTransition<>(std, std2, () -> timeoutDuration);
 			new StubTransitionOK(std2, std);
 			fsm.addState(std);
 			fsm.addState(std2);
@@ -569,6 +833,8 @@ public class TestFSM {
 
 		@Test
 		void testTimeoutStoppedOnOtherTransitionWithLog() {
+			// Spying may take longer than the default timeout
+			timeoutDuration = 10_000L;
 			fsm.log(true);
 			fsm.process(new StubEvent());
 			sToT.guard = false;
@@ -0,0 +1,200 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.fsm;
+
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestFSMDefinition {
+	FSMDefinition.Builder<StubEvent> builder;
+
+	@BeforeEach
+	void setUp() {
+		builder = FSMDefinition.<StubEvent>builder(Object::getClass)
+			.stdState("pressed")
+			.terminalState("released")
+			.cancellingState("cancelled")
+			.transition(FSMDefinition.INIT_STATE, "pressed", Set.of(StubSubEvent1.class), null, null)
+			.transition("pressed", "released", Set.of(StubSubEvent3.class), null, null)
+			.transition("pressed", "cancelled", Set.of(StubSubEvent1.class), evt -> false, null);
+	}
+
+	@Test
+	void testNullKeyProvider() {
+		assertThrows(IllegalArgumentException.class, () -> FSMDefinition.builder(null));
+	}
+
+	@Test
+	void testStates() {
+		final FSMDefinition<StubEvent> def = builder.build();
+		assertEquals(4, def.getStateCount());
+		assertEquals(FSMDefinition.INIT_STATE, def.getStateName(0));
+		assertEquals(FSMDefinition.StateKind.INIT, def.getStateKind(0));
+		assertEquals(FSMDefinition.StateKind.STD, def.getStateKind(def.indexOf("pressed")));
+		assertEquals(FSMDefinition.StateKind.TERMINAL, def.getStateKind(def.indexOf("released")));
+		assertEquals(FSMDefinition.StateKind.CANCELLING, def.getStateKind(def.indexOf("cancelled")));
+		assertEquals(-1, def.indexOf("foo"));
+	}
+
+	@Test
+	void testDuplicateState() {
+		assertThrows(IllegalArgumentException.class, () -> builder.stdState("pressed"));
+		assertThrows(IllegalArgumentException.class, () -> builder.terminalState(FSMDefinition.INIT_STATE));
+		assertThrows(IllegalArgumentException.class, () -> builder.stdState(null));
+	}
+
+	@Test
+	void testStartingState() {
+		assertEquals(0, builder.build().getStartingState());
+		assertEquals(1, builder.startingState("pressed").build().getStartingState());
+		assertThrows(IllegalArgumentException.class, () -> builder.startingState("foo"));
+	}
+
+	@Test
+	void testInvalidTransitions() {
+		assertThrows(IllegalArgumentException.class, () -> builder.transition("foo", "pressed", null, null, null));
+		assertThrows(IllegalArgumentException.class, () -> builder.transition("released", "pressed", null, null, null));
+		assertThrows(IllegalArgumentException.class, () -> builder.transition("pressed", FSMDefinition.INIT_STATE, null, null, null));
+		assertThrows(IllegalArgumentException.class, () -> builder.timeoutTransition("pressed", "released", null));
+	}
+
+	@Test
+	void testSingleTimeoutTransitionPerState() {
+		builder.timeoutTransition("pressed", "released", () -> 100L);
+		assertThrows(IllegalArgumentException.class, () -> builder.timeoutTransition("pressed", "cancelled", () -> 100L));
+	}
+
+	@Test
+	void testCandidatesByKey() {
+		final FSMDefinition<StubEvent> def = builder
+			.transition("pressed", "pressed", Set.of(StubSubEvent2.class, StubSubEvent3.class), evt -> true, null)
+			.transition("pressed", "cancelled", null, evt -> true, null)
+			.timeoutTransition("pressed", "released", () -> 100L)
+			.build();
+		assertEquals(6, def.getTransitionCount());
+		assertArrayEquals(new int[] {0}, def.getCandidates(0, new StubSubEvent1()));
+		assertArrayEquals(new int[0], def.getCandidates(0, new StubSubEvent2()));
+		assertArrayEquals(new int[0], def.getCandidates(0, new StubEvent()));
+		assertArrayEquals(new int[] {2, 4}, def.getCandidates(1, new StubSubEvent1()));
+		assertArrayEquals(new int[] {3, 4}, def.getCandidates(1, new StubSubEvent2()));
+		assertArrayEquals(new int[] {1, 3, 4}, def.getCandidates(1, new StubSubEvent3()));
+		assertArrayEquals(new int[] {4}, def.getCandidates(1, new StubEvent()));
+		assertArrayEquals(new int[0], def.getCandidates(2, new StubSubEvent1()));
+	}
+
+	@Test
+	void testTableRows() {
+		final FSMDefinition<StubEvent> def = builder.build();
+		final int row = def.getRow(1, new StubSubEvent1());
+		assertEquals(1, def.getRowEnd(row) - def.getRowStart(row));
+		assertEquals(2, def.getTableEntry(def.getRowStart(row)));
+		assertNotEquals(def.getRow(1, new StubSubEvent1()), def.getRow(1, new StubSubEvent3()));
+	}
+
+	@Test
+	void testBuilderReusable() {
+		final FSMDefinition<StubEvent> def1 = builder.build();
+		builder.stdState("moved").transition("pressed", "moved", Set.of(StubSubEvent2.class), null, null)
+			.transition("moved", "released", Set.of(StubSubEvent3.class), null, null);
+		assertEquals(4, def1.getStateCount());
+		assertEquals(5, builder.build().getStateCount());
+	}
+
+	@Test
+	void testCreateFSM() {
+		final FSMDefinition<StubEvent> def = builder.build();
+		final DefinedFSM<StubEvent> fsm1 = def.createFSM();
+		final DefinedFSM<StubEvent> fsm2 = def.createFSM();
+		assertNotSame(fsm1, fsm2);
+		assertSame(def, fsm1.getDefinition());
+		assertSame(def, fsm2.getDefinition());
+	}
+
+	@Nested
+	class Validation {
+		@Test
+		void testUnreachableState() {
+			builder.stdState("moved").transition("moved", "released", null, null, null);
+			assertThrows(IllegalStateException.class, () -> builder.build());
+		}
+
+		@Test
+		void testUnreachableTerminalState() {
+			builder.terminalState("ended");
+			assertThrows(IllegalStateException.class, () -> builder.build());
+		}
+
+		@Test
+		void testDeadState() {
+			builder.stdState("moved").transition("pressed", "moved", Set.of(StubSubEvent2.class), null, null);
+			assertThrows(IllegalStateException.class, () -> builder.build());
+		}
+
+		@Test
+		void testDeadLoop() {
+			builder.stdState("moved")
+				.transition("pressed", "moved", Set.of(StubSubEvent2.class), null, null)
+				.transition("moved", "moved", Set.of(StubSubEvent2.class), null, null);
+			assertThrows(IllegalStateException.class, () -> builder.build());
+		}
+
+		@Test
+		void testInitStateWithoutTransition() {
+			assertThrows(IllegalStateException.class, () -> FSMDefinition.builder(Object::getClass).build());
+		}
+
+		@Test
+		void testTimeoutTransitionMakesStateAlive() {
+			builder.stdState("moved")
+				.transition("pressed", "moved", Set.of(StubSubEvent2.class), null, null)
+				.timeoutTransition("moved", "released", () -> 100L);
+			assertDoesNotThrow(() -> builder.build());
+		}
+
+		@Test
+		void testAmbiguousTransitions() {
+			builder.transition("pressed", "cancelled", Set.of(StubSubEvent2.class, StubSubEvent3.class), null, null);
+			assertThrows(IllegalStateException.class, () -> builder.build());
+		}
+
+		@Test
+		void testAmbiguousWithAnyEventTransition() {
+			builder.transition("pressed", "cancelled", null, null, null);
+			assertThrows(IllegalStateException.class, () -> builder.build());
+		}
+
+		@Test
+		void testGuardedTransitionsNotAmbiguous() {
+			builder.transition("pressed", "cancelled", Set.of(StubSubEvent3.class), evt -> false, null);
+			assertDoesNotThrow(() -> builder.build());
+		}
+
+		@Test
+		void testDisjointTransitionsNotAmbiguous() {
+			builder.transition("pressed", "pressed", Set.of(StubSubEvent2.class), null, null);
+			assertDoesNotThrow(() -> builder.build());
+		}
+	}
+}
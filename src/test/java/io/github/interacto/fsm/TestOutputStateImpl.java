@@ -15,12 +15,16 @@
 package io.github.interacto.fsm;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -45,6 +49,11 @@ public class TestOutputStateImpl {
 		assertThrows(UnsupportedOperationException.class, () -> tr.clear());
 	}
 
+	@Test
+	void testGetTransitionsSameView() {
+		assertSame(state.getTransitions(), state.getTransitions());
+	}
+
 	@Test
 	void testAddTransitionOK() {
 		final Transition<String> t1 = Mockito.mock(Transition.class);
@@ -71,4 +80,39 @@ public class TestOutputStateImpl {
 		Mockito.verify(t2, Mockito.times(1)).uninstall();
 		assertTrue(state.getTransitions().isEmpty());
 	}
+
+	@Test
+	void testProcessWithoutFSM() throws CancelFSMException {
+		final Transition<String> tr = Mockito.mock(Transition.class);
+		final InputState<String> tgt = Mockito.mock(InputState.class);
+		Mockito.when(tr.execute("a")).thenReturn(Optional.of(tgt));
+		state.addTransition(tr);
+		assertTrue(state.process("a"));
+	}
+
+	@Test
+	void testIndexedProcessTriesNextTransitions() throws CancelFSMException {
+		final FSM<String> indexedFSM = new FSM<>();
+		indexedFSM.setIndexedDispatch(evt -> evt);
+		final OutputStateImpl<String> indexed = new OutputStateImpl<>(indexedFSM, "os") {
+			@Override
+			public void exit() {
+			}
+		};
+		final Transition<String> refusing = Mockito.mock(Transition.class);
+		final Transition<String> cancelling = Mockito.mock(Transition.class);
+		final Transition<String> tr = Mockito.mock(Transition.class);
+		final InputState<String> tgt = Mockito.mock(InputState.class);
+		Mockito.when(refusing.getAcceptedEvents()).thenReturn(Set.of("a"));
+		Mockito.when(refusing.execute("a")).thenReturn(Optional.empty());
+		Mockito.when(cancelling.getAcceptedEvents()).thenReturn(Set.of("a"));
+		Mockito.when(cancelling.execute("a")).thenThrow(new CancelFSMException());
+		Mockito.when(tr.getAcceptedEvents()).thenReturn(Set.of("a"));
+		Mockito.when(tr.execute("a")).thenReturn(Optional.of(tgt));
+		indexed.addTransition(refusing);
+		indexed.addTransition(cancelling);
+		indexed.addTransition(tr);
+		assertTrue(indexed.process("a"));
+		assertFalse(indexed.process("b"));
+	}
 }
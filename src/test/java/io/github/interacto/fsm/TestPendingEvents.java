@@ -0,0 +1,168 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.fsm;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPendingEvents {
+	PendingEvents<String> events;
+
+	@BeforeEach
+	void setUp() {
+		events = new PendingEvents<>(3, PendingEvents.OverflowPolicy.DROP_OLDEST);
+	}
+
+	@Test
+	void testDefault() {
+		final PendingEvents<String> dft = new PendingEvents<>();
+		assertEquals(PendingEvents.DEFAULT_CAPACITY, dft.getCapacity());
+		assertEquals(PendingEvents.OverflowPolicy.DROP_OLDEST, dft.getOverflowPolicy());
+		assertTrue(dft.isEmpty());
+	}
+
+	@Test
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> new PendingEvents<>(0, PendingEvents.OverflowPolicy.DROP_OLDEST));
+		assertThrows(IllegalArgumentException.class, () -> new PendingEvents<>(2, null));
+	}
+
+	@Test
+	void testAddNull() {
+		assertFalse(events.add(null));
+		assertTrue(events.isEmpty());
+		assertEquals(0L, events.getAddedCount());
+	}
+
+	@Test
+	void testFifo() {
+		events.add("a");
+		events.add("b");
+		assertFalse(events.isEmpty());
+		assertEquals("a", events.poll());
+		events.add("c");
+		events.add("d");
+		assertEquals(List.of("b", "c", "d"), events.toList());
+		assertEquals("b", events.poll());
+		assertEquals("c", events.poll());
+		assertEquals("d", events.poll());
+		assertNull(events.poll());
+		assertEquals(4L, events.getPolledCount());
+	}
+
+	@Test
+	void testDropOldest() {
+		events.add("a");
+		events.add("b");
+		events.add("c");
+		assertTrue(events.add("d"));
+		assertEquals(List.of("b", "c", "d"), events.toList());
+		assertEquals(1L, events.getDroppedCount());
+		assertEquals(4L, events.getAddedCount());
+	}
+
+	@Test
+	void testDropNewest() {
+		events.setOverflowPolicy(PendingEvents.OverflowPolicy.DROP_NEWEST);
+		events.add("a");
+		events.add("b");
+		events.add("c");
+		assertFalse(events.add("d"));
+		assertEquals(List.of("a", "b", "c"), events.toList());
+		assertEquals(1L, events.getDroppedCount());
+	}
+
+	@Test
+	void testSetOverflowPolicyNull() {
+		events.setOverflowPolicy(null);
+		assertEquals(PendingEvents.OverflowPolicy.DROP_OLDEST, events.getOverflowPolicy());
+	}
+
+	@Test
+	void testClear() {
+		events.add("a");
+		events.add("b");
+		events.clear();
+		assertTrue(events.isEmpty());
+		assertEquals(0L, events.getDroppedCount());
+		events.add("c");
+		assertEquals(List.of("c"), events.toList());
+	}
+
+	@Test
+	void testSetCapacitySmaller() {
+		events.add("a");
+		events.poll();
+		events.add("b");
+		events.add("c");
+		events.add("d");
+		events.setCapacity(2);
+		assertEquals(2, events.getCapacity());
+		assertEquals(List.of("c", "d"), events.toList());
+		assertEquals(1L, events.getDroppedCount());
+	}
+
+	@Test
+	void testSetCapacityGreater() {
+		events.add("a");
+		events.add("b");
+		events.setCapacity(5);
+		events.add("c");
+		events.add("d");
+		events.add("e");
+		assertEquals(List.of("a", "b", "c", "d", "e"), events.toList());
+	}
+
+	@Test
+	void testSetCapacityInvalid() {
+		events.setCapacity(0);
+		assertEquals(3, events.getCapacity());
+	}
+
+	@Test
+	void testResetCounters() {
+		events.add("a");
+		events.poll();
+		events.resetCounters();
+		assertEquals(0L, events.getAddedCount());
+		assertEquals(0L, events.getPolledCount());
+		assertEquals(0L, events.getDroppedCount());
+	}
+
+	@Test
+	void testSetCapacityBeforeFirstEvent() {
+		events.setCapacity(2);
+		events.add("a");
+		events.add("b");
+		events.add("c");
+		assertEquals(2, events.getCapacity());
+		assertEquals(List.of("b", "c"), events.toList());
+		assertEquals(1L, events.getDroppedCount());
+	}
+
+	@Test
+	void testEmptyQueueOperations() {
+		events.clear();
+		assertNull(events.poll());
+		assertEquals(List.of(), events.toList());
+	}
+}
@@ -18,7 +18,10 @@ import io.github.interacto.error.ErrorCatcher;
 import io.reactivex.disposables.Disposable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -26,12 +29,13 @@ import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TestTimeoutTransition {
-	private final Object lock = new Object();
 	TimeoutTransition<StubEvent> evt;
 	OutputState<StubEvent> src;
 	InputState<StubEvent> tgt;
@@ -48,23 +52,18 @@ class TestTimeoutTransition {
 	}
 
 	@AfterEach
-	void tearDown() throws InterruptedException {
-		for(final Thread th : getTimeoutThreads()) {
-			th.interrupt();
-			th.join();
-		};
-	}
-
-	List<Thread> getTimeoutThreads() {
-		return Thread.getAllStackTraces().keySet()
-			.stream()
-			.filter(thread -> thread.getName().startsWith(TimeoutTransition.TIMEOUT_THREAD_NAME_BASE))
-			.collect(Collectors.toList());
+	void tearDown() {
+		evt.stopTimeout();
 	}
 
 	void waitForTimeoutThreads() throws InterruptedException {
-		for(final var t : getTimeoutThreads()) {
-			t.join(1000L);
+		final var future = evt.timeoutFuture;
+		if(future != null) {
+			try {
+				future.get(1000L, TimeUnit.MILLISECONDS);
+			}catch(final ExecutionException | TimeoutException ex) {
+				throw new IllegalStateException(ex);
+			}
 		}
 	}
 
@@ -111,7 +110,8 @@ class TestTimeoutTransition {
 	void testStopTimeout0() {
 		evt = new TimeoutTransition<>(src, tgt, () -> 0L);
 		evt.startTimeout();
-		assertEquals(0L, getTimeoutThreads().size());
+		assertNull(evt.timeoutFuture);
+		Mockito.verify(fsm, Mockito.times(1)).onTimeout();
 		evt.stopTimeout();
 		assertFalse(evt.isGuardOK(null));
 	}
@@ -120,16 +120,45 @@ class TestTimeoutTransition {
 	void testTwoConsecutiveStarts() {
 		evt = new TimeoutTransition<>(src, tgt, () -> 300L);
 		evt.startTimeout();
+		final var future = evt.timeoutFuture;
 		evt.startTimeout();
-		assertEquals(1L, getTimeoutThreads().size());
+		assertSame(future, evt.timeoutFuture);
 		evt.stopTimeout();
+		assertTrue(future.isCancelled());
 		assertFalse(evt.isGuardOK(null));
 	}
 
+	@Test
+	void testRestartAfterTimeout() throws InterruptedException {
+		evt.startTimeout();
+		final var future = evt.timeoutFuture;
+		waitForTimeoutThreads();
+		evt.startTimeout();
+		assertNotSame(future, evt.timeoutFuture);
+		waitForTimeoutThreads();
+		Mockito.verify(fsm, Mockito.times(2)).onTimeout();
+	}
+
+	@Test
+	void testStopTimeoutDoesNotInterrupt() throws InterruptedException {
+		final List<Boolean> interrupted = new ArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		Mockito.doAnswer(invok -> {
+			evt.stopTimeout();
+			interrupted.add(Thread.currentThread().isInterrupted());
+			latch.countDown();
+			return null;
+		}).when(fsm).onTimeout();
+		evt.startTimeout();
+		assertTrue(latch.await(1000L, TimeUnit.MILLISECONDS));
+		assertNull(evt.timeoutFuture);
+		assertEquals(List.of(false), interrupted);
+	}
+
 	@Test
 	void testStopWhenNotStarted() {
 		evt.stopTimeout();
-		assertEquals(0L, getTimeoutThreads().size());
+		assertNull(evt.timeoutFuture);
 		assertFalse(evt.isGuardOK(null));
 	}
 
@@ -18,12 +18,15 @@ import io.github.interacto.fsm.FSM;
 import io.github.interacto.fsm.InitState;
 import io.github.interacto.fsm.OutputState;
 import io.github.interacto.fsm.StdState;
-import io.reactivex.subjects.PublishSubject;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,8 +34,10 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -41,25 +46,20 @@ public class TestInteractionImpl {
 	Logger log;
 	Logger formerLog;
 	FSM<Object> fsm;
-	PublishSubject<Map.Entry<OutputState<Object>, OutputState<Object>>> currentStateObs;
 	OutputState<Object> currentState;
-	ThreadService mementoThreadService;
 
 	@BeforeEach
 	void setUp() {
-		mementoThreadService = ThreadService.getInstance();
-		currentStateObs = PublishSubject.create();
 		fsm = Mockito.mock(FSM.class);
-		Mockito.when(fsm.currentState()).thenReturn(currentStateObs);
 		Mockito.when(fsm.getCurrentState()).thenAnswer(invok -> currentState);
 		interaction = new InteractionStub(fsm);
 		formerLog = InteractionImpl.defaultLogger;
 		log = Mockito.mock(Logger.class);
+		Mockito.when(log.isLoggable(Mockito.any())).thenReturn(true);
 	}
 
 	@AfterEach
 	void tearDown() {
-		ThreadService.setInstance(mementoThreadService);
 		InteractionImpl.setLogger(formerLog);
 		if(interaction.currThrottleTimeoutFuture != null) {
 			interaction.currThrottleTimeoutFuture.cancel(true);
@@ -67,6 +67,18 @@ public class TestInteractionImpl {
 		interaction.uninstall();
 	}
 
+	@Test
+	void testExecuteInUIThread() {
+		final Runnable job = Mockito.mock(Runnable.class);
+		interaction.executeInUIThread(job);
+		Mockito.verify(job, Mockito.times(1)).run();
+	}
+
+	@Test
+	void testExecuteInUIThreadNull() {
+		assertDoesNotThrow(() -> interaction.executeInUIThread(null));
+	}
+
 	@Nested
 	class LoggerTest {
 		@Test
@@ -86,7 +98,7 @@ public class TestInteractionImpl {
 			InteractionImpl.setLogger(log);
 			interaction.log(true);
 			interaction.setActivated(true);
-			Mockito.verify(log, Mockito.times(1)).log(Mockito.any(), Mockito.anyString());
+			Mockito.verify(log, Mockito.times(1)).log(Mockito.any(Level.class), Mockito.<Supplier<String>>any());
 		}
 
 		@Test
@@ -95,7 +107,7 @@ public class TestInteractionImpl {
 			interaction.log(true);
 			interaction.log(false);
 			interaction.setActivated(true);
-			Mockito.verify(log, Mockito.never()).log(Mockito.any(), Mockito.anyString());
+			Mockito.verifyNoInteractions(log);
 		}
 
 		@Test
@@ -112,7 +124,7 @@ public class TestInteractionImpl {
 			InteractionImpl.setLogger(formerLog);
 			interaction.log(true);
 			interaction.setActivated(true);
-			Mockito.verify(log, Mockito.times(1)).log(Mockito.any(), Mockito.anyString());
+			Mockito.verify(log, Mockito.times(1)).log(Mockito.any(Level.class), Mockito.<Supplier<String>>any());
 		}
 	}
 
@@ -289,54 +301,233 @@ public class TestInteractionImpl {
 	}
 
 	@Test
-	void testProcessWithThrottlingShutdown() {
+	void testProcessWithThrottlingUninstallCancelsTimeout() {
 		interaction.setActivated(true);
 		interaction.setThrottleTimeout(10000);
 		interaction.processEvent(new Object());
+		interaction.processEvent(new Object());
 		interaction.uninstall();
-		assertTrue(interaction.executor.isShutdown());
-		assertTrue(interaction.currThrottleTimeoutFuture.isDone());
+		assertTrue(interaction.currThrottleTimeoutFuture.isCancelled());
+		assertEquals(1L, interaction.getDroppedEventsCount());
+		assertNull(interaction.currentThrottledEvent);
 	}
 
 	@Test
-	void testProcessWithThrottlingShutdownMock() throws InterruptedException, ExecutionException {
-		final ThreadService mock = Mockito.mock(ThreadService.class);
-		final Thread mockThread = Mockito.mock(Thread.class);
-		Mockito.when(mock.currentThread()).thenReturn(mockThread);
-		Mockito.doThrow(InterruptedException.class).when(mock).sleep(Mockito.anyLong());
-		ThreadService.setInstance(mock);
+	void testProcessWithThrottlingUsesTimerService() {
+		final TimerService memento = TimerService.getInstance();
+		final TimerService timer = Mockito.mock(TimerService.class);
+		TimerService.setInstance(timer);
 		interaction.setActivated(true);
-		interaction.setThrottleTimeout(10000);
+		interaction.setThrottleTimeout(300);
 		interaction.processEvent(new Object());
-		interaction.currThrottleTimeoutFuture.get();
-		Mockito.verify(mock, Mockito.times(1)).currentThread();
-		Mockito.verify(mockThread, Mockito.times(1)).interrupt();
+		TimerService.setInstance(memento);
+		Mockito.verify(timer, Mockito.times(1)).schedule(Mockito.any(), Mockito.eq(300L));
 	}
 
 	@Test
-	void testProcessWithThrottlingShutdownCrash() throws InterruptedException {
-		final ThreadService mock = Mockito.mock(ThreadService.class);
-		final Thread mockThread = Mockito.mock(Thread.class);
-		Mockito.when(mock.currentThread()).thenReturn(mockThread);
-		interaction.executor = Mockito.mock(ExecutorService.class);
-		Mockito.when(interaction.executor.awaitTermination(5, TimeUnit.SECONDS)).thenThrow(InterruptedException.class);
-		interaction.setActivated(true);
-		interaction.setThrottleTimeout(10000);
+	void testProcessWithThrottlingNoThreadPerInteraction() throws ExecutionException, InterruptedException {
+		final List<InteractionStub> interactions = new ArrayList<>();
+		final Set<String> threads = new HashSet<>();
+		for(int i = 0; i < 50; i++) {
+			final InteractionStub inter = new InteractionStub(new FSM<>()) {
+				@Override
+				protected void runInUIThread(final Runnable cmd) {
+					threads.add(Thread.currentThread().getName());
+					super.runInUIThread(cmd);
+				}
+			};
+			inter.setThrottleTimeout(10);
+			inter.processEvent(new Object());
+			interactions.add(inter);
+		}
+		for(final InteractionStub inter : interactions) {
+			inter.currThrottleTimeoutFuture.get();
+			inter.uninstall();
+		}
+		assertEquals(Set.of(TimerService.TIMER_THREAD_NAME), threads);
+	}
+
+	@Test
+	void testReplacedThrottleTimeoutDoesNothing() {
+		final List<Runnable> jobs = new ArrayList<>();
+		final TimerService memento = TimerService.getInstance();
+		final TimerService timer = Mockito.mock(TimerService.class);
+		Mockito.when(timer.schedule(Mockito.any(), Mockito.anyLong())).thenAnswer(invok -> {
+			jobs.add(invok.getArgument(0));
+			return Mockito.mock(Future.class);
+		});
+		TimerService.setInstance(timer);
+		interaction.setConsumeEvents(true);
+		interaction.setThrottleTimeout(300);
+		final InteractionStub spy = Mockito.spy(interaction);
+		spy.processEvent(new Object());
+		spy.processEvent(new Object());
+		spy.processEvent("foo");
+		TimerService.setInstance(memento);
+		// The first timeout was replaced when the string was processed
+		jobs.get(0).run();
+		Mockito.verify(spy, Mockito.times(3)).consumeEvent(Mockito.any());
+		jobs.get(1).run();
+		Mockito.verify(spy, Mockito.times(3)).consumeEvent(Mockito.any());
+	}
+
+	@Test
+	void testStatisticsNoThrottling() {
 		interaction.processEvent(new Object());
-		ThreadService.setInstance(mock);
-		interaction.uninstall();
-		Mockito.verify(mock, Mockito.times(1)).currentThread();
-		Mockito.verify(mockThread, Mockito.times(1)).interrupt();
+		interaction.processEvent(new Object());
+		assertEquals(2L, interaction.getDeliveredEventsCount());
+		assertEquals(0L, interaction.getDroppedEventsCount());
 	}
 
 	@Test
-	void testProcessWithThrottlingShutdownCrashRealCase() throws InterruptedException {
-		interaction.executor = Mockito.mock(ExecutorService.class);
-		Mockito.when(interaction.executor.awaitTermination(5, TimeUnit.SECONDS)).thenThrow(InterruptedException.class);
-		interaction.setActivated(true);
+	void testStatisticsWithThrottling() throws ExecutionException, InterruptedException {
+		interaction.setThrottleTimeout(200);
+		interaction.processEvent(new Object()); // delivered
+		interaction.processEvent(new Object()); // dropped
+		interaction.processEvent(new Object()); // dropped
+		interaction.processEvent(new Object()); // delivered after the timeout
+		interaction.currThrottleTimeoutFuture.get();
+		assertEquals(2L, interaction.getDeliveredEventsCount());
+		assertEquals(2L, interaction.getDroppedEventsCount());
+	}
+
+	@Test
+	void testResetStatistics() {
 		interaction.setThrottleTimeout(10000);
 		interaction.processEvent(new Object());
-		interaction.uninstall();
+		interaction.processEvent(new Object());
+		interaction.processEvent(new Object());
+		interaction.resetEventsStatistics();
+		assertEquals(0L, interaction.getDeliveredEventsCount());
+		assertEquals(0L, interaction.getDroppedEventsCount());
+	}
+
+	@Nested
+	class EventRateModes {
+		TimerService mementoTimer;
+		List<Runnable> jobs;
+		List<Object> processed;
+
+		@BeforeEach
+		void setUp() {
+			jobs = new ArrayList<>();
+			processed = new ArrayList<>();
+			mementoTimer = TimerService.getInstance();
+			final TimerService timer = Mockito.mock(TimerService.class);
+			Mockito.when(timer.schedule(Mockito.any(), Mockito.anyLong())).thenAnswer(invok -> {
+				jobs.add(invok.getArgument(0));
+				return Mockito.mock(Future.class);
+			});
+			TimerService.setInstance(timer);
+			interaction = new InteractionStub(fsm) {
+				@Override
+				protected void consumeEvent(final Object event) {
+					processed.add(event);
+				}
+			};
+			interaction.setConsumeEvents(true);
+			interaction.setThrottleTimeout(100);
+		}
+
+		@AfterEach
+		void tearDown() {
+			TimerService.setInstance(mementoTimer);
+		}
+
+		void runLastTimeout() {
+			jobs.get(jobs.size() - 1).run();
+		}
+
+		@Test
+		void testDefaultThrottle() {
+			assertEquals(EventRateMode.THROTTLE, interaction.getEventRateMode());
+		}
+
+		@Test
+		void testSetModeNull() {
+			interaction.setEventRateMode(EventRateMode.SAMPLE);
+			interaction.setEventRateMode(null);
+			assertEquals(EventRateMode.SAMPLE, interaction.getEventRateMode());
+		}
+
+		@Test
+		void testDebounce() {
+			interaction.setEventRateMode(EventRateMode.DEBOUNCE);
+			interaction.processEvent(1);
+			interaction.processEvent(2);
+			interaction.processEvent(3);
+			assertEquals(List.of(), processed);
+			assertEquals(3, jobs.size());
+			// The replaced timeouts do nothing
+			jobs.get(0).run();
+			jobs.get(1).run();
+			assertEquals(List.of(), processed);
+			runLastTimeout();
+			assertEquals(List.of(3), processed);
+			assertEquals(2L, interaction.getDroppedEventsCount());
+		}
+
+		@Test
+		void testDebounceOtherTypeFlushes() {
+			interaction.setEventRateMode(EventRateMode.DEBOUNCE);
+			interaction.processEvent(1);
+			interaction.processEvent("a");
+			assertEquals(List.of(1), processed);
+			runLastTimeout();
+			assertEquals(List.of(1, "a"), processed);
+		}
+
+		@Test
+		void testSample() {
+			interaction.setEventRateMode(EventRateMode.SAMPLE);
+			interaction.processEvent(1);
+			interaction.processEvent(2);
+			interaction.processEvent(3);
+			assertEquals(List.of(), processed);
+			assertEquals(1, jobs.size());
+			runLastTimeout();
+			interaction.processEvent(4);
+			interaction.processEvent(5);
+			runLastTimeout();
+			assertEquals(List.of(3, 5), processed);
+			assertEquals(2, jobs.size());
+		}
+
+		@Test
+		void testCoalesce() {
+			interaction.setEventRateMode(EventRateMode.COALESCE);
+			interaction.setEventMerger((e1, e2) -> (Integer) e1 + (Integer) e2);
+			interaction.processEvent(1);
+			interaction.processEvent(2);
+			interaction.processEvent(3);
+			interaction.processEvent(4);
+			assertEquals(List.of(1), processed);
+			runLastTimeout();
+			assertEquals(List.of(1, 9), processed);
+			assertEquals(0L, interaction.getDroppedEventsCount());
+		}
+
+		@Test
+		void testCoalesceOtherTypeFlushesMerged() {
+			interaction.setEventRateMode(EventRateMode.COALESCE);
+			interaction.setEventMerger((e1, e2) -> (Integer) e1 + (Integer) e2);
+			interaction.processEvent(1);
+			interaction.processEvent(2);
+			interaction.processEvent(3);
+			interaction.processEvent("a");
+			assertEquals(List.of(1, 5, "a"), processed);
+		}
+
+		@Test
+		void testCoalesceNoMergerKeepsLast() {
+			interaction.setEventRateMode(EventRateMode.COALESCE);
+			interaction.processEvent(1);
+			interaction.processEvent(2);
+			interaction.processEvent(3);
+			runLastTimeout();
+			assertEquals(List.of(1, 3), processed);
+			assertEquals(1L, interaction.getDroppedEventsCount());
+		}
 	}
 
 	@Test
@@ -362,10 +553,9 @@ public class TestInteractionImpl {
 			}
 		};
 		interaction.uninstall();
-		currentStateObs.onNext(Map.entry(Mockito.mock(OutputState.class), Mockito.mock(OutputState.class)));
 		assertFalse(interaction.isActivated());
 		assertTrue(ok.get());
-		assertTrue(interaction.disposable.isDisposed());
+		Mockito.verify(fsm, Mockito.times(1)).removeStateChangeListener(interaction.stateListener);
 	}
 
 	@Test
@@ -382,7 +572,8 @@ public class TestInteractionImpl {
 				ok.set(true);
 			}
 		};
-		currentStateObs.onNext(Map.entry(oldState, newState));
+		Mockito.verify(fsm, Mockito.times(1)).addStateChangeListener(interaction.stateListener);
+		interaction.stateListener.stateChanged(oldState, newState);
 		assertTrue(ok.get());
 	}
 }
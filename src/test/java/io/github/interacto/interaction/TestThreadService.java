@@ -26,6 +26,7 @@ import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestThreadService {
 	ThreadService mementoThreadService;
@@ -52,6 +53,13 @@ public class TestThreadService {
 		assertSame(Thread.currentThread(), ThreadService.getInstance().currentThread());
 	}
 
+	@Test
+	void testSleepReturns() throws InterruptedException {
+		final long start = System.nanoTime();
+		ThreadService.getInstance().sleep(10L);
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(10L));
+	}
+
 	@Nested
 	class SleepTest {
 		ExecutorService executor;
@@ -0,0 +1,148 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.interaction;
+
+import io.github.interacto.error.ErrorCatcher;
+import io.reactivex.disposables.Disposable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTimerService {
+	TimerService mementoTimerService;
+	TimerService service;
+
+	@BeforeEach
+	void setUp() {
+		mementoTimerService = TimerService.getInstance();
+		service = new TimerService();
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+		TimerService.setInstance(mementoTimerService);
+	}
+
+	@Test
+	void testGetSet() {
+		final TimerService mockService = Mockito.mock(TimerService.class);
+		TimerService.setInstance(mockService);
+		assertSame(mockService, TimerService.getInstance());
+	}
+
+	@Test
+	void testSetNull() {
+		TimerService.setInstance(null);
+		assertSame(mementoTimerService, TimerService.getInstance());
+	}
+
+	@Test
+	void testScheduleNull() {
+		assertThrows(IllegalArgumentException.class, () -> service.schedule(null, 10L));
+	}
+
+	@Test
+	void testScheduleRunsJob() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		service.schedule(latch::countDown, 10L);
+		assertTrue(latch.await(1L, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testSingleDaemonThread() throws InterruptedException, ExecutionException, TimeoutException {
+		final List<Thread> threads = new ArrayList<>();
+		final Future<?> f1 = service.schedule(() -> threads.add(Thread.currentThread()), 5L);
+		final Future<?> f2 = service.schedule(() -> threads.add(Thread.currentThread()), 10L);
+		f1.get(1L, TimeUnit.SECONDS);
+		f2.get(1L, TimeUnit.SECONDS);
+		assertEquals(2, threads.size());
+		assertSame(threads.get(0), threads.get(1));
+		assertTrue(threads.get(0).isDaemon());
+		assertEquals(TimerService.TIMER_THREAD_NAME, threads.get(0).getName());
+	}
+
+	@Test
+	void testCancelDoesNotRun() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Future<?> future = service.schedule(latch::countDown, 50L);
+		future.cancel(false);
+		assertFalse(latch.await(200L, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void testErrorReported() throws InterruptedException, ExecutionException, TimeoutException {
+		final var ex = new IllegalArgumentException("foo");
+		final List<Throwable> errors = new ArrayList<>();
+		final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+		service.schedule(() -> {
+			throw ex;
+		}, 5L).get(1L, TimeUnit.SECONDS);
+		disposable.dispose();
+		assertEquals(List.of(ex), errors);
+	}
+
+	@Test
+	void testThrowableReported() throws InterruptedException, ExecutionException, TimeoutException {
+		final var error = new AssertionError("foo");
+		final List<Throwable> errors = new ArrayList<>();
+		final Disposable disposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+		service.schedule(() -> {
+			throw error;
+		}, 5L).get(1L, TimeUnit.SECONDS);
+		service.schedule(() -> { }, 5L).get(1L, TimeUnit.SECONDS);
+		disposable.dispose();
+		assertEquals(List.of(error), errors);
+	}
+
+	@Test
+	void testScheduleAfterShutdown() throws InterruptedException, ExecutionException, TimeoutException {
+		final List<Thread> threads = new ArrayList<>();
+		service.schedule(() -> threads.add(Thread.currentThread()), 1L).get(1L, TimeUnit.SECONDS);
+		service.shutdown();
+		service.schedule(() -> threads.add(Thread.currentThread()), 1L).get(1L, TimeUnit.SECONDS);
+		assertNotSame(threads.get(0), threads.get(1));
+	}
+
+	@Test
+	void testShutdownNotStartedCreatesNoThread() {
+		final long before = countTimerThreads();
+		assertDoesNotThrow(() -> service.shutdown());
+		assertTrue(countTimerThreads() <= before);
+	}
+
+	private static long countTimerThreads() {
+		return Thread.getAllStackTraces().keySet()
+			.stream()
+			.filter(th -> TimerService.TIMER_THREAD_NAME.equals(th.getName()))
+			.count();
+	}
+}
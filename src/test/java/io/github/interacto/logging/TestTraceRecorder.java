@@ -0,0 +1,181 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestTraceRecorder {
+	TraceRecorder mementoRecorder;
+	TraceRecorder recorder;
+	List<TraceEvent> events;
+	List<Integer> sources;
+	List<Long> times;
+
+	@BeforeEach
+	void setUp() {
+		mementoRecorder = TraceRecorder.getInstance();
+		recorder = new TraceRecorder(4);
+		recorder.setEnabled(true);
+		events = new ArrayList<>();
+		sources = new ArrayList<>();
+		times = new ArrayList<>();
+	}
+
+	@AfterEach
+	void tearDown() {
+		TraceRecorder.setInstance(mementoRecorder);
+	}
+
+	void collect() {
+		recorder.forEach((time, evt, src) -> {
+			times.add(time);
+			events.add(evt);
+			sources.add(src);
+		});
+	}
+
+	@Test
+	void testGetSet() {
+		final TraceRecorder mock = Mockito.mock(TraceRecorder.class);
+		TraceRecorder.setInstance(mock);
+		assertSame(mock, TraceRecorder.getInstance());
+	}
+
+	@Test
+	void testSetNull() {
+		TraceRecorder.setInstance(null);
+		assertSame(mementoRecorder, TraceRecorder.getInstance());
+	}
+
+	@Test
+	void testDefaultDisabled() {
+		assertFalse(new TraceRecorder(2).isEnabled());
+		assertFalse(mementoRecorder.isEnabled());
+	}
+
+	@Test
+	void testBadCapacity() {
+		assertThrows(IllegalArgumentException.class, () -> new TraceRecorder(0));
+		assertThrows(IllegalArgumentException.class, () -> new TraceRecorder(Integer.MAX_VALUE));
+	}
+
+	@Test
+	void testCapacityRoundedToPowerOfTwo() {
+		assertEquals(1, new TraceRecorder(1).getCapacity());
+		assertEquals(4, new TraceRecorder(3).getCapacity());
+		assertEquals(8, new TraceRecorder(8).getCapacity());
+	}
+
+	@Test
+	void testNothingRecordedWhenDisabled() {
+		recorder.setEnabled(false);
+		recorder.record(TraceEvent.FSM_STARTED, this);
+		assertEquals(0, recorder.size());
+	}
+
+	@Test
+	void testNullEventNotRecorded() {
+		recorder.record(null, this);
+		assertEquals(0, recorder.size());
+	}
+
+	@Test
+	void testRecord() {
+		final Object src = new Object();
+		recorder.record(TraceEvent.FSM_STARTED, src);
+		recorder.record(TraceEvent.FSM_ENDED, null);
+		collect();
+		assertEquals(2, recorder.size());
+		assertEquals(List.of(TraceEvent.FSM_STARTED, TraceEvent.FSM_ENDED), events);
+		assertEquals(List.of(System.identityHashCode(src), 0), sources);
+		assertTrue(times.get(0) <= times.get(1));
+	}
+
+	@Test
+	void testOldestOverwritten() {
+		recorder.record(TraceEvent.FSM_STARTED, null);
+		recorder.record(TraceEvent.FSM_UPDATED, null);
+		recorder.record(TraceEvent.BINDING_STARTED, null);
+		recorder.record(TraceEvent.CMD_CREATED, null);
+		recorder.record(TraceEvent.CMD_EXECUTED, null);
+		recorder.record(TraceEvent.FSM_ENDED, null);
+		collect();
+		assertEquals(4, recorder.size());
+		assertEquals(List.of(TraceEvent.BINDING_STARTED, TraceEvent.CMD_CREATED, TraceEvent.CMD_EXECUTED, TraceEvent.FSM_ENDED), events);
+	}
+
+	@Test
+	void testClear() {
+		recorder.record(TraceEvent.FSM_STARTED, null);
+		recorder.clear();
+		collect();
+		assertEquals(0, recorder.size());
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	void testForEachNull() {
+		recorder.record(TraceEvent.FSM_STARTED, null);
+		recorder.forEach(null);
+		assertEquals(1, recorder.size());
+	}
+
+	@Test
+	void testConcurrentRecords() throws InterruptedException {
+		final TraceRecorder rec = new TraceRecorder(1024);
+		rec.setEnabled(true);
+		final Thread[] threads = new Thread[4];
+		for(int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for(int j = 0; j < 10_000; j++) {
+					rec.record(TraceEvent.CMD_CREATED, rec);
+				}
+			});
+			threads[i].start();
+		}
+		for(final Thread thread : threads) {
+			thread.join();
+		}
+		rec.forEach((time, evt, src) -> {
+			events.add(evt);
+			sources.add(src);
+		});
+		assertEquals(1024, rec.size());
+		assertEquals(1024, events.size());
+		assertTrue(events.stream().allMatch(evt -> evt == TraceEvent.CMD_CREATED));
+		assertTrue(sources.stream().allMatch(src -> src == System.identityHashCode(rec)));
+	}
+
+	@Test
+	void testRecordAfterClear() {
+		recorder.record(TraceEvent.FSM_STARTED, null);
+		recorder.clear();
+		recorder.record(TraceEvent.FSM_ENDED, null);
+		collect();
+		assertEquals(1, recorder.size());
+		assertEquals(List.of(TraceEvent.FSM_ENDED), events);
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+import io.github.interacto.error.ErrorCatcher;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.ResourceBundle;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestConcurrentUndoCollector {
+	ConcurrentUndoCollector instance;
+	ExecutorService executor;
+	List<Optional<Undoable>> undos;
+	Disposable disposable;
+
+	@BeforeEach
+	void setUp() {
+		instance = new ConcurrentUndoCollector();
+		executor = Executors.newFixedThreadPool(4);
+		undos = Collections.synchronizedList(new ArrayList<>());
+		disposable = instance.undos().subscribe(undos::add);
+	}
+
+	@AfterEach
+	void tearDown() {
+		disposable.dispose();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testSetInstance() {
+		UndoCollector.setInstance(instance);
+		assertSame(instance, UndoCollector.getInstance());
+		UndoCollector.setInstance(new UndoCollector());
+	}
+
+	@Test
+	void testAddUndoRedo() {
+		final Undoable undoable = Mockito.mock(Undoable.class);
+		instance.add(undoable);
+		assertEquals(Optional.of(undoable), instance.getLastUndo());
+		instance.undo();
+		assertEquals(Optional.empty(), instance.getLastUndo());
+		assertEquals(Optional.of(undoable), instance.getLastRedo());
+		instance.redo();
+		assertEquals(Optional.of(undoable), instance.getLastUndo());
+		assertEquals(List.of(Optional.of(undoable), Optional.empty(), Optional.of(undoable)), undos);
+	}
+
+	@Test
+	void testClear() {
+		instance.add(Mockito.mock(Undoable.class));
+		instance.clear();
+		assertEquals(Optional.empty(), instance.getLastUndo());
+		assertEquals(0, instance.getUndoDepth());
+	}
+
+	@Test
+	void testLastMessages() {
+		final Undoable undoable = Mockito.mock(Undoable.class);
+		final ResourceBundle bundle = Mockito.mock(ResourceBundle.class);
+		Mockito.when(undoable.getUndoName(bundle)).thenReturn("foo");
+		instance.setBundle(bundle);
+		instance.add(undoable);
+		assertEquals(Optional.of("foo"), instance.getLastUndoMessage());
+		instance.undo();
+		assertEquals(Optional.of("foo"), instance.getLastRedoMessage());
+		assertEquals(Optional.empty(), instance.getLastUndoMessage());
+	}
+
+	@Test
+	void testSettersUnderLock() {
+		instance.setSizeMax(2);
+		instance.setMemoryBudget(10L);
+		instance.setMergeWindow(5L);
+		assertEquals(2, instance.getSizeMax());
+		assertEquals(10L, instance.getMemoryBudget());
+		assertEquals(5L, instance.getMergeWindow());
+		assertEquals(0L, instance.getRetainedSize());
+		assertEquals(0, instance.getRedoDepth());
+	}
+
+	@Test
+	void testConcurrentAdds() throws Exception {
+		instance.setSizeMax(10_000);
+		final List<Future<?>> futures = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			futures.add(executor.submit(() -> {
+				for(int j = 0; j < 1000; j++) {
+					instance.add(Mockito.mock(Undoable.class));
+				}
+			}));
+		}
+		for(final Future<?> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(4000, instance.getUndoDepth());
+		assertEquals(4000, undos.size());
+	}
+
+	@Test
+	void testNotificationsInHistoryOrder() throws Exception {
+		final List<Future<?>> futures = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			futures.add(executor.submit(() -> {
+				for(int j = 0; j < 200; j++) {
+					instance.add(Mockito.mock(Undoable.class));
+					instance.undo();
+				}
+			}));
+		}
+		for(final Future<?> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(Optional.empty(), undos.get(undos.size() - 1));
+		assertEquals(Optional.empty(), instance.getLastUndo());
+	}
+
+	@Test
+	void testLastUndoReadWithoutLock() throws Exception {
+		final CountDownLatch undoing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Undoable first = Mockito.mock(Undoable.class);
+		final Undoable blocking = Mockito.mock(Undoable.class);
+		Mockito.doAnswer(inv -> {
+			undoing.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return null;
+		}).when(blocking).undo();
+		instance.add(first);
+		instance.add(blocking);
+
+		final Future<?> future = executor.submit(() -> instance.undo());
+		assertTrue(undoing.await(10, TimeUnit.SECONDS));
+		assertEquals(Optional.of(first), instance.getLastUndo());
+		assertEquals(Optional.of(blocking), instance.getLastRedo());
+		release.countDown();
+		future.get(10, TimeUnit.SECONDS);
+		assertEquals(Optional.of(first), instance.getLastUndo());
+	}
+
+	@Test
+	void testUndoRunsOutsideHistoryLock() throws Exception {
+		final CountDownLatch undoing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Undoable blocking = Mockito.mock(Undoable.class);
+		final Undoable added = Mockito.mock(Undoable.class);
+		Mockito.doAnswer(inv -> {
+			undoing.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return null;
+		}).when(blocking).undo();
+		instance.add(blocking);
+
+		final Future<?> future = executor.submit(() -> instance.undo());
+		assertTrue(undoing.await(10, TimeUnit.SECONDS));
+		// Another thread can change the history while the undo runs
+		executor.submit(() -> instance.add(added)).get(10, TimeUnit.SECONDS);
+		assertEquals(1, instance.getUndoDepth());
+		assertEquals(0, instance.getRedoDepth());
+		release.countDown();
+		future.get(10, TimeUnit.SECONDS);
+		assertEquals(Optional.of(added), instance.getLastUndo());
+	}
+
+	@Test
+	void testUndoRedoRunInHistoryOrder() throws Exception {
+		final CountDownLatch undoing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+		final Undoable undoable = Mockito.mock(Undoable.class);
+		Mockito.doAnswer(inv -> {
+			undoing.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			calls.add("undo");
+			return null;
+		}).when(undoable).undo();
+		Mockito.doAnswer(inv -> calls.add("redo")).when(undoable).redo();
+		instance.add(undoable);
+
+		final Future<?> undo = executor.submit(() -> instance.undo());
+		assertTrue(undoing.await(10, TimeUnit.SECONDS));
+		final Future<?> redo = executor.submit(() -> instance.redo());
+		Thread.sleep(50L);
+		release.countDown();
+		undo.get(10, TimeUnit.SECONDS);
+		redo.get(10, TimeUnit.SECONDS);
+		assertEquals(List.of("undo", "redo"), calls);
+		assertEquals(Optional.of(undoable), instance.getLastUndo());
+	}
+
+	@Test
+	void testUndoRedoEmpty() {
+		instance.undo();
+		instance.redo();
+		assertTrue(undos.isEmpty());
+		assertEquals(0, instance.getUndoDepth());
+		assertEquals(0, instance.getRedoDepth());
+	}
+
+	@Test
+	void testSpillToDisk(@TempDir final Path dir) throws IOException {
+		instance.enableSpillToDisk(dir, 1);
+		for(int i = 1; i <= 3; i++) {
+			instance.add(new TestUndoCollector.SerialUndoable(i));
+		}
+		assertTrue(instance.isSpillingToDisk());
+		assertEquals(1, instance.getUndo().size());
+		instance.undo();
+		instance.undo();
+		instance.disableSpillToDisk();
+		assertFalse(instance.isSpillingToDisk());
+		assertEquals(1, instance.getUndo().size());
+		assertEquals(2, instance.getRedo().size());
+	}
+
+	@Test
+	void testFailingUndoKeepsHistoryMoved() {
+		final Undoable undoable = Mockito.mock(Undoable.class);
+		Mockito.doThrow(new IllegalStateException()).when(undoable).undo();
+		instance.add(undoable);
+		assertThrows(IllegalStateException.class, () -> instance.undo());
+		assertEquals(Optional.of(undoable), instance.getLastRedo());
+		assertEquals(List.of(Optional.of(undoable), Optional.empty()), undos);
+	}
+
+	@Test
+	void testFailingObserverReportedAndNextOnesSent() {
+		final List<Throwable> errors = new ArrayList<>();
+		final Disposable errorsDisposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+		final Disposable[] disposable = new Disposable[1];
+		instance.undos().subscribe(new Observer<>() {
+			@Override
+			public void onSubscribe(final Disposable d) {
+				disposable[0] = d;
+			}
+
+			@Override
+			public void onNext(final Optional<Undoable> u) {
+				throw new IllegalStateException();
+			}
+
+			@Override
+			public void onError(final Throwable e) {
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+		final Undoable undoable = Mockito.mock(Undoable.class);
+		instance.add(undoable);
+		instance.undo();
+		disposable[0].dispose();
+		errorsDisposable.dispose();
+		assertEquals(List.of(Optional.of(undoable), Optional.empty()), undos);
+		assertEquals(2, errors.size());
+		assertTrue(errors.get(0) instanceof IllegalStateException);
+	}
+
+	@Test
+	void testObserversNotifiedOutsideLock() throws Exception {
+		final Undoable undoable = Mockito.mock(Undoable.class);
+		final List<Integer> seen = new ArrayList<>();
+		// Reading the depth from another thread requires the lock
+		final Disposable d = instance.undos().subscribe(u -> seen.add(executor.submit(() -> instance.getUndoDepth()).get(10, TimeUnit.SECONDS)));
+		instance.add(undoable);
+		d.dispose();
+		assertEquals(List.of(1), seen);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestMappedUndoStore {
+	@TempDir
+	Path dir;
+	MappedUndoStore store;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		store = new MappedUndoStore(dir);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		store.close();
+	}
+
+	@Test
+	void testPushPop() throws IOException {
+		store.push(new TestUndoCollector.SerialUndoable(1), 10L);
+		store.push(new TestUndoCollector.SerialUndoable(2), 20L);
+		assertEquals(2, store.size());
+		assertEquals(20L, store.peekRetainedSize());
+		assertEquals(2, ((TestUndoCollector.SerialUndoable) store.pop()).id);
+		assertEquals(1, ((TestUndoCollector.SerialUndoable) store.pop()).id);
+		assertTrue(store.isEmpty());
+		assertEquals(0, store.getUsedSpace());
+	}
+
+	@Test
+	void testSpaceReclaimedWhenFull() throws IOException {
+		for(int i = 0; i < 100; i++) {
+			store.push(new TestUndoCollector.SerialUndoable(i), i);
+		}
+		final int used = store.getUsedSpace();
+		for(int i = 100; i < 100_000; i++) {
+			store.push(new TestUndoCollector.SerialUndoable(i), i);
+			store.removeLast();
+		}
+		assertEquals(100, store.size());
+		assertTrue(store.getUsedSpace() <= 2 * used);
+		for(int i = 99_999; i >= 99_900; i--) {
+			assertEquals(i, ((TestUndoCollector.SerialUndoable) store.pop()).id);
+		}
+	}
+
+	@Test
+	void testRemoveLastUntilEmpty() throws IOException {
+		store.push(new TestUndoCollector.SerialUndoable(1), 1L);
+		store.push(new TestUndoCollector.SerialUndoable(2), 2L);
+		store.removeLast();
+		assertEquals(2L, store.peekRetainedSize());
+		store.removeLast();
+		assertTrue(store.isEmpty());
+		assertEquals(0, store.getUsedSpace());
+	}
+
+	@Test
+	void testGrowsMapping() throws IOException {
+		final TestUndoCollector.SerialUndoable big = new TestUndoCollector.SerialUndoable(1) {
+			@Override
+			public void writeMemento(final DataOutput out) throws IOException {
+				out.writeInt(id);
+				out.write(new byte[(1 << 20) + 1]);
+			}
+		};
+		store.push(big, 1L);
+		store.push(new TestUndoCollector.SerialUndoable(2), 2L);
+		assertEquals(2, ((TestUndoCollector.SerialUndoable) store.pop()).id);
+		assertEquals(1, ((TestUndoCollector.SerialUndoable) store.pop()).id);
+	}
+
+	@Test
+	void testRejected() {
+		final TestUndoCollector.SerialUndoable failing = new TestUndoCollector.SerialUndoable(1) {
+			@Override
+			public void writeMemento(final DataOutput out) throws IOException {
+				throw new IOException();
+			}
+		};
+		assertTrue(store.accepts(failing));
+		assertThrows(IOException.class, () -> store.push(failing, 1L));
+		assertFalse(store.accepts(failing));
+		assertTrue(store.isEmpty());
+		assertFalse(store.accepts(new TestUndoCollector.NotSpillableUndoable()));
+	}
+
+	@Test
+	void testCloseDeletesFile() throws IOException {
+		store.close();
+		try(var files = Files.list(dir)) {
+			assertEquals(0L, files.count());
+		}
+		store = new MappedUndoStore(dir);
+	}
+
+	@Test
+	void testOpenMissingFile() {
+		assertThrows(NoSuchFileException.class, () -> MappedUndoStore.openChannel(dir.resolve("missing")));
+	}
+
+	@Test
+	void testMapFailureDeletesFile() throws IOException {
+		final Path file = Files.createTempFile(dir, "foo", ".bin");
+		final FileChannel channel = MappedUndoStore.openChannel(file);
+		channel.close();
+		assertThrows(ClosedChannelException.class, () -> MappedUndoStore.mapChannel(channel, file));
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	void testStoreFull() {
+		assertThrows(IOException.class, () -> store.ensureMapped(Integer.MAX_VALUE + 1L));
+	}
+
+	@Test
+	void testInvokeCleanerFound() {
+		assertNotNull(MappedUndoStore.findInvokeCleaner("sun.misc.Unsafe"));
+	}
+
+	@Test
+	void testInvokeCleanerNotAvailable() {
+		assertNull(MappedUndoStore.findInvokeCleaner("foo.Unsafe"));
+	}
+
+	@Test
+	void testUnmapWithoutCleaner() {
+		assertDoesNotThrow(() -> MappedUndoStore.unmap(null, ByteBuffer.allocateDirect(1)));
+	}
+
+	@Test
+	void testUnmapFailureNotPropagated() {
+		assertDoesNotThrow(() -> MappedUndoStore.unmap(MappedUndoStore.findInvokeCleaner("sun.misc.Unsafe"), ByteBuffer.allocate(1)));
+	}
+}
@@ -14,20 +14,31 @@
  */
 package io.github.interacto.undo;
 
+import io.github.interacto.error.ErrorCatcher;
 import io.reactivex.disposables.Disposable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 
 public class TestUndoCollector {
 	Undoable undoable;
@@ -311,4 +322,602 @@ public class TestUndoCollector {
 		instance.getLastRedoMessage();
 		Mockito.verify(undoable, Mockito.times(1)).getUndoName(bundle);
 	}
+
+	@Nested
+	class MemoryBudget {
+		Undoable sized(final long size) {
+			final Undoable und = Mockito.mock(Undoable.class);
+			Mockito.when(und.getRetainedSize()).thenReturn(size);
+			return und;
+		}
+
+		@Test
+		void testNoBudgetByDefault() {
+			assertEquals(Long.MAX_VALUE, new UndoCollector().getMemoryBudget());
+		}
+
+		@Test
+		void testRetainedSize() {
+			instance.add(sized(10L));
+			instance.add(sized(20L));
+			instance.add(undoable);
+			assertEquals(30L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testNegativeSizeIgnored() {
+			instance.add(sized(-10L));
+			assertEquals(0L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testSetBudgetNegative() {
+			instance.setMemoryBudget(100L);
+			instance.setMemoryBudget(-1L);
+			assertEquals(100L, instance.getMemoryBudget());
+		}
+
+		@Test
+		void testAddEvictsOldest() {
+			final Undoable u1 = sized(40L);
+			final Undoable u2 = sized(40L);
+			final Undoable u3 = sized(40L);
+			instance.setMemoryBudget(100L);
+			instance.add(u1);
+			instance.add(u2);
+			instance.add(u3);
+			assertEquals(List.of(u3, u2), new ArrayList<>(instance.getUndo()));
+			assertEquals(80L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testNewestNeverEvicted() {
+			final Undoable big = sized(1000L);
+			instance.setMemoryBudget(100L);
+			instance.add(sized(10L));
+			instance.add(big);
+			assertEquals(List.of(big), new ArrayList<>(instance.getUndo()));
+			assertEquals(1000L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testUndoRedoKeepSizes() {
+			instance.add(sized(10L));
+			instance.add(sized(20L));
+			instance.undo();
+			assertEquals(30L, instance.getRetainedSize());
+			instance.redo();
+			assertEquals(30L, instance.getRetainedSize());
+			instance.undo();
+			instance.undo();
+			instance.clear();
+			assertEquals(0L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testLowerBudgetEvictsUndoThenRedo() {
+			final Undoable u1 = sized(10L);
+			final Undoable u2 = sized(20L);
+			final Undoable u3 = sized(30L);
+			final Undoable u4 = sized(40L);
+			final List<Optional<Undoable>> redos = new ArrayList<>();
+			instance.add(u1);
+			instance.add(u2);
+			instance.add(u3);
+			instance.add(u4);
+			instance.undo();
+			instance.undo();
+			final Disposable disposable = instance.redos().subscribe(redos::add);
+			instance.setMemoryBudget(50L);
+			disposable.dispose();
+			// u1 is evicted from the undo stack, then u4 (the oldest redo)
+			assertEquals(List.of(u2), new ArrayList<>(instance.getUndo()));
+			assertEquals(List.of(u3), new ArrayList<>(instance.getRedo()));
+			assertEquals(50L, instance.getRetainedSize());
+			assertTrue(redos.isEmpty());
+		}
+
+		@Test
+		void testLowerBudgetEmptiesRedo() {
+			final List<Optional<Undoable>> redos = new ArrayList<>();
+			instance.add(sized(10L));
+			instance.add(sized(20L));
+			instance.undo();
+			final Disposable disposable = instance.redos().subscribe(redos::add);
+			instance.setMemoryBudget(15L);
+			disposable.dispose();
+			assertTrue(instance.getRedo().isEmpty());
+			assertEquals(List.of(Optional.empty()), redos);
+		}
+
+		@Test
+		void testOnlyRedoKeepsNextRedo() {
+			final Undoable u1 = sized(10L);
+			final Undoable u2 = sized(20L);
+			instance.add(u1);
+			instance.add(u2);
+			instance.undo();
+			instance.undo();
+			instance.setMemoryBudget(0L);
+			assertEquals(List.of(u1), new ArrayList<>(instance.getRedo()));
+		}
+
+		@Test
+		void testSizeMaxRemovesSizes() {
+			instance.add(sized(10L));
+			instance.add(sized(20L));
+			instance.setSizeMax(1);
+			assertEquals(20L, instance.getRetainedSize());
+			instance.add(sized(5L));
+			assertEquals(5L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testManyUndoables() {
+			instance.setSizeMax(1000);
+			for(int i = 0; i < 500; i++) {
+				instance.add(sized(1L));
+			}
+			for(int i = 0; i < 300; i++) {
+				instance.undo();
+			}
+			assertEquals(500L, instance.getRetainedSize());
+			instance.setMemoryBudget(250L);
+			assertEquals(250L, instance.getRetainedSize());
+			assertEquals(1, instance.getUndo().size());
+		}
+	}
+
+	static class SerialUndoable implements SpillableUndoable {
+		static final List<String> LOG = new ArrayList<>();
+		static final MementoReader READER = in -> new SerialUndoable(in.readInt());
+		final int id;
+
+		SerialUndoable(final int id) {
+			this.id = id;
+		}
+
+		@Override
+		public void undo() {
+			LOG.add("undo" + id);
+		}
+
+		@Override
+		public void redo() {
+			LOG.add("redo" + id);
+		}
+
+		@Override
+		public String getUndoName(final ResourceBundle bundle) {
+			return "u" + id;
+		}
+
+		@Override
+		public long getRetainedSize() {
+			return id;
+		}
+
+		@Override
+		public void writeMemento(final DataOutput out) throws IOException {
+			out.writeInt(id);
+		}
+
+		@Override
+		public MementoReader getMementoReader() {
+			return READER;
+		}
+	}
+
+	static class NotSpillableUndoable implements Undoable, Serializable {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void undo() {
+		}
+
+		@Override
+		public void redo() {
+		}
+
+		@Override
+		public String getUndoName(final ResourceBundle bundle) {
+			return "";
+		}
+	}
+
+	@Nested
+	class SpillToDisk {
+		@TempDir
+		Path dir;
+		List<Throwable> errors;
+		Disposable errorsDisposable;
+
+		@BeforeEach
+		void setUp() throws IOException {
+			SerialUndoable.LOG.clear();
+			errors = new ArrayList<>();
+			errorsDisposable = ErrorCatcher.getInstance().getErrors().subscribe(errors::add);
+			instance.setSizeMax(100);
+			instance.enableSpillToDisk(dir, 2);
+		}
+
+		@AfterEach
+		void tearDown() {
+			instance.disableSpillToDisk();
+			errorsDisposable.dispose();
+			assertTrue(errors.isEmpty());
+		}
+
+		void addAll(final int nb) {
+			for(int i = 1; i <= nb; i++) {
+				instance.add(new SerialUndoable(i));
+			}
+		}
+
+		@Test
+		void testNotSpillingByDefault() {
+			assertFalse(new UndoCollector().isSpillingToDisk());
+		}
+
+		@Test
+		void testSpilling() {
+			assertTrue(instance.isSpillingToDisk());
+		}
+
+		@Test
+		void testEnableInvalidLiveSize() throws IOException {
+			final UndoCollector collector = new UndoCollector();
+			collector.enableSpillToDisk(dir, 0);
+			assertFalse(collector.isSpillingToDisk());
+		}
+
+		@Test
+		void testEnableNullDir() throws IOException {
+			final UndoCollector collector = new UndoCollector();
+			collector.enableSpillToDisk(null, 2);
+			assertFalse(collector.isSpillingToDisk());
+		}
+
+		@Test
+		void testOnlyLiveEntriesInMemory() {
+			addAll(10);
+			assertEquals(2, instance.getUndo().size());
+			assertEquals(10, instance.getUndoDepth());
+			assertEquals(19L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testUndoRehydratesInOrder() {
+			addAll(10);
+			for(int i = 0; i < 10; i++) {
+				instance.undo();
+			}
+			assertEquals(List.of("undo10", "undo9", "undo8", "undo7", "undo6", "undo5", "undo4", "undo3", "undo2", "undo1"),
+				SerialUndoable.LOG);
+			assertEquals(0, instance.getUndoDepth());
+			assertEquals(10, instance.getRedoDepth());
+			assertEquals(2, instance.getRedo().size());
+		}
+
+		@Test
+		void testRedoRehydratesInOrder() {
+			addAll(6);
+			for(int i = 0; i < 6; i++) {
+				instance.undo();
+			}
+			SerialUndoable.LOG.clear();
+			for(int i = 0; i < 6; i++) {
+				instance.redo();
+			}
+			assertEquals(List.of("redo1", "redo2", "redo3", "redo4", "redo5", "redo6"), SerialUndoable.LOG);
+			assertEquals(Optional.of("u6"), instance.getLastUndoMessage());
+			assertEquals(0, instance.getRedoDepth());
+		}
+
+		@Test
+		void testRetainedSizeRestored() {
+			addAll(5);
+			for(int i = 0; i < 5; i++) {
+				instance.undo();
+			}
+			for(int i = 0; i < 5; i++) {
+				instance.redo();
+			}
+			assertEquals(9L, instance.getRetainedSize());
+			instance.disableSpillToDisk();
+			assertEquals(15L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testSizeMaxCountsSpilledEntries() {
+			instance.setSizeMax(5);
+			addAll(8);
+			assertEquals(5, instance.getUndoDepth());
+			for(int i = 0; i < 5; i++) {
+				instance.undo();
+			}
+			assertEquals(List.of("undo8", "undo7", "undo6", "undo5", "undo4"), SerialUndoable.LOG);
+		}
+
+		@Test
+		void testSetSizeMaxRemovesSpilledFirst() {
+			addAll(6);
+			instance.setSizeMax(3);
+			assertEquals(3, instance.getUndoDepth());
+			assertEquals(2, instance.getUndo().size());
+		}
+
+		@Test
+		void testAddClearsSpilledRedo() {
+			addAll(6);
+			for(int i = 0; i < 6; i++) {
+				instance.undo();
+			}
+			instance.add(new SerialUndoable(7));
+			assertEquals(0, instance.getRedoDepth());
+			assertEquals(1, instance.getUndoDepth());
+		}
+
+		@Test
+		void testClear() {
+			addAll(6);
+			instance.clear();
+			assertEquals(0, instance.getUndoDepth());
+			assertTrue(instance.getLastUndo().isEmpty());
+		}
+
+		@Test
+		void testNonSerializableStaysLive() {
+			instance.add(undoable);
+			addAll(5);
+			assertEquals(6, instance.getUndo().size());
+			assertEquals(6, instance.getUndoDepth());
+		}
+
+		@Test
+		void testSerializableNotSpilled() {
+			final Undoable serializable = new NotSpillableUndoable();
+			instance.add(serializable);
+			addAll(5);
+			assertEquals(6, instance.getUndo().size());
+			assertSame(serializable, instance.getUndo().peekLast());
+		}
+
+		@Test
+		void testReaderBindsToLiveObjects() throws IOException {
+			final List<SerialUndoable> live = new ArrayList<>();
+			final SpillableUndoable.MementoReader reader = in -> live.get(in.readInt());
+			for(int i = 0; i < 5; i++) {
+				live.add(new SerialUndoable(i) {
+					@Override
+					public MementoReader getMementoReader() {
+						return reader;
+					}
+				});
+				instance.add(live.get(i));
+			}
+			instance.disableSpillToDisk();
+			assertEquals(5, instance.getUndo().size());
+			for(int i = 0; i < 5; i++) {
+				assertSame(live.get(i), instance.getUndo().pollLast());
+			}
+		}
+
+		@Test
+		void testFailingMementoStaysLiveAndReportedOnce() {
+			final SerialUndoable failing = new SerialUndoable(0) {
+				@Override
+				public void writeMemento(final DataOutput out) throws IOException {
+					throw new IOException("memento");
+				}
+			};
+			instance.add(failing);
+			addAll(5);
+			assertEquals(6, instance.getUndo().size());
+			assertEquals(1, errors.size());
+			errors.clear();
+		}
+
+		void addUnreadable(final int nb) {
+			for(int i = 1; i <= nb; i++) {
+				instance.add(new SerialUndoable(i) {
+					@Override
+					public MementoReader getMementoReader() {
+						return in -> {
+							throw new IOException("reader");
+						};
+					}
+				});
+			}
+		}
+
+		@Test
+		void testRehydrateFailureReported() {
+			addUnreadable(3);
+			instance.undo();
+			instance.undo();
+			assertEquals(0, instance.getUndoDepth());
+			assertEquals(2, instance.getRedoDepth());
+			assertEquals(1, errors.size());
+			errors.clear();
+		}
+
+		@Test
+		void testRestoreFailureReported() {
+			addUnreadable(3);
+			instance.disableSpillToDisk();
+			assertEquals(2, instance.getUndoDepth());
+			assertEquals(1, errors.size());
+			errors.clear();
+		}
+
+		@Test
+		void testEnableFailureDeletesTheFirstStore() throws IOException {
+			final Path sub = Files.createDirectory(dir.resolve("sub"));
+			final UndoCollector collector = Mockito.spy(new UndoCollector());
+			Mockito.doCallRealMethod().doThrow(new IOException()).when(collector).createStore(sub);
+			assertThrows(IOException.class, () -> collector.enableSpillToDisk(sub, 2));
+			assertFalse(collector.isSpillingToDisk());
+			try(var files = Files.list(sub)) {
+				assertEquals(0L, files.count());
+			}
+		}
+
+		@Test
+		void testCloseFailureReported() throws IOException {
+			final UndoCollector collector = Mockito.spy(new UndoCollector());
+			Mockito.doAnswer(create -> {
+				final MappedUndoStore store = Mockito.spy((MappedUndoStore) create.callRealMethod());
+				Mockito.doAnswer(close -> {
+					close.callRealMethod();
+					throw new IOException("close");
+				}).when(store).close();
+				return store;
+			}).when(collector).createStore(dir);
+			collector.enableSpillToDisk(dir, 2);
+			collector.disableSpillToDisk();
+			assertFalse(collector.isSpillingToDisk());
+			assertEquals(2, errors.size());
+			errors.clear();
+		}
+
+		@Test
+		void testDisableRestoresEntries() throws IOException {
+			addAll(6);
+			instance.undo();
+			instance.disableSpillToDisk();
+			assertFalse(instance.isSpillingToDisk());
+			assertEquals(5, instance.getUndo().size());
+			assertEquals(1, instance.getRedo().size());
+			try(var files = Files.list(dir)) {
+				assertEquals(0L, files.count());
+			}
+		}
+
+		@Test
+		void testManyEntries() {
+			instance.setSizeMax(20_000);
+			addAll(20_000);
+			assertEquals(20_000, instance.getUndoDepth());
+			for(int i = 0; i < 20_000; i++) {
+				instance.undo();
+			}
+			if(SerialUndoable.LOG.size() != 20_000 || !"undo1".equals(SerialUndoable.LOG.get(19_999))) {
+				fail("Bad undo sequence");
+			}
+		}
+	}
+
+	@Nested
+	class Merge {
+		Undoable absorbing;
+		List<Optional<Undoable>> undos;
+		Disposable disposable;
+
+		@BeforeEach
+		void setUp() {
+			absorbing = Mockito.mock(Undoable.class);
+			Mockito.when(absorbing.absorb(Mockito.any())).thenReturn(true);
+			undos = new ArrayList<>();
+			disposable = instance.undos().subscribe(undos::add);
+		}
+
+		@AfterEach
+		void tearDown() {
+			disposable.dispose();
+		}
+
+		@Test
+		void testNoMergeByDefault() {
+			instance.add(absorbing);
+			instance.add(undoable);
+			assertEquals(0L, instance.getMergeWindow());
+			assertEquals(2, instance.getUndo().size());
+			Mockito.verify(absorbing, Mockito.never()).absorb(Mockito.any());
+		}
+
+		@Test
+		void testSetMergeWindowNegative() {
+			instance.setMergeWindow(100L);
+			instance.setMergeWindow(-1L);
+			assertEquals(100L, instance.getMergeWindow());
+		}
+
+		@Test
+		void testMerged() {
+			instance.setMergeWindow(10_000L);
+			instance.add(absorbing);
+			instance.add(undoable);
+			instance.add(undoable);
+			assertEquals(1, instance.getUndo().size());
+			assertEquals(List.of(Optional.of(absorbing)), undos);
+			Mockito.verify(absorbing, Mockito.times(2)).absorb(undoable);
+		}
+
+		@Test
+		void testNotMergedWhenRefused() {
+			instance.setMergeWindow(10_000L);
+			instance.add(undoable);
+			instance.add(absorbing);
+			assertEquals(2, instance.getUndo().size());
+		}
+
+		@Test
+		void testNotAbsorbingByDefault() {
+			final Undoable first = Mockito.mock(Undoable.class, Mockito.CALLS_REAL_METHODS);
+			instance.setMergeWindow(10_000L);
+			instance.add(first);
+			instance.add(undoable);
+			assertEquals(2, instance.getUndo().size());
+			assertFalse(first.absorb(undoable));
+		}
+
+		@Test
+		void testMergedSizeUpdated() {
+			instance.setMergeWindow(10_000L);
+			instance.add(absorbing);
+			Mockito.when(absorbing.getRetainedSize()).thenReturn(50L);
+			instance.add(undoable);
+			assertEquals(50L, instance.getRetainedSize());
+		}
+
+		@Test
+		void testNotMergedAfterUndo() {
+			instance.setMergeWindow(10_000L);
+			instance.add(undoable);
+			instance.add(absorbing);
+			instance.undo();
+			instance.redo();
+			instance.add(undoable);
+			assertEquals(3, instance.getUndo().size());
+			Mockito.verify(absorbing, Mockito.never()).absorb(Mockito.any());
+		}
+
+		@Test
+		void testNotMergedAfterClear() {
+			instance.setMergeWindow(10_000L);
+			instance.add(absorbing);
+			instance.clear();
+			instance.add(undoable);
+			assertEquals(1, instance.getUndo().size());
+			assertSame(undoable, instance.getUndo().peek());
+		}
+
+		@Test
+		void testNotMergedAfterWindow() throws InterruptedException {
+			instance.setMergeWindow(1L);
+			instance.add(absorbing);
+			Thread.sleep(20L);
+			instance.add(undoable);
+			assertEquals(2, instance.getUndo().size());
+		}
+
+		@Test
+		void testNotAbsorbingItself() {
+			instance.setMergeWindow(10_000L);
+			instance.add(absorbing);
+			instance.add(absorbing);
+			Mockito.verify(absorbing, Mockito.never()).absorb(Mockito.any());
+		}
+	}
 }
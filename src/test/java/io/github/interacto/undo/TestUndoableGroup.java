@@ -0,0 +1,76 @@
+/*
+ * Interacto
+ * Copyright (C) 2020 Arnaud Blouin
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.github.interacto.undo;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestUndoableGroup {
+	Undoable u1;
+	Undoable u2;
+	UndoableGroup group;
+
+	@BeforeEach
+	void setUp() {
+		u1 = Mockito.mock(Undoable.class);
+		u2 = Mockito.mock(Undoable.class);
+		group = new UndoableGroup(List.of(u1, u2));
+	}
+
+	@Test
+	void testEmpty() {
+		assertThrows(IllegalArgumentException.class, () -> new UndoableGroup(List.of()));
+	}
+
+	@Test
+	void testGetUndoables() {
+		assertEquals(List.of(u1, u2), group.getUndoables());
+	}
+
+	@Test
+	void testUndoReverseOrder() {
+		group.undo();
+		final InOrder inOrder = Mockito.inOrder(u1, u2);
+		inOrder.verify(u2).undo();
+		inOrder.verify(u1).undo();
+	}
+
+	@Test
+	void testRedoOrder() {
+		group.redo();
+		final InOrder inOrder = Mockito.inOrder(u1, u2);
+		inOrder.verify(u1).redo();
+		inOrder.verify(u2).redo();
+	}
+
+	@Test
+	void testUndoNameOfLast() {
+		Mockito.when(u2.getUndoName(null)).thenReturn("foo");
+		assertEquals("foo", group.getUndoName(null));
+	}
+
+	@Test
+	void testRetainedSize() {
+		Mockito.when(u1.getRetainedSize()).thenReturn(10L);
+		Mockito.when(u2.getRetainedSize()).thenReturn(-5L);
+		assertEquals(10L, group.getRetainedSize());
+	}
+}